@@ -1,9 +1,10 @@
 package nz.ac.vuw.ecs.swen225.gp22.app;
 
 import nz.ac.vuw.ecs.swen225.gp22.domain.ColorableTile;
-import nz.ac.vuw.ecs.swen225.gp22.domain.EnemyEntity;
 import nz.ac.vuw.ecs.swen225.gp22.domain.Entity;
+import nz.ac.vuw.ecs.swen225.gp22.domain.GameWorld;
 import nz.ac.vuw.ecs.swen225.gp22.domain.Maze;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Simulation;
 import nz.ac.vuw.ecs.swen225.gp22.persistency.Load;
 import nz.ac.vuw.ecs.swen225.gp22.persistency.Save;
 import nz.ac.vuw.ecs.swen225.gp22.recorder.Action;
@@ -18,9 +19,10 @@ import java.awt.*;
 import java.awt.event.KeyListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
 import static nz.ac.vuw.ecs.swen225.gp22.domain.Entity.Action.Interaction.ActionType.*;
 
@@ -28,7 +30,7 @@ import static nz.ac.vuw.ecs.swen225.gp22.domain.Entity.Action.Interaction.Action
  * Base is the base window that all actions occur on.
  *
  * @author Molly
- * @version 1.12
+ * @version 1.16
  */
 public class Base extends JFrame {
 	/**
@@ -41,6 +43,11 @@ public class Base extends JFrame {
 	 */
 	private int timeMS = 0;
 
+	/**
+	 * Simulation of the current level, driven by the game timer.
+	 */
+	private Simulation simulation;
+
 	/**
 	 * Time in seconds.
 	 */
@@ -87,9 +94,9 @@ public class Base extends JFrame {
 	private final GameDialog gameWinDialog;
 
 	/**
-	 * Delay in timer.
+	 * Delay in timer, one simulation tick.
 	 */
-	private final int delay = 20;
+	private final int delay = Simulation.TICK_MS;
 
 	/**
 	 * Current level.
@@ -259,13 +266,11 @@ public class Base extends JFrame {
 	}
 
 	/**
-	 * Save the current game.
+	 * Save the current game, showing the save pop-up once it has been written.
 	 */
 	public void saveGame() {
 		closePopUp();
-		Save.saveGame();
-		recorder.save();
-		saveDialog.visibleFocus();
+		save(saveDialog::visibleFocus);
 	}
 
 	/**
@@ -276,11 +281,31 @@ public class Base extends JFrame {
 	}
 
 	/**
-	 * Saves the game and then exits.
+	 * Saves the game and then exits once it has been written.
 	 */
 	public void saveExit() {
-		this.saveGame();
-		this.exitGame();
+		closePopUp();
+		save(this::exitGame);
+	}
+
+	/**
+	 * Saves the game and recording. The game is written in the background, so the game
+	 * keeps running until it is done.
+	 *
+	 * @param then run on the event dispatch thread once the game is saved, not run if it fails
+	 */
+	private void save(Runnable then) {
+		assert SwingUtilities.isEventDispatchThread();
+		CompletableFuture<File> saved = Save.saveGameAsync(true);
+		recorder.save();
+		saved.whenComplete((file, error) -> SwingUtilities.invokeLater(() -> {
+			if (error == null) {
+				then.run();
+				return;
+			}
+			JOptionPane.showMessageDialog(this, "The game could not be saved.", "Save Failed", JOptionPane.ERROR_MESSAGE);
+			resetFocus();
+		}));
 	}
 
 	/**
@@ -335,11 +360,7 @@ public class Base extends JFrame {
 	 * @param dir direction player moves
 	 */
 	public void movePlayer(Entity.Direction dir) {
-		try {
-			Maze.player.moveAndTurn(dir);
-		} catch (IllegalArgumentException e) {
-			Maze.player.setDir(dir);
-		}
+		if (simulation != null) simulation.movePlayer(dir);
 	}
 
 	/**
@@ -482,26 +503,24 @@ public class Base extends JFrame {
 		final PhasePanel level = new PhasePanel(game, side);
 
 		timeMS = 0;
+		simulation = new Simulation(GameWorld.getDefault(), Math.max(timeSec, 0) * 1000);
+		simulation.addObserver(sim -> {
+			List<Entity.Action> actions = sim.getLastActions();
+			transformActions(actions).forEach(a -> recorder.addAction(a, sim.getTime()));
+		});
 		gameTimer = new Timer(delay, unused -> {
 			assert SwingUtilities.isEventDispatchThread();
 			level.repaint();
-			timeMS += delay;
-			if (timeMS % 1000 == 0) {
+			boolean ticked = simulation.step();
+			timeMS = simulation.getTime();
+			if (ticked && timeMS % 1000 == 0) {
 				timeSec--;
 				side.setTime(timeSec);
 			}
 
-			Maze.entities.stream()
-					.filter(e -> e instanceof EnemyEntity<?> ee && timeMS % ee.getSpeed() == 0)
-					.forEach(Entity::ping);
-
-			List<Entity.Action> actions = Maze.getChangeMap();
-			transformActions(actions).forEach(a -> recorder.addAction(a, timeMS));
-			game.setAction(actions.stream().map(a -> a.interaction().type()).collect(Collectors.toList()));
-
-			if (timeSec <= 0 || Maze.isGameLost()) {
+			if (simulation.isLost()) {
 				playerDied();
-			} else if (Maze.gameWon()) {
+			} else if (simulation.isWon()) {
 				if (Maze.gameComplete()) {
 					playerWon();
 				} else {
@@ -535,18 +554,7 @@ public class Base extends JFrame {
 	 * @return list of Recorder actions
 	 */
 	private List<Action> transformActions(List<Entity.Action> actions) {
-		List<Action> actionRecords = new ArrayList<>();
-		for (Entity.Action action : actions) {
-			String actionType = action.interaction().type().toString();
-			String oldDir = action.oldDir().toString();
-			String newDir = action.newDir().toString();
-			String color = action.interaction().color().toString();
-			int entityHash = action.id();
-			int vx = action.moveVector().x();
-			int vy = action.moveVector().y();
-			actionRecords.add(new Action(entityHash, actionType, vx, vy, oldDir, newDir, color));
-		}
-		return actionRecords;
+		return actions.stream().map(Action::of).toList();
 	}
 
 	/**
@@ -0,0 +1,449 @@
+package nz.ac.vuw.ecs.swen225.gp22.app;
+
+import nz.ac.vuw.ecs.swen225.gp22.domain.BouncyPad;
+import nz.ac.vuw.ecs.swen225.gp22.domain.ColorableTile;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Entity;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Exit;
+import nz.ac.vuw.ecs.swen225.gp22.domain.GameEvent;
+import nz.ac.vuw.ecs.swen225.gp22.domain.GameWorld;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Ground;
+import nz.ac.vuw.ecs.swen225.gp22.domain.InfoField;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Key;
+import nz.ac.vuw.ecs.swen225.gp22.domain.LockedDoor;
+import nz.ac.vuw.ecs.swen225.gp22.domain.LockedExit;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Maze;
+import nz.ac.vuw.ecs.swen225.gp22.domain.MilkPuddle;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Simulation;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Tile;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Treasure;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Wall;
+import nz.ac.vuw.ecs.swen225.gp22.persistency.Load;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * An environment for training and evaluating bots, in the style of a gym environment.
+ * Each environment plays one level in its own {@link GameWorld}: {@link #reset(int)}
+ * starts an episode and {@link #step(Entity.Direction)} makes one move, then runs the
+ * game for the time a move takes, and returns what the bot can see, its reward, and
+ * whether the episode is over. {@link Vector} steps a batch of environments together.
+ * <p>
+ * Observations are flat int arrays. The first width * height values are the kind of
+ * each cell, row by row, then come the colors of the cells, then the player's x, y
+ * and direction, the treasures left, the keys held of each color, and the ticks left.
+ * Cells are kept up to date from the world's events, so a step only rewrites the
+ * cells that changed.
+ *
+ * @author agent
+ * @version 1.0
+ */
+public final class ChapsEnv {
+	/**
+	 * Kinds of cell in an observation. An enemy standing on a cell hides the tile.
+	 */
+	public static final int FLOOR = 0, WALL = 1, KEY = 2, DOOR = 3, TREASURE = 4, GATE = 5, EXIT = 6,
+			DEATH = 7, PAD = 8, INFO = 9, OTHER = 10, ENEMY = 11;
+
+	/**
+	 * Ticks the game runs for after each move, the same time a move takes in the recorder.
+	 */
+	public static final int TICKS_PER_STEP = 10;
+
+	/**
+	 * Action for a step where the player does not move, when stepping a vector.
+	 */
+	public static final int NO_MOVE = -1;
+
+	/**
+	 * Rewards for each step, each treasure, winning, and losing.
+	 */
+	public static final double STEP_REWARD = -0.01, TREASURE_REWARD = 1, WIN_REWARD = 10, LOSE_REWARD = -10;
+
+	/**
+	 * Cached values of the direction enum, indexed by action.
+	 */
+	private static final Entity.Direction[] DIRECTIONS = Entity.Direction.values();
+
+	/**
+	 * Cached values of the color enum.
+	 */
+	private static final ColorableTile.Color[] COLORS = ColorableTile.Color.values();
+
+	/**
+	 * Number of values after the cells in an observation.
+	 */
+	private static final int EXTRAS = 5 + COLORS.length;
+
+	/**
+	 * The result of a step.
+	 *
+	 * @param observation what the bot can see after the step, reused by the next step
+	 * @param reward      the reward for the step
+	 * @param done        whether or not the episode is over
+	 */
+	public record Step(int[] observation, double reward, boolean done) {
+	}
+
+	/**
+	 * The world the environment plays in.
+	 */
+	private final GameWorld world = new GameWorld();
+
+	/**
+	 * The start of a level and its time limit.
+	 *
+	 * @param snapshot    the world as the level starts
+	 * @param timeLimitMS time limit of the level
+	 */
+	private record LevelStart(GameWorld.Snapshot snapshot, int timeLimitMS) {
+	}
+
+	/**
+	 * Start of each level played so far, so that it is only loaded once.
+	 */
+	private final Map<Integer, LevelStart> starts = new HashMap<>();
+
+	/**
+	 * The running episode, null before the first reset.
+	 */
+	private Simulation simulation;
+
+	/**
+	 * Time limit of the running episode in milliseconds.
+	 */
+	private int timeLimitMS;
+
+	/**
+	 * Size of the current map.
+	 */
+	private int width, height;
+
+	/**
+	 * The current observation.
+	 */
+	private int[] observation = new int[0];
+
+	/**
+	 * Reward collected from events during the current step.
+	 */
+	private double pendingReward;
+
+	/**
+	 * Creates an environment with no level loaded. Call a reset method before stepping.
+	 */
+	public ChapsEnv() {
+		world.getEvents().subscribe(GameEvent.Moved.class, e -> {
+			if (e.getEntity() == world.getPlayer()) return;
+			updateCell(e.getFrom());
+			updateCell(e.getTo());
+		});
+		world.getEvents().subscribe(GameEvent.KeyCollected.class, e -> updateCell(e.getPos()));
+		world.getEvents().subscribe(GameEvent.DoorUnlocked.class, e -> updateCell(e.getPos()));
+		world.getEvents().subscribe(GameEvent.ExitUnlocked.class, e -> updateCell(e.getPos()));
+		world.getEvents().subscribe(GameEvent.TreasureCollected.class, e -> {
+			updateCell(e.getPos());
+			pendingReward += TREASURE_REWARD;
+		});
+	}
+
+	/**
+	 * Starts an episode of a level loaded from its file. The level is only loaded the first
+	 * time it is played, after which the environment goes back to its start. Loading does
+	 * not touch the app, so environments can be reset on any thread.
+	 *
+	 * @param level number of the level
+	 * @return the first observation, reused by the next step
+	 */
+	public int[] reset(int level) {
+		LevelStart start = starts.get(level);
+		if (start == null) {
+			int timeLimitMS = Load.loadLevel(level, world).time() * 1000;
+			start = new LevelStart(world.snapshot(), timeLimitMS);
+			starts.put(level, start);
+		} else {
+			world.restore(start.snapshot());
+		}
+		return begin(start.timeLimitMS());
+	}
+
+	/**
+	 * Starts an episode of a level built by the caller.
+	 *
+	 * @param setup       builds the level, with the environment's world bound to the calling thread
+	 * @param timeLimitMS time after which the player loses, or Simulation.NO_TIME_LIMIT
+	 * @return the first observation, reused by the next step
+	 */
+	public int[] reset(Consumer<GameWorld> setup, int timeLimitMS) {
+		if (setup == null) throw new IllegalArgumentException("Given setup is null.");
+		world.run(() -> setup.accept(world));
+		return begin(timeLimitMS);
+	}
+
+	/**
+	 * Moves the player, or just turns them if the move is blocked, then runs the game
+	 * for TICKS_PER_STEP ticks or until it ends.
+	 *
+	 * @param dir direction to move in, or null to stay still
+	 * @return the observation, reward and whether the episode is over
+	 */
+	public Step step(Entity.Direction dir) {
+		if (simulation == null) throw new IllegalStateException("Environment has not been reset.");
+		if (simulation.isOver()) throw new IllegalStateException("Episode is over, reset the environment.");
+		pendingReward = STEP_REWARD;
+		if (dir != null) simulation.movePlayer(dir);
+		simulation.step(TICKS_PER_STEP);
+		if (simulation.isWon()) pendingReward += WIN_REWARD;
+		else if (simulation.isLost()) pendingReward += LOSE_REWARD;
+		writeExtras();
+		return new Step(observation, pendingReward, simulation.isOver());
+	}
+
+	/**
+	 * @return the current observation, reused by the next step
+	 */
+	public int[] getObservation() {
+		return observation;
+	}
+
+	/**
+	 * @return the number of values in an observation of the current level
+	 */
+	public int getObservationSize() {
+		return observation.length;
+	}
+
+	/**
+	 * @return the world the environment plays in
+	 */
+	public GameWorld getWorld() {
+		return world;
+	}
+
+	/**
+	 * @return whether or not the current episode is over
+	 */
+	public boolean isDone() {
+		return simulation != null && simulation.isOver();
+	}
+
+	/**
+	 * Starts a new simulation of the world and writes the whole observation.
+	 *
+	 * @param timeLimitMS time limit of the episode
+	 * @return the observation
+	 */
+	private int[] begin(int timeLimitMS) {
+		simulation = new Simulation(world, timeLimitMS);
+		this.timeLimitMS = timeLimitMS;
+		width = world.getDimensions().x();
+		height = world.getDimensions().y();
+		if (observation.length != 2 * width * height + EXTRAS) observation = new int[2 * width * height + EXTRAS];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) updateCell(x, y);
+		}
+		writeExtras();
+		return observation;
+	}
+
+	/**
+	 * @param pos position of a cell to write again
+	 */
+	private void updateCell(Maze.Point pos) {
+		updateCell(pos.x(), pos.y());
+	}
+
+	/**
+	 * Writes the kind and color of a cell into the observation.
+	 *
+	 * @param x x position
+	 * @param y y position
+	 */
+	private void updateCell(int x, int y) {
+		if (simulation == null || x >= width || y >= height) return;
+		int cell = y * width + x;
+		Tile tile = world.getTile(x, y);
+		boolean enemy = !world.getEntitiesAt(Maze.Point.of(x, y)).isEmpty();
+		observation[cell] = enemy ? ENEMY : kindOf(tile);
+		observation[width * height + cell] = tile instanceof ColorableTile colorable ? colorable.getColor().ordinal() : 0;
+	}
+
+	/**
+	 * Writes the values after the cells into the observation.
+	 */
+	private void writeExtras() {
+		int i = 2 * width * height;
+		Maze.Point pos = world.getPlayer().getPos();
+		observation[i++] = pos.x();
+		observation[i++] = pos.y();
+		observation[i++] = world.getPlayer().getDir().ordinal();
+		observation[i++] = world.getTreasuresLeft();
+		for (ColorableTile.Color color : COLORS) observation[i++] = world.getPlayer().keyCount(color);
+		observation[i] = timeLimitMS == Simulation.NO_TIME_LIMIT ? -1 : (timeLimitMS - simulation.getTime()) / Simulation.TICK_MS;
+	}
+
+	/**
+	 * @param tile a tile
+	 * @return the kind of cell the tile makes
+	 */
+	private static int kindOf(Tile tile) {
+		if (tile instanceof Ground) return FLOOR;
+		if (tile instanceof Wall) return WALL;
+		if (tile instanceof Key) return KEY;
+		if (tile instanceof LockedDoor) return DOOR;
+		if (tile instanceof Treasure) return TREASURE;
+		if (tile instanceof LockedExit) return GATE;
+		if (tile instanceof Exit) return EXIT;
+		if (tile instanceof MilkPuddle) return DEATH;
+		if (tile instanceof BouncyPad) return PAD;
+		if (tile instanceof InfoField) return INFO;
+		return OTHER;
+	}
+
+	/**
+	 * A batch of environments playing the same level, stepped together. An environment
+	 * whose episode ends is reset straight away, so the observation returned for it is
+	 * the first of its next episode, its done flag marks where the episode ended, and a
+	 * copy of the last observation of the episode is kept with the batch.
+	 */
+	public static final class Vector {
+		/**
+		 * The environments.
+		 */
+		private final ChapsEnv[] envs;
+
+		/**
+		 * The level the environments play.
+		 */
+		private final int level;
+
+		/**
+		 * Steps the environments in parallel.
+		 */
+		private final ForkJoinPool pool;
+
+		/**
+		 * Observation of each environment after the last step.
+		 */
+		private final int[][] observations;
+
+		/**
+		 * Reward of each environment for the last step.
+		 */
+		private final double[] rewards;
+
+		/**
+		 * Whether each environment's episode ended on the last step.
+		 */
+		private final boolean[] dones;
+
+		/**
+		 * Last observation of each environment whose episode ended on the last step.
+		 */
+		private final int[][] terminals;
+
+		/**
+		 * The results of stepping a vector, reused by the next step.
+		 *
+		 * @param observations the observation of each environment
+		 * @param rewards      the reward of each environment
+		 * @param dones        whether each environment's episode ended
+		 * @param terminals    a copy of the last observation of each episode that ended, null for the others
+		 */
+		public record Batch(int[][] observations, double[] rewards, boolean[] dones, int[][] terminals) {
+		}
+
+		/**
+		 * Creates a batch of environments that steps on the common pool.
+		 *
+		 * @param count number of environments
+		 * @param level level the environments play
+		 */
+		public Vector(int count, int level) {
+			this(count, level, ForkJoinPool.commonPool());
+		}
+
+		/**
+		 * Creates a batch of environments.
+		 *
+		 * @param count number of environments
+		 * @param level level the environments play
+		 * @param pool  pool to step the environments on
+		 */
+		public Vector(int count, int level, ForkJoinPool pool) {
+			if (count <= 0) throw new IllegalArgumentException("Number of environments must be positive.");
+			if (pool == null) throw new IllegalArgumentException("Given pool is null.");
+			this.envs = new ChapsEnv[count];
+			this.level = level;
+			this.pool = pool;
+			this.observations = new int[count][];
+			this.rewards = new double[count];
+			this.dones = new boolean[count];
+			this.terminals = new int[count][];
+			for (int i = 0; i < count; i++) envs[i] = new ChapsEnv();
+		}
+
+		/**
+		 * Starts a new episode in every environment.
+		 *
+		 * @return the first observation of each environment
+		 */
+		public int[][] resetAll() {
+			parallel(i -> observations[i] = envs[i].reset(level));
+			return observations;
+		}
+
+		/**
+		 * Steps every environment, resetting those whose episodes end.
+		 *
+		 * @param actions direction ordinal for each environment, or NO_MOVE
+		 * @return the results, reused by the next step
+		 */
+		public Batch stepAll(int[] actions) {
+			if (actions == null || actions.length != envs.length)
+				throw new IllegalArgumentException("Need one action for each environment.");
+			for (int action : actions) {
+				if (action != NO_MOVE && (action < 0 || action >= DIRECTIONS.length))
+					throw new IllegalArgumentException("Invalid action: " + action);
+			}
+			parallel(i -> {
+				if (envs[i].simulation == null) envs[i].reset(level);
+				Step step = envs[i].step(actions[i] == NO_MOVE ? null : DIRECTIONS[actions[i]]);
+				rewards[i] = step.reward();
+				dones[i] = step.done();
+				terminals[i] = step.done() ? step.observation().clone() : null;
+				observations[i] = step.done() ? envs[i].reset(level) : step.observation();
+			});
+			return new Batch(observations, rewards, dones, terminals);
+		}
+
+		/**
+		 * @return the number of environments
+		 */
+		public int size() {
+			return envs.length;
+		}
+
+		/**
+		 * @param index index of an environment
+		 * @return the environment
+		 */
+		public ChapsEnv get(int index) {
+			return envs[index];
+		}
+
+		/**
+		 * Runs a task for every environment on the pool.
+		 *
+		 * @param task the task, given the index of an environment
+		 */
+		private void parallel(IntConsumer task) {
+			pool.invoke(ForkJoinTask.adapt(() -> IntStream.range(0, envs.length).parallel().forEach(task)));
+		}
+	}
+}
@@ -0,0 +1,449 @@
+package nz.ac.vuw.ecs.swen225.gp22.app;
+
+import nz.ac.vuw.ecs.swen225.gp22.domain.Entity;
+import nz.ac.vuw.ecs.swen225.gp22.domain.GameWorld;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Simulation;
+import nz.ac.vuw.ecs.swen225.gp22.persistency.Load;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Runs many independent games without a window, for bot tournaments and load testing.
+ * Every game has its own {@link GameWorld} and {@link Simulation}, and moves for its
+ * player are sent through a queue, so any thread can play any game.
+ * <p>
+ * Games share a small pool of threads rather than having one each, so thousands can
+ * run at once. A game is only ever run by one task at a time, which keeps its world
+ * confined to one thread at a time as the domain expects. Games either tick in real
+ * time, once every {@link Simulation#TICK_MS}, or as fast as the pool can run them,
+ * in batches so that games take turns.
+ *
+ * @author agent
+ * @version 1.0
+ */
+public final class GameHost implements AutoCloseable {
+	/**
+	 * Ticks a game runs before letting the next game have the thread, when not in real time.
+	 */
+	public static final int BATCH_TICKS = 64;
+
+	/**
+	 * Runs the games.
+	 */
+	private final ScheduledExecutorService executor;
+
+	/**
+	 * Whether games tick in real time or as fast as possible.
+	 */
+	private final boolean realTime;
+
+	/**
+	 * Every game that has been started, in the order they were added.
+	 */
+	private final Queue<Game> games = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Ticks run by all games.
+	 */
+	private final LongAdder totalTicks = new LongAdder();
+
+	/**
+	 * Used to make game IDs.
+	 */
+	private final AtomicInteger nextID = new AtomicInteger();
+
+	/**
+	 * When the host was made, for working out throughput.
+	 */
+	private final long startNanos = System.nanoTime();
+
+	/**
+	 * Whether or not the host has been closed.
+	 */
+	private volatile boolean closed = false;
+
+	/**
+	 * A game run by the host. Its moves can be sent from any thread, and its results
+	 * can be read from any thread, but its world must only be used once it has finished.
+	 */
+	public final class Game {
+		/**
+		 * ID of the game, unique within the host.
+		 */
+		private final int id;
+
+		/**
+		 * The game's world.
+		 */
+		private final GameWorld world;
+
+		/**
+		 * Advances the game's world.
+		 */
+		private final Simulation simulation;
+
+		/**
+		 * Moves waiting to be made, all of which are made on the next tick.
+		 */
+		private final Queue<Entity.Direction> inputs = new ConcurrentLinkedQueue<>();
+
+		/**
+		 * Completed with the game once it has finished.
+		 */
+		private final CompletableFuture<Game> finished = new CompletableFuture<>();
+
+		/**
+		 * The repeating task that runs the game in real time.
+		 */
+		private volatile Future<?> task;
+
+		/**
+		 * Whether or not the game has been asked to stop.
+		 */
+		private volatile boolean stopped = false;
+
+		/**
+		 * Results of the game, set when it finishes.
+		 */
+		private volatile boolean won = false, lost = false;
+
+		/**
+		 * Ticks run, and the total and longest time taken by a tick in nanoseconds.
+		 * Only the task running the game writes these.
+		 */
+		private volatile long ticks = 0, tickNanos = 0, maxTickNanos = 0;
+
+		/**
+		 * Creates a game for a world that has a level loaded.
+		 *
+		 * @param world       The world.
+		 * @param timeLimitMS Time after which the player loses, or Simulation.NO_TIME_LIMIT.
+		 */
+		private Game(GameWorld world, int timeLimitMS) {
+			this.id = nextID.getAndIncrement();
+			this.world = world;
+			this.simulation = new Simulation(world, timeLimitMS);
+		}
+
+		/**
+		 * Sends a move for the player, which is made on the game's next tick.
+		 *
+		 * @param dir direction to move in
+		 */
+		public void send(Entity.Direction dir) {
+			if (dir == null) throw new IllegalArgumentException("Given direction is null.");
+			inputs.add(dir);
+		}
+
+		/**
+		 * Asks the game to stop. It finishes, neither won nor lost, on its next turn to run.
+		 */
+		public void stop() {
+			stopped = true;
+		}
+
+		/**
+		 * @return a future that is completed with this game once it has finished
+		 */
+		public CompletableFuture<Game> getFinished() {
+			return finished;
+		}
+
+		/**
+		 * @return the ID of the game
+		 */
+		public int getId() {
+			return id;
+		}
+
+		/**
+		 * Gets the game's world. It must not be used until the game has finished.
+		 *
+		 * @return the world
+		 */
+		public GameWorld getWorld() {
+			return world;
+		}
+
+		/**
+		 * @return whether or not the game has finished
+		 */
+		public boolean isOver() {
+			return finished.isDone();
+		}
+
+		/**
+		 * @return whether or not the player reached the exit
+		 */
+		public boolean isWon() {
+			return won;
+		}
+
+		/**
+		 * @return whether or not the player died or ran out of time
+		 */
+		public boolean isLost() {
+			return lost;
+		}
+
+		/**
+		 * @return the number of ticks run
+		 */
+		public long getTicks() {
+			return ticks;
+		}
+
+		/**
+		 * @return the mean time taken by a tick in nanoseconds, including the moves made in it
+		 */
+		public double getMeanTickNanos() {
+			long count = ticks;
+			return count == 0 ? 0 : (double) tickNanos / count;
+		}
+
+		/**
+		 * @return the longest time taken by a tick in nanoseconds
+		 */
+		public long getMaxTickNanos() {
+			return maxTickNanos;
+		}
+
+		/**
+		 * Makes the moves waiting, then advances the simulation by one tick.
+		 */
+		private void tick() {
+			long start = System.nanoTime();
+			Entity.Direction dir;
+			while ((dir = inputs.poll()) != null && !simulation.isOver()) simulation.movePlayer(dir);
+			simulation.step();
+			long took = System.nanoTime() - start;
+			ticks++;
+			tickNanos += took;
+			if (took > maxTickNanos) maxTickNanos = took;
+			totalTicks.increment();
+		}
+
+		/**
+		 * Runs a batch of ticks, then queues the next batch unless the game has finished.
+		 */
+		private void runBatch() {
+			try {
+				for (int i = 0; i < BATCH_TICKS && !simulation.isOver() && !stopped; i++) tick();
+				if (!finishIfOver()) executor.execute(this::runBatch);
+			} catch (RejectedExecutionException e) {
+				finish();
+			} catch (RuntimeException e) {
+				fail(e);
+			}
+		}
+
+		/**
+		 * Runs a single tick, as part of the repeating real time task.
+		 */
+		private void runRealTime() {
+			if (finished.isDone()) {
+				Future<?> current = task;
+				if (current != null) current.cancel(false);
+				return;
+			}
+			try {
+				if (!stopped) tick();
+				finishIfOver();
+			} catch (RuntimeException e) {
+				fail(e);
+			}
+		}
+
+		/**
+		 * Finishes the game if it is over or has been stopped.
+		 *
+		 * @return whether or not the game finished
+		 */
+		private boolean finishIfOver() {
+			if (!stopped && !simulation.isOver()) return false;
+			finish();
+			return true;
+		}
+
+		/**
+		 * Records the results and completes the future. Must only be called
+		 * by the task running the game, or once no task can run it.
+		 */
+		private void finish() {
+			won = simulation.isWon();
+			lost = simulation.isLost();
+			Future<?> current = task;
+			if (current != null) current.cancel(false);
+			finished.complete(this);
+		}
+
+		/**
+		 * Ends the game because it threw an exception.
+		 *
+		 * @param e the exception
+		 */
+		private void fail(RuntimeException e) {
+			Future<?> current = task;
+			if (current != null) current.cancel(false);
+			finished.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Creates a host with a thread for each processor.
+	 *
+	 * @param realTime whether games tick in real time, or as fast as possible
+	 */
+	public GameHost(boolean realTime) {
+		this(Runtime.getRuntime().availableProcessors(), realTime);
+	}
+
+	/**
+	 * Creates a host.
+	 *
+	 * @param threads  the number of threads games share
+	 * @param realTime whether games tick in real time, or as fast as possible
+	 */
+	public GameHost(int threads, boolean realTime) {
+		if (threads <= 0) throw new IllegalArgumentException("Number of threads must be positive.");
+		AtomicInteger threadCount = new AtomicInteger();
+		this.executor = Executors.newScheduledThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "game-host-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.realTime = realTime;
+	}
+
+	/**
+	 * Starts a game in a new world.
+	 *
+	 * @param setup       builds the level, with the new world bound to the calling thread
+	 * @param timeLimitMS time after which the player loses, or Simulation.NO_TIME_LIMIT
+	 * @return the game
+	 */
+	public Game start(Consumer<GameWorld> setup, int timeLimitMS) {
+		if (setup == null) throw new IllegalArgumentException("Given setup is null.");
+		if (closed) throw new IllegalStateException("Host has been closed.");
+		GameWorld world = new GameWorld();
+		world.run(() -> setup.accept(world));
+		return launch(world, timeLimitMS);
+	}
+
+	/**
+	 * Starts a game of a level loaded from its file, or from the level cache. The app's
+	 * level and time are not changed, so hosts can start levels alongside the Swing game.
+	 * The game has the level's time limit, and its enemies belong to the game's world.
+	 *
+	 * @param level number of the level
+	 * @return the game
+	 */
+	public Game startLevel(int level) {
+		if (closed) throw new IllegalStateException("Host has been closed.");
+		GameWorld world = new GameWorld();
+		Load.LevelStart start = Load.loadLevel(level, world);
+		return launch(world, start.time() * 1000);
+	}
+
+	/**
+	 * Schedules a game in a world that has its level loaded.
+	 *
+	 * @param world       the world of the game
+	 * @param timeLimitMS time after which the player loses, or Simulation.NO_TIME_LIMIT
+	 * @return the game
+	 */
+	private Game launch(GameWorld world, int timeLimitMS) {
+		Game game = new Game(world, timeLimitMS);
+		games.add(game);
+		if (realTime) {
+			game.task = executor.scheduleAtFixedRate(game::runRealTime, Simulation.TICK_MS, Simulation.TICK_MS, TimeUnit.MILLISECONDS);
+		} else {
+			executor.execute(game::runBatch);
+		}
+		return game;
+	}
+
+	/**
+	 * @return every game that has been started, in the order they were added
+	 */
+	public List<Game> getGames() {
+		return List.copyOf(games);
+	}
+
+	/**
+	 * @return the number of games that have not finished
+	 */
+	public int getRunning() {
+		return (int) games.stream().filter(g -> !g.isOver()).count();
+	}
+
+	/**
+	 * @return the number of ticks run by all games
+	 */
+	public long getTotalTicks() {
+		return totalTicks.sum();
+	}
+
+	/**
+	 * @return the number of ticks run by all games per second since the host was made
+	 */
+	public double getThroughput() {
+		double seconds = (System.nanoTime() - startNanos) / 1e9;
+		return seconds == 0 ? 0 : totalTicks.sum() / seconds;
+	}
+
+	/**
+	 * Waits for every game started so far to finish.
+	 *
+	 * @param timeout the longest time to wait
+	 * @param unit    unit of the timeout
+	 * @return whether or not every game finished in time
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean awaitAll(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (Game game : games) {
+			long left = deadline - System.nanoTime();
+			if (left <= 0 && !game.isOver()) return false;
+			try {
+				game.getFinished().get(Math.max(left, 0), TimeUnit.NANOSECONDS);
+			} catch (TimeoutException e) {
+				return false;
+			} catch (ExecutionException ignored) {
+				// a game that failed has still finished
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Stops every game and the threads running them. Games that have not finished
+	 * are finished, neither won nor lost.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		games.forEach(Game::stop);
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(1, TimeUnit.MINUTES)) executor.shutdownNow();
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		if (executor.isTerminated()) games.stream().filter(g -> !g.isOver()).forEach(Game::finish);
+	}
+}
@@ -0,0 +1,291 @@
+package nz.ac.vuw.ecs.swen225.gp22.domain;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads and writes maps as text, one character per tile in the same form as
+ * {@link GameWorld#getStringState()}. A legend of lines starting with ';' comes
+ * before the grid, and holds the size of the map, the player, the counters, and
+ * the colors, directions and info text of the tiles that have them, each listed
+ * in the order their tiles appear in the grid:
+ * <pre>
+ * ;chaps-ascii 1 5 2
+ * ;player 0 0 Down
+ * ;treasures 1
+ * ;next -1
+ * ;colors Blue Blue
+ * ;text Find the key\nthen the door
+ * GKDTW
+ * IGLEW
+ * </pre>
+ * Both directions stream: the writer reads the map a row at a time, and the reader
+ * writes tiles straight into a {@link MapBuilder} as it reads each row, so neither
+ * holds the whole text in memory. Entities other than the player are not stored, and
+ * tiles from other modules are written by their string form and cannot be read back.
+ *
+ * @author agent
+ * @version 1.0
+ */
+public final class AsciiCodec {
+    /**
+     * First word of the text, followed by the version and the size of the map.
+     */
+    public static final String HEADER = ";chaps-ascii";
+
+    /**
+     * Version of the format written.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Packed codes of the tiles that have no parameters, keyed by their character.
+     */
+    private static final int[] PLAIN_CODES = new int[128];
+
+    static {
+        Arrays.fill(PLAIN_CODES, -1);
+        PLAIN_CODES['G'] = TileGrid.code(Ground.class, new Object[0]);
+        PLAIN_CODES['W'] = TileGrid.code(Wall.class, new Object[0]);
+        PLAIN_CODES['T'] = TileGrid.code(Treasure.class, new Object[0]);
+        PLAIN_CODES['L'] = TileGrid.code(LockedExit.class, new Object[0]);
+        PLAIN_CODES['E'] = TileGrid.code(Exit.class, new Object[0]);
+        PLAIN_CODES['M'] = TileGrid.code(MilkPuddle.class, new Object[0]);
+    }
+
+    /**
+     * Not used, this class only has static methods.
+     */
+    private AsciiCodec() {
+    }
+
+    /**
+     * Writes the map of a world as text.
+     *
+     * @param world The world to write.
+     * @param out   Where to write the text.
+     * @throws IOException If the text could not be written.
+     */
+    public static void write(GameWorld world, Appendable out) throws IOException {
+        if (world == null || out == null) throw new IllegalArgumentException("Given world or output is null.");
+        TileGrid grid = world.getTileMap();
+        int width = grid.width(), height = grid.height();
+        Player player = world.getPlayer();
+        out.append(HEADER).append(' ').append(String.valueOf(VERSION)).append(' ')
+                .append(String.valueOf(width)).append(' ').append(String.valueOf(height)).append('\n');
+        out.append(";player ").append(String.valueOf(player.getPos().x())).append(' ')
+                .append(String.valueOf(player.getPos().y())).append(' ').append(player.getDir().name()).append('\n');
+        out.append(";treasures ").append(String.valueOf(world.getTreasuresLeft())).append('\n');
+        out.append(";next ").append(String.valueOf(world.getNextLevel())).append('\n');
+
+        StringBuilder colors = new StringBuilder(), pads = new StringBuilder();
+        List<String> texts = new ArrayList<>();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (grid.liveTile(x, y) != null) continue;
+                switch (grid.type(x, y)) {
+                    case TileGrid.KEY, TileGrid.DOOR -> colors.append(' ').append(grid.color(x, y).name());
+                    case TileGrid.BOUNCE_PAD -> pads.append(' ').append(grid.direction(x, y).name());
+                    case TileGrid.INFO -> texts.add(grid.text(x, y));
+                    default -> {
+                    }
+                }
+            }
+        }
+        if (!colors.isEmpty()) out.append(";colors").append(colors).append('\n');
+        if (!pads.isEmpty()) out.append(";pads").append(pads).append('\n');
+        for (String text : texts) out.append(";text ").append(escape(text)).append('\n');
+
+        StringBuilder row = new StringBuilder(width + 1);
+        for (int y = 0; y < height; y++) {
+            row.setLength(0);
+            grid.appendRow(y, row);
+            out.append(row.append('\n'));
+        }
+    }
+
+    /**
+     * Overloaded method for write() that returns the text.
+     *
+     * @param world The world to write.
+     * @return The text.
+     */
+    public static String write(GameWorld world) {
+        StringBuilder out = new StringBuilder();
+        try {
+            write(world, out);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write to a string.", e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Reads a map from text and replaces the map of a world with it.
+     *
+     * @param in    Where to read the text from.
+     * @param world The world to load the map into.
+     * @return The world.
+     * @throws IOException              If the text could not be read.
+     * @throws IllegalArgumentException If the text is not a valid map.
+     */
+    public static GameWorld read(Reader in, GameWorld world) throws IOException {
+        if (in == null || world == null) throw new IllegalArgumentException("Given input or world is null.");
+        BufferedReader reader = in instanceof BufferedReader buffered ? buffered : new BufferedReader(in);
+        String line = reader.readLine();
+        String[] header = line == null ? new String[0] : line.split(" ");
+        if (header.length != 4 || !header[0].equals(HEADER)) throw new IllegalArgumentException("Missing header on line 1.");
+        if (parseInt(header[1], 1) != VERSION) throw new IllegalArgumentException("Unsupported version " + header[1] + ".");
+        int width = parseInt(header[2], 1), height = parseInt(header[3], 1);
+        MapBuilder builder = world.builder(Maze.Point.of(width, height));
+
+        int lineNumber = 1, treasures = -1;
+        String[] colors = new String[0], pads = new String[0];
+        List<String> texts = new ArrayList<>();
+        while ((line = reader.readLine()) != null && line.startsWith(";")) {
+            lineNumber++;
+            int space = line.indexOf(' ');
+            String key = space < 0 ? line.substring(1) : line.substring(1, space);
+            String value = space < 0 ? "" : line.substring(space + 1);
+            String[] words = value.isEmpty() ? new String[0] : value.split(" ");
+            switch (key) {
+                case "player" -> {
+                    if (words.length != 3) throw new IllegalArgumentException("Invalid player on line " + lineNumber + ".");
+                    builder.player(Maze.Point.of(parseInt(words[0], lineNumber), parseInt(words[1], lineNumber)),
+                            parseEnum(Entity.Direction.class, words[2], lineNumber));
+                }
+                case "treasures" -> treasures = parseInt(value, lineNumber);
+                case "next" -> builder.nextLevel(parseInt(value, lineNumber));
+                case "colors" -> colors = words;
+                case "pads" -> pads = words;
+                case "text" -> texts.add(unescape(value));
+                default -> throw new IllegalArgumentException("Unknown legend entry on line " + lineNumber + ".");
+            }
+        }
+
+        int colorIndex = 0, padIndex = 0, textIndex = 0, treasuresSeen = 0;
+        Object[] none = new Object[0];
+        for (int y = 0; y < height; y++, line = reader.readLine()) {
+            lineNumber++;
+            if (line == null || line.length() != width)
+                throw new IllegalArgumentException("Row on line " + lineNumber + " is not " + width + " tiles wide.");
+            for (int x = 0; x < width; x++) {
+                char symbol = line.charAt(x);
+                int code = symbol < PLAIN_CODES.length ? PLAIN_CODES[symbol] : -1;
+                Object[] params = none;
+                if (code < 0) {
+                    params = switch (symbol) {
+                        case 'K', 'D' -> {
+                            if (colorIndex == colors.length)
+                                throw new IllegalArgumentException("Too few colors for line " + lineNumber + ".");
+                            yield new Object[]{parseEnum(ColorableTile.Color.class, colors[colorIndex++], lineNumber)};
+                        }
+                        case 'B' -> {
+                            if (padIndex == pads.length)
+                                throw new IllegalArgumentException("Too few pad directions for line " + lineNumber + ".");
+                            yield new Object[]{parseEnum(Entity.Direction.class, pads[padIndex++], lineNumber)};
+                        }
+                        case 'I' -> {
+                            if (textIndex == texts.size())
+                                throw new IllegalArgumentException("Too few info texts for line " + lineNumber + ".");
+                            yield new Object[]{texts.get(textIndex++)};
+                        }
+                        default -> throw new IllegalArgumentException(
+                                "Unknown tile '" + symbol + "' on line " + lineNumber + ".");
+                    };
+                    code = TileGrid.code(switch (symbol) {
+                        case 'K' -> Key.class;
+                        case 'D' -> LockedDoor.class;
+                        case 'B' -> BouncyPad.class;
+                        default -> InfoField.class;
+                    }, params);
+                } else if (symbol == 'G') {
+                    continue;
+                } else if (symbol == 'T') {
+                    treasuresSeen++;
+                }
+                builder.packed(x, y, code, params);
+            }
+        }
+        if (line != null && !line.isEmpty()) throw new IllegalArgumentException("Extra text after the grid.");
+        if (colorIndex != colors.length || padIndex != pads.length || textIndex != texts.size())
+            throw new IllegalArgumentException("Legend has more entries than the grid uses.");
+        return builder.treasures(treasures < 0 ? treasuresSeen : treasures).commit();
+    }
+
+    /**
+     * Overloaded method for read() that reads from a string.
+     *
+     * @param text  The text of the map.
+     * @param world The world to load the map into.
+     * @return The world.
+     */
+    public static GameWorld read(String text, GameWorld world) {
+        if (text == null) throw new IllegalArgumentException("Given text is null.");
+        try {
+            return read(new StringReader(text), world);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read from a string.", e);
+        }
+    }
+
+    /**
+     * @param value      Text of a number.
+     * @param lineNumber Line the number is on, for the error.
+     * @return The number.
+     */
+    private static int parseInt(String value, int lineNumber) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number on line " + lineNumber + ".", e);
+        }
+    }
+
+    /**
+     * @param type       The enum class.
+     * @param name       Name of the constant.
+     * @param lineNumber Line the name is on, for the error.
+     * @param <E>        The enum type.
+     * @return The constant.
+     */
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String name, int lineNumber) {
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid " + type.getSimpleName() + " on line " + lineNumber + ".", e);
+        }
+    }
+
+    /**
+     * @param text Info text.
+     * @return The text with backslashes and line breaks escaped, so it fits on one line.
+     */
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    /**
+     * @param text Escaped info text.
+     * @return The text as it was before it was escaped.
+     */
+    private static String unescape(String text) {
+        if (text.indexOf('\\') < 0) return text;
+        StringBuilder out = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != '\\' || i + 1 == text.length()) {
+                out.append(c);
+                continue;
+            }
+            char next = text.charAt(++i);
+            out.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+        }
+        return out.toString();
+    }
+}
@@ -5,14 +5,9 @@ package nz.ac.vuw.ecs.swen225.gp22.domain;
  * in a direction.
  *
  * @author Abdul
- * @version 1.2
+ * @version 1.3
  */
 public class BouncyPad extends Tile {
-    /**
-     * Used for tile functionality that depends on the player.
-     */
-    private final Observer<Player> playerObserver;
-
     /**
      * The direction the player will get bounced in.
      */
@@ -28,14 +23,6 @@ public class BouncyPad extends Tile {
     public BouncyPad(Maze.Point tilePos, Entity.Direction dir) {
         super(tilePos, false);
         this.dir = dir;
-
-        playerObserver = player -> {
-            if (player.getPos().equals(tilePos)) {
-                player.setPos(tilePos.add(dir).add(dir));
-                player.setDir(dir);
-            }
-        };
-        Maze.player.addObserver(playerObserver);
     }
 
     /**
@@ -45,9 +32,16 @@ public class BouncyPad extends Tile {
         return dir;
     }
 
+    /**
+     * When the player is on this tile, they are moved
+     * 2 tiles in the direction of the pad.
+     *
+     * @param player The player on this tile.
+     */
     @Override
-    public void deleteTile() {
-        Maze.player.removeObserver(playerObserver);
+    public void onEnter(Player player) {
+        player.setPos(getPos().add(dir).add(dir));
+        player.setDir(dir);
     }
 
     @Override
@@ -0,0 +1,205 @@
+package nz.ac.vuw.ecs.swen225.gp22.domain;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A temporary memory-mapped file that chunks of tile codes are paged out to, so that
+ * very large maps do not need to keep every chunk on the heap. Chunks are written to
+ * numbered slots, and a slot can be shared between a grid and any snapshots taken of it.
+ * Each slot counts the grids and snapshots that hold it, and once the last one has
+ * released it the slot is reused before the file is grown.
+ * <p>
+ * The file is mapped in segments as it grows, and is deleted once it is closed, which
+ * happens when nothing refers to it any more. It can be shared by grids on different
+ * threads, so its methods are synchronized.
+ *
+ * @author agent
+ * @version 1.0
+ */
+final class ChunkFile {
+    /**
+     * Number of slots in each mapped segment.
+     */
+    private static final int SEGMENT_SLOTS = 1024;
+
+    /**
+     * Closes the files of chunk files that are no longer used.
+     */
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    /**
+     * Number of codes in each chunk.
+     */
+    private final int chunkSize;
+
+    /**
+     * The open file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The mapped segments, in order.
+     */
+    private final List<ShortBuffer> segments = new ArrayList<>();
+
+    /**
+     * Number of slots that have been written.
+     */
+    private int slots = 0;
+
+    /**
+     * Number of grids and snapshots holding each slot.
+     */
+    private int[] holders = new int[SEGMENT_SLOTS];
+
+    /**
+     * Slots that have been written but are no longer held.
+     */
+    private final BitSet free = new BitSet();
+
+    /**
+     * Creates a new empty file.
+     *
+     * @param chunkSize Number of codes in each chunk.
+     * @throws UncheckedIOException If the file could not be created.
+     */
+    ChunkFile(int chunkSize) {
+        if (chunkSize <= 0) throw new IllegalArgumentException("Chunk size must be positive.");
+        this.chunkSize = chunkSize;
+        try {
+            Path path = Files.createTempFile("chaps-tiles", ".chunks");
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        FileChannel toClose = channel;
+        CLEANER.register(this, () -> {
+            try {
+                toClose.close();
+            } catch (IOException ignored) {
+                // the file is temporary, so there is nothing more to do
+            }
+        });
+    }
+
+    /**
+     * Writes a chunk to a free slot, or to a new one if none are free. The caller
+     * holds the slot until it releases it.
+     *
+     * @param chunk The codes of the chunk.
+     * @return The slot it was written to.
+     * @throws UncheckedIOException If the file could not be grown.
+     */
+    synchronized int write(short[] chunk) {
+        if (chunk.length != chunkSize) throw new IllegalArgumentException("Chunk is the wrong size.");
+        int slot = free.nextSetBit(0);
+        if (slot < 0) {
+            slot = slots;
+            if (slot / SEGMENT_SLOTS == segments.size()) {
+                long bytes = (long) SEGMENT_SLOTS * chunkSize * Short.BYTES;
+                try {
+                    segments.add(channel.map(FileChannel.MapMode.READ_WRITE, segments.size() * bytes, bytes).asShortBuffer());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (holders.length < segments.size() * SEGMENT_SLOTS)
+                    holders = Arrays.copyOf(holders, segments.size() * SEGMENT_SLOTS);
+            }
+            slots++;
+        } else {
+            free.clear(slot);
+        }
+        segments.get(slot / SEGMENT_SLOTS).put((slot % SEGMENT_SLOTS) * chunkSize, chunk);
+        holders[slot] = 1;
+        return slot;
+    }
+
+    /**
+     * Reads the chunk in a slot.
+     *
+     * @param slot A slot that is held.
+     * @return A new array holding the codes of the chunk.
+     */
+    synchronized short[] read(int slot) {
+        checkHeld(slot);
+        short[] chunk = new short[chunkSize];
+        segments.get(slot / SEGMENT_SLOTS).get((slot % SEGMENT_SLOTS) * chunkSize, chunk);
+        return chunk;
+    }
+
+    /**
+     * Holds each slot again, for a snapshot or grid that shares them.
+     *
+     * @param held Slots that are held, where -1 is skipped.
+     */
+    synchronized void hold(int[] held) {
+        for (int slot : held) {
+            if (slot >= 0) checkHeld(slot);
+        }
+        for (int slot : held) {
+            if (slot >= 0) holders[slot]++;
+        }
+    }
+
+    /**
+     * Releases a slot, freeing it once nothing holds it.
+     *
+     * @param slot A slot that is held.
+     */
+    synchronized void release(int slot) {
+        checkHeld(slot);
+        if (--holders[slot] == 0) free.set(slot);
+    }
+
+    /**
+     * Releases slots once an owner is no longer used.
+     *
+     * @param owner The grid or snapshot holding the slots.
+     * @param held  The slots it holds, where -1 is skipped. Read when the owner is no longer used,
+     *              so the owner can keep changing them, and must not refer to the owner.
+     */
+    void releaseWhenUnused(Object owner, int[] held) {
+        CLEANER.register(owner, () -> {
+            synchronized (this) {
+                for (int slot : held) {
+                    if (slot >= 0) release(slot);
+                }
+            }
+        });
+    }
+
+    /**
+     * @param slot A slot.
+     * @throws IllegalArgumentException If the slot is not held.
+     */
+    private void checkHeld(int slot) {
+        if (slot < 0 || slot >= slots || holders[slot] == 0)
+            throw new IllegalArgumentException("Slot is not held.");
+    }
+
+    /**
+     * @return The number of slots that have been written.
+     */
+    synchronized int slots() {
+        return slots;
+    }
+
+    /**
+     * @return The number of slots that are free to be written again.
+     */
+    synchronized int freeSlots() {
+        return free.cardinality();
+    }
+}
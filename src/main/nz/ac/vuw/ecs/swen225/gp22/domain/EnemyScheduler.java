@@ -0,0 +1,167 @@
+package nz.ac.vuw.ecs.swen225.gp22.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hashed timing wheel that decides which enemies are pinged each tick. Every enemy is
+ * due on the ticks where the time is a multiple of its speed, and sits in the slot for
+ * its next due tick, so a tick only looks at the enemies hashed to its slot rather than
+ * at every entity. Enemies that are due on the same tick are pinged in the order they
+ * appear in the world's entity list, which keeps replays deterministic.
+ *
+ * @author agent
+ * @version 1.0
+ */
+final class EnemyScheduler {
+    /**
+     * Number of slots on the wheel, must be a power of 2.
+     */
+    private static final int SLOTS = 256;
+
+    /**
+     * A scheduled enemy.
+     */
+    private static final class Entry {
+        /**
+         * The enemy to ping.
+         */
+        final EnemyEntity<?> enemy;
+
+        /**
+         * Number of ticks between pings.
+         */
+        final int period;
+
+        /**
+         * Position of the enemy in the entity list, used to order enemies due on the same tick.
+         */
+        final int order;
+
+        /**
+         * The next tick the enemy is due on.
+         */
+        long deadline;
+
+        /**
+         * Default constructor, sets every field.
+         *
+         * @param enemy    The enemy to ping.
+         * @param period   Number of ticks between pings.
+         * @param order    Position of the enemy in the entity list.
+         * @param deadline The next tick the enemy is due on.
+         */
+        Entry(EnemyEntity<?> enemy, int period, int order, long deadline) {
+            this.enemy = enemy;
+            this.period = period;
+            this.order = order;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * Enemies waiting to be pinged, by deadline modulo the number of slots.
+     */
+    private final List<List<Entry>> wheel = new ArrayList<>(SLOTS);
+
+    /**
+     * Enemies due on the current tick, reused between ticks.
+     */
+    private final List<Entry> due = new ArrayList<>();
+
+    /**
+     * Length of a tick in milliseconds.
+     */
+    private final int tickMS;
+
+    /**
+     * The number of ticks that have been run.
+     */
+    private long now = 0;
+
+    /**
+     * Creates an empty wheel.
+     *
+     * @param tickMS Length of a tick in milliseconds.
+     */
+    EnemyScheduler(int tickMS) {
+        if (tickMS <= 0) throw new IllegalArgumentException("Tick length must be positive.");
+        this.tickMS = tickMS;
+        for (int i = 0; i < SLOTS; i++) wheel.add(new ArrayList<>());
+    }
+
+    /**
+     * Replaces the scheduled enemies with those in an entity list. Each is next due
+     * on the first tick after the current one where the time is a multiple of its speed.
+     * Suppressed the raw types warning as the generic type is only used for observers.
+     *
+     * @param entities The world's entities.
+     */
+    @SuppressWarnings("rawtypes")
+    void schedule(List<Entity> entities) {
+        wheel.forEach(List::clear);
+        for (int i = 0; i < entities.size(); i++) {
+            if (!(entities.get(i) instanceof EnemyEntity<?> enemy)) continue;
+            if (enemy.getSpeed() <= 0) throw new IllegalArgumentException("Enemy speed must be positive.");
+            int period = enemy.getSpeed() / gcd(enemy.getSpeed(), tickMS);
+            insert(new Entry(enemy, period, i, (now / period + 1) * period));
+        }
+    }
+
+    /**
+     * Moves the clock to a tick and empties the wheel, for when a simulation goes back
+     * to an earlier time. Enemies must be scheduled again before the next tick.
+     *
+     * @param ticks The number of ticks that have been run.
+     */
+    void rewind(long ticks) {
+        if (ticks < 0) throw new IllegalArgumentException("Tick cannot be negative.");
+        wheel.forEach(List::clear);
+        now = ticks;
+    }
+
+    /**
+     * Advances by one tick and pings every enemy that is due.
+     *
+     * @param pinged Has the enemies that were pinged added to it, in entity order.
+     */
+    void tick(List<Entity<?>> pinged) {
+        now++;
+        List<Entry> slot = wheel.get((int) (now & (SLOTS - 1)));
+        for (int i = slot.size() - 1; i >= 0; i--) {
+            if (slot.get(i).deadline != now) continue;
+            due.add(slot.get(i));
+            slot.set(i, slot.get(slot.size() - 1));
+            slot.remove(slot.size() - 1);
+        }
+        due.sort((a, b) -> Integer.compare(a.order, b.order));
+        for (Entry entry : due) {
+            entry.deadline += entry.period;
+            insert(entry);
+        }
+        try {
+            for (Entry entry : due) {
+                entry.enemy.ping();
+                pinged.add(entry.enemy);
+            }
+        } finally {
+            due.clear();
+        }
+    }
+
+    /**
+     * @param entry Entry to add to the slot for its deadline.
+     */
+    private void insert(Entry entry) {
+        wheel.get((int) (entry.deadline & (SLOTS - 1))).add(entry);
+    }
+
+    /**
+     * @param a First number.
+     * @param b Second number.
+     * @return The greatest common divisor of two positive numbers.
+     */
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+}
@@ -2,10 +2,12 @@ package nz.ac.vuw.ecs.swen225.gp22.domain;
 
 /**
  * Template for entities in a level, including the player.
- * Any entities are observable.
+ * Any entities are observable. An entity belongs to the {@link GameWorld}
+ * that was bound when it was created, and publishes Moved and Turned events
+ * on that world's {@link EventBus}. Observers are only updated when it moves.
  *
  * @author Abdul
- * @version 1.17
+ * @version 1.23
  */
 public abstract class Entity<S extends Observable<S>> extends Observable<S> {
     /**
@@ -59,7 +61,7 @@ public abstract class Entity<S extends Observable<S>> extends Observable<S> {
          * Default constructor to set posChange.
          */
         Direction(int x, int y) {
-            posChange = new Maze.Point(x, y);
+            posChange = Maze.Point.of(x, y);
         }
 
         /**
@@ -86,6 +88,41 @@ public abstract class Entity<S extends Observable<S>> extends Observable<S> {
          * @param color The color, if any, that the interaction had.
          */
         public record Interaction(ActionType type, ColorableTile.Color color) {
+            /**
+             * Shared interaction for actions that did not interact with a tile.
+             */
+            public static final Interaction NONE = new Interaction(ActionType.None, ColorableTile.Color.None);
+
+            /**
+             * Shared interaction for actions where an entity was pinged.
+             */
+            public static final Interaction PINGED = new Interaction(ActionType.Pinged, ColorableTile.Color.None);
+
+            /**
+             * Every interaction, indexed by type then color, so that tiles do not make new ones.
+             */
+            private static final Interaction[][] SHARED = new Interaction[ActionType.values().length][ColorableTile.Color.values().length];
+
+            static {
+                for (ActionType type : ActionType.values()) {
+                    for (ColorableTile.Color color : ColorableTile.Color.values()) {
+                        SHARED[type.ordinal()][color.ordinal()] = new Interaction(type, color);
+                    }
+                }
+                SHARED[ActionType.None.ordinal()][ColorableTile.Color.None.ordinal()] = NONE;
+                SHARED[ActionType.Pinged.ordinal()][ColorableTile.Color.None.ordinal()] = PINGED;
+            }
+
+            /**
+             * @param type  The type of interaction.
+             * @param color The color of the interaction.
+             * @return The shared interaction with a type and color.
+             */
+            public static Interaction of(ActionType type, ColorableTile.Color color) {
+                if (type == null || color == null) throw new IllegalArgumentException("Given type or color is null.");
+                return SHARED[type.ordinal()][color.ordinal()];
+            }
+
             /**
              * Represents the entity interacting with a tile.
              */
@@ -99,9 +136,9 @@ public abstract class Entity<S extends Observable<S>> extends Observable<S> {
                  */
                 PickupKey {
                     @Override
-                    public void undo(Maze.Point pos, ColorableTile.Color undoColor) {
-                        Maze.setTile(pos, new Key(pos, undoColor));
-                        Maze.player.consumeKey(undoColor);
+                    public void undo(GameWorld world, Maze.Point pos, ColorableTile.Color undoColor) {
+                        world.setTile(pos, world.call(() -> new Key(pos, undoColor)));
+                        world.getPlayer().consumeKey(undoColor);
                     }
                 },
                 /**
@@ -109,9 +146,9 @@ public abstract class Entity<S extends Observable<S>> extends Observable<S> {
                  */
                 PickupTreasure {
                     @Override
-                    public void undo(Maze.Point pos, ColorableTile.Color undoColor) {
-                        Maze.setTile(pos, new Treasure(pos));
-                        Maze.addTreasure();
+                    public void undo(GameWorld world, Maze.Point pos, ColorableTile.Color undoColor) {
+                        world.setTile(pos, world.call(() -> new Treasure(pos)));
+                        world.addTreasure();
                     }
                 },
                 /**
@@ -119,9 +156,9 @@ public abstract class Entity<S extends Observable<S>> extends Observable<S> {
                  */
                 UnlockDoor {
                     @Override
-                    public void undo(Maze.Point pos, ColorableTile.Color undoColor) {
-                        Maze.setTile(pos, new LockedDoor(pos, undoColor));
-                        Maze.player.addKey(undoColor);
+                    public void undo(GameWorld world, Maze.Point pos, ColorableTile.Color undoColor) {
+                        world.setTile(pos, world.call(() -> new LockedDoor(pos, undoColor)));
+                        world.getPlayer().addKey(undoColor);
                     }
                 },
                 /**
@@ -129,8 +166,8 @@ public abstract class Entity<S extends Observable<S>> extends Observable<S> {
                  */
                 UnlockExit {
                     @Override
-                    public void undo(Maze.Point pos, ColorableTile.Color undoColor) {
-                        Maze.setTile(pos, new LockedExit(pos));
+                    public void undo(GameWorld world, Maze.Point pos, ColorableTile.Color undoColor) {
+                        world.setTile(pos, world.call(() -> new LockedExit(pos)));
                     }
                 },
                 /**
@@ -139,17 +176,34 @@ public abstract class Entity<S extends Observable<S>> extends Observable<S> {
                 Pinged;
 
                 /**
-                 * Undoes an interaction.
+                 * Undoes an interaction in a given world.
+                 *
+                 * @param world     World the interaction happened in.
+                 * @param pos       Position of tile to undo.
+                 * @param undoColor Color of interaction, if any.
+                 */
+                public void undo(GameWorld world, Maze.Point pos, ColorableTile.Color undoColor) {
+                }
+
+                /**
+                 * Overloaded method for undo(), assumes the interaction
+                 * happened in the current world.
                  *
                  * @param pos       Position of tile to undo.
                  * @param undoColor Color of interaction, if any.
                  */
                 public void undo(Maze.Point pos, ColorableTile.Color undoColor) {
+                    undo(GameWorld.current(), pos, undoColor);
                 }
             }
         }
     }
 
+    /**
+     * The world this entity belongs to.
+     */
+    private final GameWorld world;
+
     /**
      * Position of the entity in regards to the tilemap.
      */
@@ -171,8 +225,8 @@ public abstract class Entity<S extends Observable<S>> extends Observable<S> {
     private final int id;
 
     /**
-     * Makes sure updateObservers() isn't called in setPos() when
-     * a move method is being called.
+     * Makes sure setPos() does not announce the move when a move
+     * method is being called, as the move method does it.
      */
     private boolean inMove = false;
 
@@ -183,10 +237,10 @@ public abstract class Entity<S extends Observable<S>> extends Observable<S> {
      * @param facingDir Direction to set the direction field to.
      */
     public Entity(Maze.Point entityPos, Direction facingDir) {
+        world = GameWorld.current();
+        id = world.nextID();
         setPos(entityPos);
         setDir(facingDir);
-        id = Maze.globalID;
-        Maze.globalID++;
     }
 
     /**
@@ -222,15 +276,7 @@ public abstract class Entity<S extends Observable<S>> extends Observable<S> {
      */
     public void move(Direction direction) {
         if (direction == null) throw new IllegalArgumentException("Given direction is null");
-        Maze.Point newPos = entityPos.add(direction);
-        if (Maze.getTile(newPos).isObstructive())
-            throw new IllegalArgumentException("Entity cannot move onto this tile.");
-        if (!newPos.isValid()) throw new IllegalArgumentException("Entity is trying to move onto a nonexistent tile.");
-        inMove = true;
-        setPos(newPos);
-        inMove = false;
-        assert entityPos.isValid() && newPos.equals(entityPos) : "Moving the player resulted in the incorrect position.";
-        updateObservers();
+        moveBy(direction.posChange.x(), direction.posChange.y());
     }
 
     /**
@@ -240,15 +286,7 @@ public abstract class Entity<S extends Observable<S>> extends Observable<S> {
      */
     public void move(Maze.Point moveVector) {
         if (moveVector == null) throw new IllegalArgumentException("Given point is null");
-        Maze.Point newPos = entityPos.add(moveVector);
-        if (Maze.getTile(newPos).isObstructive())
-            throw new IllegalArgumentException("Entity cannot move onto this tile.");
-        if (!newPos.isValid()) throw new IllegalArgumentException("Entity is trying to move onto a nonexistent tile.");
-        inMove = true;
-        setPos(newPos);
-        inMove = false;
-        assert entityPos.isValid() && newPos.equals(entityPos) : "Moving the player resulted in the incorrect position.";
-        updateObservers();
+        moveBy(moveVector.x(), moveVector.y());
     }
 
     /**
@@ -259,7 +297,28 @@ public abstract class Entity<S extends Observable<S>> extends Observable<S> {
      * @param moveY The amount to change Y by.
      */
     public void move(int moveX, int moveY) {
-        move(new Maze.Point(moveX, moveY));
+        moveBy(moveX, moveY);
+    }
+
+    /**
+     * Moves the entity by an amount in each axis. All other move methods
+     * use this, and it does not allocate for positions near the origin.
+     *
+     * @param dx The amount to change X by.
+     * @param dy The amount to change Y by.
+     */
+    public void moveBy(int dx, int dy) {
+        int newX = entityPos.x() + dx, newY = entityPos.y() + dy;
+        if (!world.contains(newX, newY))
+            throw new IllegalArgumentException("Entity is trying to move onto a nonexistent tile.");
+        if (world.isObstructive(newX, newY))
+            throw new IllegalArgumentException("Entity cannot move onto this tile.");
+        Maze.Point oldPos = entityPos;
+        inMove = true;
+        setPos(Maze.Point.of(newX, newY));
+        inMove = false;
+        assert world.contains(entityPos) && entityPos.x() == newX && entityPos.y() == newY : "Moving the player resulted in the incorrect position.";
+        moved(oldPos);
     }
 
     /**
@@ -280,6 +339,13 @@ public abstract class Entity<S extends Observable<S>> extends Observable<S> {
         move();
     }
 
+    /**
+     * @return The world this entity belongs to.
+     */
+    public GameWorld getWorld() {
+        return world;
+    }
+
     /**
      * @return The position of the entity.
      */
@@ -302,28 +368,63 @@ public abstract class Entity<S extends Observable<S>> extends Observable<S> {
     }
 
     /**
-     * Sets the position of the entity.
+     * Sets the position of the entity, and updates the
+     * world's index of where its entities are.
      *
      * @param pos Point that represents the entity's new position.
      */
     public void setPos(Maze.Point pos) {
-        if (pos == null || !pos.isValid()) throw new IllegalArgumentException("Invalid point given.");
-        if (Maze.getTile(pos).isObstructive()) throw new IllegalArgumentException("Entity cannot move onto this tile.");
+        if (!world.contains(pos)) throw new IllegalArgumentException("Invalid point given.");
+        if (world.isObstructive(pos)) throw new IllegalArgumentException("Entity cannot move onto this tile.");
+        Maze.Point oldPos = entityPos;
         entityPos = pos;
-        if (!inMove) updateObservers();
+        world.entityMoved(this, oldPos);
+        if (!inMove) moved(oldPos);
     }
 
     /**
-     * Sets the direction the entity is facing.
+     * Sets the direction the entity is facing, publishing a Turned
+     * event if it changed.
      *
      * @param dir The new direction of the entity.
      */
     public void setDir(Direction dir) {
         if (dir == null) throw new IllegalArgumentException("Given direction is null");
+        Direction oldDir = facingDir;
+        if (oldDir == dir) return;
         facingDir = dir;
+        world.entityTurned(this, oldDir);
+        if (oldDir != null) world.getEvents().turned(this, oldDir, dir);
+    }
+
+    /**
+     * Announces a change of position by publishing a Moved event, unless the
+     * entity has just been placed, then updating observers.
+     *
+     * @param oldPos Position before the change, null if the entity was just made.
+     */
+    private void moved(Maze.Point oldPos) {
+        if (oldPos != null) world.getEvents().moved(this, oldPos, entityPos);
         updateObservers();
     }
 
+    /**
+     * Puts the entity back to a previous position and direction without checking
+     * the tiles or updating observers. Used when restoring a snapshot.
+     *
+     * @param pos The position to restore.
+     * @param dir The direction to restore.
+     */
+    void restore(Maze.Point pos, Direction dir) {
+        Maze.Point oldPos = entityPos;
+        Direction oldDir = facingDir;
+        entityPos = pos;
+        facingDir = dir;
+        action = null;
+        world.entityMoved(this, oldPos);
+        world.entityTurned(this, oldDir);
+    }
+
     /**
      * Called when an entity is removed.
      * This method is not abstract because not all entities
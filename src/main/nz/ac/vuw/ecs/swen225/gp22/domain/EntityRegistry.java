@@ -0,0 +1,198 @@
+package nz.ac.vuw.ecs.swen225.gp22.domain;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The list of non-player entities in a world, which also indexes them by ID and
+ * by the cell they are on. It is still a normal list so existing code can add and
+ * remove entities directly, and the indexes are updated as it does. Entities report
+ * their own moves through {@link GameWorld}, so the cell index never goes stale.
+ * Suppressed the raw types warning as the generic type is only used for observers
+ * and does not affect this use case.
+ *
+ * @author agent
+ * @version 1.0
+ */
+@SuppressWarnings("rawtypes")
+final class EntityRegistry extends AbstractList<Entity> {
+    /**
+     * The world the entities belong to.
+     */
+    private final GameWorld world;
+
+    /**
+     * Entities in the order they were added.
+     */
+    private final ArrayList<Entity> entities = new ArrayList<>();
+
+    /**
+     * Entities keyed by their ID.
+     */
+    private final Map<Integer, Entity> byID = new HashMap<>();
+
+    /**
+     * Entities keyed by the index of the cell they are on. Only cells with entities have an entry.
+     */
+    private final Map<Integer, List<Entity<?>>> byCell = new HashMap<>();
+
+    /**
+     * Width of the map the cell indexes were made for.
+     */
+    private int width;
+
+    /**
+     * Creates an empty registry.
+     *
+     * @param world The world the entities will belong to.
+     */
+    EntityRegistry(GameWorld world) {
+        this.world = world;
+    }
+
+    /**
+     * Removes every entity and prepares the cell index for a new map.
+     *
+     * @param width Width of the new map.
+     */
+    void reset(int width) {
+        clear();
+        this.width = width;
+        modCount++;
+        assert byID.isEmpty() && byCell.isEmpty() : "Registry not cleared.";
+    }
+
+    @Override
+    public Entity get(int index) {
+        return entities.get(index);
+    }
+
+    @Override
+    public int size() {
+        return entities.size();
+    }
+
+    @Override
+    public void add(int index, Entity entity) {
+        if (entity == null) throw new IllegalArgumentException("Given entity is null.");
+        if (entity.getWorld() != world) throw new IllegalArgumentException("Entity belongs to a different world.");
+        if (byID.containsKey(entity.id())) throw new IllegalArgumentException("Entity is already in this world.");
+        entities.add(index, entity);
+        byID.put(entity.id(), entity);
+        cell(entity.getPos()).add(entity);
+        world.toggleHash(entity);
+        modCount++;
+    }
+
+    @Override
+    public Entity remove(int index) {
+        Entity entity = entities.remove(index);
+        byID.remove(entity.id());
+        removeFromCell(entity, entity.getPos());
+        world.toggleHash(entity);
+        modCount++;
+        return entity;
+    }
+
+    @Override
+    public Entity set(int index, Entity entity) {
+        Entity old = remove(index);
+        try {
+            add(index, entity);
+        } catch (IllegalArgumentException e) {
+            add(index, old);
+            throw e;
+        }
+        return old;
+    }
+
+    /**
+     * @return A number that changes whenever entities are added or removed.
+     */
+    int version() {
+        return modCount;
+    }
+
+    /**
+     * @param id ID of the entity.
+     * @return The entity with the ID, or null if it is not in the registry.
+     */
+    Entity byID(int id) {
+        return byID.get(id);
+    }
+
+    /**
+     * Moves an entity to the cell for its new position, if it is in the registry.
+     *
+     * @param entity The entity that moved.
+     * @param oldPos The position it moved from.
+     */
+    void moved(Entity entity, Maze.Point oldPos) {
+        if (byID.get(entity.id()) != entity || oldPos.equals(entity.getPos())) return;
+        removeFromCell(entity, oldPos);
+        cell(entity.getPos()).add(entity);
+    }
+
+    /**
+     * @param x X position.
+     * @param y Y position.
+     * @return The entities on a cell, which must not be modified.
+     */
+    List<Entity<?>> at(int x, int y) {
+        return byCell.getOrDefault(y * width + x, List.of());
+    }
+
+    /**
+     * Finds the entities within a rectangle. Scans the cells in the rectangle
+     * if there are fewer of them than entities, otherwise scans the entities.
+     *
+     * @param minX Left edge, inclusive.
+     * @param minY Top edge, inclusive.
+     * @param maxX Right edge, inclusive.
+     * @param maxY Bottom edge, inclusive.
+     * @return A new list of the entities in the rectangle.
+     */
+    List<Entity<?>> in(int minX, int minY, int maxX, int maxY) {
+        List<Entity<?>> found = new ArrayList<>();
+        long area = (long) (maxX - minX + 1) * (maxY - minY + 1);
+        if (area <= 0) return found;
+        if (area < entities.size()) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int x = minX; x <= maxX; x++) {
+                    if (world.contains(x, y)) found.addAll(at(x, y));
+                }
+            }
+        } else {
+            for (Entity entity : entities) {
+                Maze.Point pos = entity.getPos();
+                if (pos.x() >= minX && pos.x() <= maxX && pos.y() >= minY && pos.y() <= maxY) found.add(entity);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @param pos Position of the cell.
+     * @return The list of entities on a cell, creating it if needed.
+     */
+    private List<Entity<?>> cell(Maze.Point pos) {
+        return byCell.computeIfAbsent(pos.y() * width + pos.x(), k -> new ArrayList<>(1));
+    }
+
+    /**
+     * Removes an entity from a cell, dropping the cell's list if it becomes empty.
+     *
+     * @param entity The entity to remove.
+     * @param pos    Position of the cell.
+     */
+    private void removeFromCell(Entity entity, Maze.Point pos) {
+        int key = pos.y() * width + pos.x();
+        List<Entity<?>> cell = byCell.get(key);
+        if (cell == null) return;
+        cell.remove(entity);
+        if (cell.isEmpty()) byCell.remove(key);
+    }
+}
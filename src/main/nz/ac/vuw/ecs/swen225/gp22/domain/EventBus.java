@@ -0,0 +1,218 @@
+package nz.ac.vuw.ecs.swen225.gp22.domain;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Delivers a world's {@link GameEvent}s to the listeners subscribed to each kind.
+ * Publishing does not allocate: an event with no listeners is skipped before it is
+ * made, and events are taken from a pool for their kind and put back once every
+ * listener has seen them. Listeners are kept in lists that are copied when someone
+ * subscribes or cancels, so a listener can cancel itself, or subscribe others, while
+ * an event is being delivered.
+ * <p>
+ * Like the rest of a world, the bus must only be used by the thread running it.
+ *
+ * @author agent
+ * @version 1.0
+ */
+public final class EventBus {
+    /**
+     * A listener's subscription, which can be cancelled to stop receiving events.
+     */
+    public interface Subscription {
+        /**
+         * Stops the listener receiving events. Does nothing if already cancelled.
+         */
+        void cancel();
+    }
+
+    /**
+     * Index of each kind of event, matching {@link GameEvent#type()}.
+     */
+    private static final Map<Class<? extends GameEvent>, Integer> TYPES = Map.of(
+            GameEvent.Moved.class, 0,
+            GameEvent.Turned.class, 1,
+            GameEvent.KeyCollected.class, 2,
+            GameEvent.TreasureCollected.class, 3,
+            GameEvent.DoorUnlocked.class, 4,
+            GameEvent.ExitUnlocked.class, 5,
+            GameEvent.Died.class, 6);
+
+    /**
+     * Listeners of each kind of event, replaced rather than changed.
+     */
+    private final List<List<Consumer<GameEvent>>> listeners = new ArrayList<>(GameEvent.TYPES);
+
+    /**
+     * Events of each kind that are not being delivered.
+     */
+    private final List<ArrayDeque<GameEvent>> pools = new ArrayList<>(GameEvent.TYPES);
+
+    /**
+     * Creates a bus with no listeners. Each world has its own.
+     */
+    EventBus() {
+        for (int i = 0; i < GameEvent.TYPES; i++) {
+            listeners.add(List.of());
+            pools.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Subscribes a listener to one kind of event.
+     *
+     * @param type     Class of the events to receive.
+     * @param listener Called with each event of that kind.
+     * @param <E>      Type of the events.
+     * @return The subscription, to cancel when the listener is no longer needed.
+     */
+    @SuppressWarnings("unchecked")
+    public <E extends GameEvent> Subscription subscribe(Class<E> type, Consumer<? super E> listener) {
+        if (type == null || listener == null) throw new IllegalArgumentException("Given type or listener is null.");
+        Integer index = TYPES.get(type);
+        if (index == null) throw new IllegalArgumentException("Unknown event type: " + type.getName());
+        return add(index, (Consumer<GameEvent>) listener);
+    }
+
+    /**
+     * Subscribes a listener to every kind of event.
+     *
+     * @param listener Called with each event.
+     * @return The subscription, to cancel when the listener is no longer needed.
+     */
+    public Subscription subscribeAll(Consumer<? super GameEvent> listener) {
+        if (listener == null) throw new IllegalArgumentException("Given listener is null.");
+        List<Subscription> all = new ArrayList<>(GameEvent.TYPES);
+        for (int i = 0; i < GameEvent.TYPES; i++) all.add(add(i, listener::accept));
+        return () -> all.forEach(Subscription::cancel);
+    }
+
+    /**
+     * @param type Class of an event.
+     * @return Whether or not anything is listening for that kind of event.
+     */
+    public boolean hasListeners(Class<? extends GameEvent> type) {
+        Integer index = TYPES.get(type);
+        return index != null && !listeners.get(index).isEmpty();
+    }
+
+    /**
+     * @param entity The entity that moved.
+     * @param from   Position before the move.
+     * @param to     Position after the move.
+     */
+    void moved(Entity<?> entity, Maze.Point from, Maze.Point to) {
+        if (listeners.get(0).isEmpty()) return;
+        deliver(acquire(0, GameEvent.Moved::new).set(entity, from, to));
+    }
+
+    /**
+     * @param entity The entity that turned.
+     * @param from   Direction before the turn.
+     * @param to     Direction after the turn.
+     */
+    void turned(Entity<?> entity, Entity.Direction from, Entity.Direction to) {
+        if (listeners.get(1).isEmpty()) return;
+        deliver(acquire(1, GameEvent.Turned::new).set(entity, from, to));
+    }
+
+    /**
+     * @param entity The player.
+     * @param pos    Where the key was.
+     * @param color  Color of the key.
+     */
+    void keyCollected(Entity<?> entity, Maze.Point pos, ColorableTile.Color color) {
+        if (listeners.get(2).isEmpty()) return;
+        deliver(acquire(2, GameEvent.KeyCollected::new).set(entity, pos, color));
+    }
+
+    /**
+     * @param entity    The player.
+     * @param pos       Where the treasure was.
+     * @param remaining Treasures left on the map.
+     */
+    void treasureCollected(Entity<?> entity, Maze.Point pos, int remaining) {
+        if (listeners.get(3).isEmpty()) return;
+        deliver(acquire(3, GameEvent.TreasureCollected::new).set(entity, pos, remaining));
+    }
+
+    /**
+     * @param entity The player.
+     * @param pos    Where the door was.
+     * @param color  Color of the door.
+     */
+    void doorUnlocked(Entity<?> entity, Maze.Point pos, ColorableTile.Color color) {
+        if (listeners.get(4).isEmpty()) return;
+        deliver(acquire(4, GameEvent.DoorUnlocked::new).set(entity, pos, color));
+    }
+
+    /**
+     * @param entity The player.
+     * @param pos    Where the gate was.
+     */
+    void exitUnlocked(Entity<?> entity, Maze.Point pos) {
+        if (listeners.get(5).isEmpty()) return;
+        deliver(acquire(5, GameEvent.ExitUnlocked::new).set(entity, pos));
+    }
+
+    /**
+     * @param entity The player.
+     * @param pos    Where the player died.
+     */
+    void died(Entity<?> entity, Maze.Point pos) {
+        if (listeners.get(6).isEmpty()) return;
+        deliver(acquire(6, GameEvent.Died::new).set(entity, pos));
+    }
+
+    /**
+     * Adds a listener to a copy of the list for a kind of event.
+     *
+     * @param index    Index of the kind of event.
+     * @param listener The listener.
+     * @return The subscription.
+     */
+    private Subscription add(int index, Consumer<GameEvent> listener) {
+        List<Consumer<GameEvent>> updated = new ArrayList<>(listeners.get(index));
+        updated.add(listener);
+        listeners.set(index, List.copyOf(updated));
+        return () -> {
+            List<Consumer<GameEvent>> remaining = new ArrayList<>(listeners.get(index));
+            if (remaining.remove(listener)) listeners.set(index, List.copyOf(remaining));
+        };
+    }
+
+    /**
+     * Takes an event from the pool for its kind, making one if the pool is empty.
+     * The pool is only empty when events are published from inside a listener.
+     *
+     * @param index Index of the kind of event.
+     * @param maker Makes an event of that kind.
+     * @param <E>   Type of the event.
+     * @return An event to fill in.
+     */
+    @SuppressWarnings("unchecked")
+    private <E extends GameEvent> E acquire(int index, Supplier<E> maker) {
+        GameEvent event = pools.get(index).poll();
+        return event == null ? maker.get() : (E) event;
+    }
+
+    /**
+     * Delivers an event to its listeners, then returns it to its pool.
+     *
+     * @param event The event.
+     */
+    private void deliver(GameEvent event) {
+        List<Consumer<GameEvent>> current = listeners.get(event.type());
+        try {
+            for (int i = 0; i < current.size(); i++) current.get(i).accept(event);
+        } finally {
+            event.clear();
+            pools.get(event.type()).push(event);
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package nz.ac.vuw.ecs.swen225.gp22.domain;
+
+/**
+ * Something that happened in a {@link GameWorld}, published on its {@link EventBus}.
+ * Each kind of event is its own class, so listeners subscribe to exactly the events
+ * they care about and read typed fields instead of working out what changed.
+ * <p>
+ * Events are pooled by the bus and reused once every listener has seen them, so a
+ * listener must copy anything it needs rather than keep the event.
+ *
+ * @author agent
+ * @version 1.0
+ */
+public abstract sealed class GameEvent {
+    /**
+     * Number of kinds of event, used by the bus to size its tables.
+     */
+    static final int TYPES = 7;
+
+    /**
+     * The entity that caused the event.
+     */
+    private Entity<?> entity;
+
+    /**
+     * Only the event classes below can be made.
+     */
+    private GameEvent() {
+    }
+
+    /**
+     * @return The entity that caused the event.
+     */
+    public Entity<?> getEntity() {
+        return entity;
+    }
+
+    /**
+     * @return Index of this kind of event, from 0 to TYPES - 1.
+     */
+    abstract int type();
+
+    /**
+     * Published when an entity's position changes.
+     */
+    public static final class Moved extends GameEvent {
+        /**
+         * Positions before and after the move.
+         */
+        private Maze.Point from, to;
+
+        /**
+         * Made by the bus only.
+         */
+        Moved() {
+        }
+
+        /**
+         * @param entity The entity that moved.
+         * @param from   Position before the move.
+         * @param to     Position after the move.
+         * @return This event.
+         */
+        Moved set(Entity<?> entity, Maze.Point from, Maze.Point to) {
+            setEntity(entity);
+            this.from = from;
+            this.to = to;
+            return this;
+        }
+
+        /**
+         * @return Position before the move.
+         */
+        public Maze.Point getFrom() {
+            return from;
+        }
+
+        /**
+         * @return Position after the move.
+         */
+        public Maze.Point getTo() {
+            return to;
+        }
+
+        @Override
+        int type() {
+            return 0;
+        }
+    }
+
+    /**
+     * Published when an entity starts facing a different direction.
+     */
+    public static final class Turned extends GameEvent {
+        /**
+         * Directions before and after the turn.
+         */
+        private Entity.Direction from, to;
+
+        /**
+         * Made by the bus only.
+         */
+        Turned() {
+        }
+
+        /**
+         * @param entity The entity that turned.
+         * @param from   Direction before the turn.
+         * @param to     Direction after the turn.
+         * @return This event.
+         */
+        Turned set(Entity<?> entity, Entity.Direction from, Entity.Direction to) {
+            setEntity(entity);
+            this.from = from;
+            this.to = to;
+            return this;
+        }
+
+        /**
+         * @return Direction before the turn.
+         */
+        public Entity.Direction getFrom() {
+            return from;
+        }
+
+        /**
+         * @return Direction after the turn.
+         */
+        public Entity.Direction getTo() {
+            return to;
+        }
+
+        @Override
+        int type() {
+            return 1;
+        }
+    }
+
+    /**
+     * Published when the player picks up a key.
+     */
+    public static final class KeyCollected extends GameEvent {
+        /**
+         * Where the key was.
+         */
+        private Maze.Point pos;
+
+        /**
+         * Color of the key.
+         */
+        private ColorableTile.Color color;
+
+        /**
+         * Made by the bus only.
+         */
+        KeyCollected() {
+        }
+
+        /**
+         * @param entity The player.
+         * @param pos    Where the key was.
+         * @param color  Color of the key.
+         * @return This event.
+         */
+        KeyCollected set(Entity<?> entity, Maze.Point pos, ColorableTile.Color color) {
+            setEntity(entity);
+            this.pos = pos;
+            this.color = color;
+            return this;
+        }
+
+        /**
+         * @return Where the key was.
+         */
+        public Maze.Point getPos() {
+            return pos;
+        }
+
+        /**
+         * @return Color of the key.
+         */
+        public ColorableTile.Color getColor() {
+            return color;
+        }
+
+        @Override
+        int type() {
+            return 2;
+        }
+    }
+
+    /**
+     * Published when the player picks up a treasure.
+     */
+    public static final class TreasureCollected extends GameEvent {
+        /**
+         * Where the treasure was.
+         */
+        private Maze.Point pos;
+
+        /**
+         * Treasures left on the map after this one.
+         */
+        private int remaining;
+
+        /**
+         * Made by the bus only.
+         */
+        TreasureCollected() {
+        }
+
+        /**
+         * @param entity    The player.
+         * @param pos       Where the treasure was.
+         * @param remaining Treasures left on the map after this one.
+         * @return This event.
+         */
+        TreasureCollected set(Entity<?> entity, Maze.Point pos, int remaining) {
+            setEntity(entity);
+            this.pos = pos;
+            this.remaining = remaining;
+            return this;
+        }
+
+        /**
+         * @return Where the treasure was.
+         */
+        public Maze.Point getPos() {
+            return pos;
+        }
+
+        /**
+         * @return Treasures left on the map after this one.
+         */
+        public int getRemaining() {
+            return remaining;
+        }
+
+        @Override
+        int type() {
+            return 3;
+        }
+    }
+
+    /**
+     * Published when the player unlocks a door with a key.
+     */
+    public static final class DoorUnlocked extends GameEvent {
+        /**
+         * Where the door was.
+         */
+        private Maze.Point pos;
+
+        /**
+         * Color of the door.
+         */
+        private ColorableTile.Color color;
+
+        /**
+         * Made by the bus only.
+         */
+        DoorUnlocked() {
+        }
+
+        /**
+         * @param entity The player.
+         * @param pos    Where the door was.
+         * @param color  Color of the door.
+         * @return This event.
+         */
+        DoorUnlocked set(Entity<?> entity, Maze.Point pos, ColorableTile.Color color) {
+            setEntity(entity);
+            this.pos = pos;
+            this.color = color;
+            return this;
+        }
+
+        /**
+         * @return Where the door was.
+         */
+        public Maze.Point getPos() {
+            return pos;
+        }
+
+        /**
+         * @return Color of the door.
+         */
+        public ColorableTile.Color getColor() {
+            return color;
+        }
+
+        @Override
+        int type() {
+            return 4;
+        }
+    }
+
+    /**
+     * Published when the player walks through the exit gate.
+     */
+    public static final class ExitUnlocked extends GameEvent {
+        /**
+         * Where the gate was.
+         */
+        private Maze.Point pos;
+
+        /**
+         * Made by the bus only.
+         */
+        ExitUnlocked() {
+        }
+
+        /**
+         * @param entity The player.
+         * @param pos    Where the gate was.
+         * @return This event.
+         */
+        ExitUnlocked set(Entity<?> entity, Maze.Point pos) {
+            setEntity(entity);
+            this.pos = pos;
+            return this;
+        }
+
+        /**
+         * @return Where the gate was.
+         */
+        public Maze.Point getPos() {
+            return pos;
+        }
+
+        @Override
+        int type() {
+            return 5;
+        }
+    }
+
+    /**
+     * Published when the player dies.
+     */
+    public static final class Died extends GameEvent {
+        /**
+         * Where the player died.
+         */
+        private Maze.Point pos;
+
+        /**
+         * Made by the bus only.
+         */
+        Died() {
+        }
+
+        /**
+         * @param entity The player.
+         * @param pos    Where the player died.
+         * @return This event.
+         */
+        Died set(Entity<?> entity, Maze.Point pos) {
+            setEntity(entity);
+            this.pos = pos;
+            return this;
+        }
+
+        /**
+         * @return Where the player died.
+         */
+        public Maze.Point getPos() {
+            return pos;
+        }
+
+        @Override
+        int type() {
+            return 6;
+        }
+    }
+
+    /**
+     * @param entity The entity that caused the event.
+     */
+    void setEntity(Entity<?> entity) {
+        this.entity = entity;
+    }
+
+    /**
+     * Drops references held by the event before it goes back to the pool.
+     */
+    void clear() {
+        entity = null;
+    }
+}
@@ -0,0 +1,844 @@
+package nz.ac.vuw.ecs.swen225.gp22.domain;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import nz.ac.vuw.ecs.swen225.gp22.domain.Entity.Action.Interaction.ActionType;
+
+/**
+ * Owns the state of a single game (player, tilemap, entities, and treasures).
+ * Any number of worlds can exist at once, which lets headless simulations run
+ * side by side. {@link Maze} is a static adapter over the world that is bound
+ * to the calling thread, which is the default world unless another is bound.
+ * <p>
+ * Tiles and entities belong to the world that was bound when they were constructed,
+ * so code that creates them for a specific world should do so inside {@link #run(Runnable)}
+ * or {@link #call(Supplier)}.
+ *
+ * @author agent
+ * @version 1.0
+ */
+public class GameWorld {
+    /**
+     * The state of a world at one point in time, taken with {@link #snapshot()}. Tiles are shared
+     * with the world copy-on-write, so a snapshot is cheap to take and keep. Entities are captured
+     * by their position and direction, so any state a third-party entity keeps of its own is not.
+     * A snapshot never changes once taken, so it can be read on any thread with {@link #copy()}.
+     */
+    public static final class Snapshot {
+        /**
+         * The position and direction of an entity.
+         *
+         * @param entity The entity.
+         * @param pos    Its position.
+         * @param dir    Its direction.
+         */
+        public record EntityState(Entity<?> entity, Maze.Point pos, Entity.Direction dir) {
+            /**
+             * Captures the state of an entity.
+             *
+             * @param entity The entity.
+             */
+            EntityState(Entity<?> entity) {
+                this(entity, entity.getPos(), entity.getDir());
+            }
+        }
+
+        /**
+         * The world the snapshot was taken of.
+         */
+        private final GameWorld world;
+
+        /**
+         * The tiles.
+         */
+        private final TileGrid.Snapshot tiles;
+
+        /**
+         * The player and the keys it held.
+         */
+        private final EntityState player;
+        private final List<ColorableTile.Color> keys;
+
+        /**
+         * The non-player entities in order.
+         */
+        private final List<EntityState> entities;
+
+        /**
+         * Counters and flags of the world.
+         */
+        private final int treasuresLeft, nextLevel, globalID;
+        private final boolean gameLost;
+
+        /**
+         * Captures the state of a world.
+         *
+         * @param world The world to capture.
+         */
+        private Snapshot(GameWorld world) {
+            this.world = world;
+            tiles = world.tileMap.snapshot();
+            player = new EntityState(world.player);
+            keys = world.player.getAllKeys();
+            entities = world.entities.stream().map(EntityState::new).toList();
+            treasuresLeft = world.treasuresLeft;
+            nextLevel = world.nextLevel;
+            globalID = world.globalID;
+            gameLost = world.gameLost;
+        }
+
+        /**
+         * @return The world the snapshot was taken of.
+         */
+        public GameWorld getWorld() {
+            return world;
+        }
+
+        /**
+         * @return The non-player entities in order, with the positions and directions they had.
+         */
+        public List<EntityState> getEntities() {
+            return entities;
+        }
+
+        /**
+         * Creates a new world with the tiles, player and counters of this snapshot, so the
+         * snapshot can be read without touching the world it was taken of. Entities belong to
+         * that world, so the copy has none, and they are read from {@link #getEntities()}.
+         *
+         * @return The new world.
+         */
+        public GameWorld copy() {
+            GameWorld copy = new GameWorld();
+            copy.install(new TileGrid(tiles), treasuresLeft, nextLevel, player.pos(), player.dir());
+            copy.player.restoreKeys(keys);
+            copy.globalID = globalID;
+            copy.gameLost = gameLost;
+            return copy;
+        }
+    }
+
+    /**
+     * The world used by the Swing app, and by any thread that has not bound another world.
+     */
+    private static final GameWorld defaultWorld = new GameWorld();
+
+    /**
+     * The world bound to each thread, null if the thread uses the default world.
+     */
+    private static final ThreadLocal<GameWorld> boundWorld = new ThreadLocal<>();
+
+    /**
+     * The Player entity of this world.
+     */
+    private Player player;
+
+    /**
+     * Contains all non-player entities, indexed by ID and position.
+     */
+    private final EntityRegistry entities = new EntityRegistry(this);
+
+    /**
+     * Cached shortest paths to the player.
+     */
+    private final PathService paths = new PathService(this);
+
+    /**
+     * Stores the level tiles in a compact form where they can be accessed by position.
+     */
+    private TileGrid tileMap;
+
+    /**
+     * The size of the tilemap, kept so that it does not need to be created on every query.
+     */
+    private Maze.Point dimensions;
+
+    /**
+     * Represents how many more Treasure tiles are still on the map.
+     */
+    private int treasuresLeft;
+
+    /**
+     * Stores the number of the next level to load. If -1 the game complete flag returns true.
+     */
+    private int nextLevel;
+
+    /**
+     * Delivers events about what happens in this world.
+     */
+    private final EventBus events = new EventBus();
+
+    /**
+     * Flag used to check if the player was killed.
+     */
+    private boolean gameLost;
+
+    /**
+     * Used to make entity IDs.
+     */
+    private int globalID;
+
+    /**
+     * Zobrist hash of the player, its keys, and the non-player entities. Combined
+     * with the hash kept by the tilemap to identify the state of the world.
+     */
+    private long entityHash;
+
+    /**
+     * @return The world used by the Swing app.
+     */
+    public static GameWorld getDefault() {
+        return defaultWorld;
+    }
+
+    /**
+     * @return The world bound to the calling thread, or the default world if none is bound.
+     */
+    public static GameWorld current() {
+        GameWorld world = boundWorld.get();
+        return world == null ? defaultWorld : world;
+    }
+
+    /**
+     * Runs a task with this world bound to the calling thread, so that any
+     * tiles or entities it creates belong to this world. The previous binding
+     * is restored afterwards.
+     *
+     * @param task The task to run.
+     * @param <T>  The type of the task's result.
+     * @return The result of the task.
+     */
+    public <T> T call(Supplier<T> task) {
+        if (task == null) throw new IllegalArgumentException("Given task is null.");
+        GameWorld previous = boundWorld.get();
+        if (previous == this) return task.get();
+        boundWorld.set(this);
+        try {
+            return task.get();
+        } finally {
+            if (previous == null) boundWorld.remove();
+            else boundWorld.set(previous);
+        }
+    }
+
+    /**
+     * Overloaded method for call() that accepts a task with no result.
+     *
+     * @param task The task to run.
+     */
+    public void run(Runnable task) {
+        if (task == null) throw new IllegalArgumentException("Given task is null.");
+        call(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Generates a new map. This will be used by the persistency module for level loading.
+     *
+     * @param dimensions The size of the map.
+     * @param treasures  The number of treasures on the map.
+     * @param nextLevelP Stores the number of the next level to load.
+     */
+    public void generateMap(Maze.Point dimensions, int treasures, int nextLevelP) {
+        if (dimensions == null || dimensions.x() <= 0 || dimensions.y() <= 0)
+            throw new IllegalArgumentException("Invalid map dimensions.");
+        if (treasures < 0) throw new IllegalArgumentException("Number of treasures cannot be below 0.");
+        install(new TileGrid(dimensions.x(), dimensions.y()), treasures, nextLevelP, new Maze.Point(0, 0), Entity.Direction.Down);
+    }
+
+    /**
+     * Starts building a new map that replaces the current one when it is committed.
+     * Ground is not stored, and packed tiles are not created, so building takes time
+     * in proportion to the tiles placed rather than the size of the map.
+     *
+     * @param dimensions The size of the map.
+     * @return The builder.
+     */
+    public MapBuilder builder(Maze.Point dimensions) {
+        if (dimensions == null || dimensions.x() <= 0 || dimensions.y() <= 0)
+            throw new IllegalArgumentException("Invalid map dimensions.");
+        return new MapBuilder(this, new TileGrid(dimensions.x(), dimensions.y()));
+    }
+
+    /**
+     * Starts building a new map that begins as a copy of a template, and replaces the current
+     * one when it is committed. The template's chunks are shared until they are written to,
+     * so this takes time in proportion to the tiles kept as objects rather than the size of the map.
+     *
+     * @param template The template to start from.
+     * @return The builder.
+     */
+    public MapBuilder builder(MapTemplate template) {
+        if (template == null) throw new IllegalArgumentException("Given template is null.");
+        return new MapBuilder(this, template);
+    }
+
+    /**
+     * Finds the positions whose tile differs from the map a template starts with, such as
+     * the keys, doors and treasures that have gone since a level began. Parts of the map
+     * that were built from the template and have not changed since are skipped.
+     *
+     * @param template A template of the same size as the map.
+     * @return The positions that differ, row by row.
+     */
+    public List<Maze.Point> changesFrom(MapTemplate template) {
+        if (template == null) throw new IllegalArgumentException("Given template is null.");
+        if (tileMap == null) throw new IllegalStateException("World has no map.");
+        if (!template.getDimensions().equals(dimensions)) throw new IllegalArgumentException("Template is a different size.");
+        BitSet changed = tileMap.differences(template.grid());
+        List<Maze.Point> positions = new ArrayList<>(changed.cardinality());
+        for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+            positions.add(Maze.Point.of(i % dimensions.x(), i / dimensions.x()));
+        }
+        return positions;
+    }
+
+    /**
+     * Replaces the map and resets the game state, with a new player.
+     *
+     * @param grid       The new tiles.
+     * @param treasures  The number of treasures on the map.
+     * @param nextLevelP Stores the number of the next level to load.
+     * @param playerPos  Where the player starts.
+     * @param playerDir  The direction the player starts facing.
+     */
+    void install(TileGrid grid, int treasures, int nextLevelP, Maze.Point playerPos, Entity.Direction playerDir) {
+        nextLevel = nextLevelP;
+        gameLost = false;
+        globalID = 0;
+        for (Entity<?> entity : entities) entity.deleteEntity();
+        entities.reset(grid.width());
+
+        tileMap = grid;
+        tileMap.setAnchors(this::anchors);
+        paths.reset();
+        this.dimensions = Maze.Point.of(grid.width(), grid.height());
+        run(() -> player = new Player(playerPos, playerDir));
+
+        treasuresLeft = treasures;
+        if (this == defaultWorld) Maze.player = player;
+        entityHash = computeEntityHash();
+    }
+
+    /**
+     * Captures the state of this world so that it can be restored later. Only the
+     * references to the tiles are copied, so this is cheap even for large maps.
+     *
+     * @return The snapshot.
+     */
+    public Snapshot snapshot() {
+        if (tileMap == null) throw new IllegalStateException("World has no map.");
+        return new Snapshot(this);
+    }
+
+    /**
+     * Puts this world back to the state captured in a snapshot. Observers are not
+     * updated and no events are published.
+     *
+     * @param snapshot A snapshot taken of this world.
+     */
+    public void restore(Snapshot snapshot) {
+        if (snapshot == null) throw new IllegalArgumentException("Given snapshot is null.");
+        if (snapshot.world != this) throw new IllegalArgumentException("Snapshot belongs to a different world.");
+
+        tileMap = new TileGrid(snapshot.tiles);
+        tileMap.setAnchors(this::anchors);
+        paths.reset();
+        dimensions = Maze.Point.of(tileMap.width(), tileMap.height());
+        treasuresLeft = snapshot.treasuresLeft;
+        nextLevel = snapshot.nextLevel;
+        globalID = snapshot.globalID;
+        gameLost = snapshot.gameLost;
+
+        entities.reset(tileMap.width());
+        for (Snapshot.EntityState state : snapshot.entities) {
+            state.entity().restore(state.pos(), state.dir());
+            entities.add(state.entity());
+        }
+        player = (Player) snapshot.player.entity();
+        player.restore(snapshot.player.pos(), snapshot.player.dir());
+        player.restoreKeys(snapshot.keys);
+        if (this == defaultWorld) Maze.player = player;
+        entityHash = computeEntityHash();
+        assert entities.size() == snapshot.entities.size() && player.getPos().equals(snapshot.player.pos()) : "Snapshot not restored.";
+    }
+
+    /**
+     * @return The positions of the player and the other entities, around which tiles are kept on the heap.
+     */
+    @SuppressWarnings("rawtypes")
+    private List<Maze.Point> anchors() {
+        List<Maze.Point> anchors = new ArrayList<>(entities.size() + 1);
+        if (player != null) anchors.add(player.getPos());
+        for (Entity entity : entities) anchors.add(entity.getPos());
+        return anchors;
+    }
+
+    /**
+     * Gets a 64-bit hash of the tiles, the player's position, direction and keys, and the
+     * positions and directions of the other entities. It is kept up to date as the world
+     * changes, so this takes constant time. Equal states always have equal hashes, and
+     * different states almost never do.
+     *
+     * @return The hash of the current state.
+     */
+    public long getStateHash() {
+        if (tileMap == null) throw new IllegalStateException("World has no map.");
+        return tileMap.hash() ^ entityHash;
+    }
+
+    /**
+     * @return The entity part of the state hash, worked out from scratch.
+     */
+    @SuppressWarnings("rawtypes")
+    private long computeEntityHash() {
+        long hash = Zobrist.entity(player);
+        for (ColorableTile.Color color : ColorableTile.Color.values()) {
+            hash ^= Zobrist.keys(color, player.keyCount(color));
+        }
+        for (Entity entity : entities) hash ^= Zobrist.entity(entity);
+        return hash;
+    }
+
+    /**
+     * Suppressed the raw types warning as the generic type is only used for observers.
+     *
+     * @param entity An entity.
+     * @return Whether or not the entity is the player or in the entity list of this world.
+     */
+    @SuppressWarnings("rawtypes")
+    private boolean isTracked(Entity entity) {
+        return entity == player || entities.byID(entity.id()) == entity;
+    }
+
+    /**
+     * Adds or removes an entity from the state hash. Called by the entity list.
+     * Suppressed the raw types warning as the generic type is only used for observers.
+     *
+     * @param entity The entity being added or removed.
+     */
+    @SuppressWarnings("rawtypes")
+    void toggleHash(Entity entity) {
+        entityHash ^= Zobrist.entity(entity);
+    }
+
+    /**
+     * Updates the state hash after an entity turns. Called by the entity.
+     * Suppressed the raw types warning as the generic type is only used for observers.
+     *
+     * @param entity The entity that turned.
+     * @param oldDir The direction it was facing, null if it has just been created.
+     */
+    @SuppressWarnings("rawtypes")
+    void entityTurned(Entity entity, Entity.Direction oldDir) {
+        if (oldDir == null || !isTracked(entity)) return;
+        entityHash ^= Zobrist.direction(entity.id(), oldDir) ^ Zobrist.direction(entity.id(), entity.getDir());
+    }
+
+    /**
+     * Updates the state hash after the player's keys change. Called by the player.
+     *
+     * @param player   The player.
+     * @param color    Color of the key that was added or removed.
+     * @param oldCount Number of keys of the color before.
+     */
+    void keysChanged(Player player, ColorableTile.Color color, int oldCount) {
+        if (player != this.player) return;
+        entityHash ^= Zobrist.keys(color, oldCount) ^ Zobrist.keys(color, player.keyCount(color));
+    }
+
+    /**
+     * @return The Player entity of this world.
+     */
+    public Player getPlayer() {
+        return player;
+    }
+
+    /**
+     * Suppressed the raw types warning as the generic type is only used
+     * for observers and does not affect this use case.
+     *
+     * @return The list of non-player entities in this world. Entities can be added
+     * to and removed from it directly.
+     */
+    @SuppressWarnings("rawtypes")
+    public List<Entity> getEntities() {
+        return entities;
+    }
+
+    /**
+     * @return The service enemies use to find shortest paths to the player.
+     */
+    public PathService getPaths() {
+        return paths;
+    }
+
+    /**
+     * Finds the non-player entities on a cell.
+     *
+     * @param point Position of the cell.
+     * @return An unmodifiable list of the entities on the cell.
+     */
+    public List<Entity<?>> getEntitiesAt(Maze.Point point) {
+        if (!contains(point)) throw new IllegalArgumentException("Invalid point given.");
+        return Collections.unmodifiableList(entities.at(point.x(), point.y()));
+    }
+
+    /**
+     * Finds the non-player entities within a rectangle of cells. The rectangle
+     * may extend past the edges of the map.
+     *
+     * @param minX Left edge, inclusive.
+     * @param minY Top edge, inclusive.
+     * @param maxX Right edge, inclusive.
+     * @param maxY Bottom edge, inclusive.
+     * @return A new list of the entities in the rectangle.
+     */
+    public List<Entity<?>> getEntitiesIn(int minX, int minY, int maxX, int maxY) {
+        return entities.in(minX, minY, maxX, maxY);
+    }
+
+    /**
+     * @return A number that changes whenever entities are added to or removed from this world.
+     */
+    int entitiesVersion() {
+        return entities.version();
+    }
+
+    /**
+     * Updates the position index and state hash after an entity moves. Called by the entity.
+     *
+     * @param entity The entity that moved.
+     * @param oldPos The position it moved from, null if it has just been created.
+     */
+    @SuppressWarnings("rawtypes")
+    void entityMoved(Entity entity, Maze.Point oldPos) {
+        if (oldPos == null || !isTracked(entity)) return;
+        entities.moved(entity, oldPos);
+        entityHash ^= Zobrist.position(entity.id(), oldPos) ^ Zobrist.position(entity.id(), entity.getPos());
+    }
+
+    /**
+     * @return A Point representing the maps dimensions.
+     */
+    public Maze.Point getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Checks whether a point lies on this world's tilemap.
+     *
+     * @param point The point to check.
+     * @return Whether or not the point exists on the tilemap.
+     */
+    public boolean contains(Maze.Point point) {
+        return point != null && contains(point.x(), point.y());
+    }
+
+    /**
+     * Overloaded method for contains() that accepts two individual numbers
+     * that represent X and Y, respectively.
+     *
+     * @param x X position.
+     * @param y Y position.
+     * @return Whether or not the position exists on the tilemap.
+     */
+    public boolean contains(int x, int y) {
+        return tileMap != null && tileMap.contains(x, y);
+    }
+
+    /**
+     * Finds a Tile using the tilemap given a point. Tiles without state of their
+     * own are created when first asked for, so use isObstructive() or isTile()
+     * where possible when scanning the whole map.
+     *
+     * @param point The position of the tile.
+     * @return Tile object at the given position.
+     */
+    public Tile getTile(Maze.Point point) {
+        if (point == null) throw new IllegalArgumentException("Invalid point given.");
+        return getTile(point.x(), point.y());
+    }
+
+    /**
+     * Overloaded method for getTile() that accepts two individual numbers
+     * that represent X and Y, respectively.
+     *
+     * @param x X position of the tile.
+     * @param y Y position of the tile.
+     * @return Tile object at the given position.
+     */
+    public Tile getTile(int x, int y) {
+        if (!contains(x, y)) throw new IllegalArgumentException("Invalid point given.");
+        return tileMap.get(this, x, y);
+    }
+
+    /**
+     * Checks whether the tile at a point blocks entities, without creating the tile.
+     *
+     * @param point The position of the tile.
+     * @return Whether or not the tile is obstructive.
+     */
+    public boolean isObstructive(Maze.Point point) {
+        if (point == null) throw new IllegalArgumentException("Invalid point given.");
+        return isObstructive(point.x(), point.y());
+    }
+
+    /**
+     * Overloaded method for isObstructive() that accepts two individual numbers
+     * that represent X and Y, respectively.
+     *
+     * @param x X position of the tile.
+     * @param y Y position of the tile.
+     * @return Whether or not the tile is obstructive.
+     */
+    public boolean isObstructive(int x, int y) {
+        if (!contains(x, y)) throw new IllegalArgumentException("Invalid point given.");
+        return tileMap.isObstructive(this, x, y);
+    }
+
+    /**
+     * @param x X position of the tile.
+     * @param y Y position of the tile.
+     * @return Whether or not the tile stops enemies finding paths through it.
+     */
+    boolean blocksPaths(int x, int y) {
+        return tileMap.blocksPaths(this, x, y);
+    }
+
+    /**
+     * Checks the type of the tile at a point, without creating the tile.
+     *
+     * @param point The position of the tile.
+     * @param clazz The tile class to check for.
+     * @return Whether or not the tile is an instance of the class.
+     */
+    public boolean isTile(Maze.Point point, Class<? extends Tile> clazz) {
+        if (point == null) throw new IllegalArgumentException("Invalid point given.");
+        return isTile(point.x(), point.y(), clazz);
+    }
+
+    /**
+     * Overloaded method for isTile() that accepts two individual numbers
+     * that represent X and Y, respectively.
+     *
+     * @param x     X position of the tile.
+     * @param y     Y position of the tile.
+     * @param clazz The tile class to check for.
+     * @return Whether or not the tile is an instance of the class.
+     */
+    public boolean isTile(int x, int y, Class<? extends Tile> clazz) {
+        if (!contains(x, y)) throw new IllegalArgumentException("Invalid point given.");
+        if (clazz == null) throw new IllegalArgumentException("Given class is null.");
+        return tileMap.is(x, y, clazz);
+    }
+
+    /**
+     * Sets the value on the tilemap at a given point.
+     *
+     * @param point The position the tile will be at.
+     * @param tile  The tile to add to the tilemap.
+     */
+    public void setTile(Maze.Point point, Tile tile) {
+        if (!contains(point)) throw new IllegalArgumentException("Invalid point given.");
+        if (tile == null) throw new IllegalArgumentException("Given tile does not exist.");
+        if (tile.getWorld() != this) throw new IllegalArgumentException("Tile belongs to a different world.");
+        if (!tile.getPos().equals(point))
+            throw new IllegalArgumentException("Tile position does not match the point it is being set to.");
+        Tile oldTile = tileMap.liveTile(point.x(), point.y());
+        if (oldTile != null) oldTile.deleteTile();
+        tileMap.set(point.x(), point.y(), tile);
+        paths.tileChanged(point.x(), point.y());
+        assert tileMap.liveTile(point.x(), point.y()) != oldTile || oldTile == null : "Tile has not been removed from the map.";
+    }
+
+    /**
+     * Sets the Tile object at a given point to ground.
+     *
+     * @param point Point to reset.
+     */
+    public void resetTile(Maze.Point point) {
+        if (!contains(point)) throw new IllegalArgumentException("Invalid point given.");
+        setTile(point, call(() -> new Ground(point)));
+        assert isTile(point, Ground.class) : "Tile not reset properly.";
+    }
+
+    /**
+     * Notifies the tile under the player, if its type reacts to the player.
+     * Called whenever the player updates, so this must stay constant time.
+     *
+     * @param player The player that updated.
+     */
+    void triggerTile(Player player) {
+        Tile tile = tileMap.trigger(this, player.getPos().x(), player.getPos().y());
+        if (tile != null) tile.onEnter(player);
+    }
+
+    /**
+     * @return A list of changes that have occurred since this was last called.
+     */
+    public List<Entity.Action> getChangeMap() {
+        List<Entity.Action> changeMap = new ArrayList<>();
+        for (Entity<?> entity : entities) {
+            if (entity.hasAction()) changeMap.add(entity.pollAction());
+        }
+        if (player.hasAction()) changeMap.add(player.pollAction());
+        return changeMap;
+    }
+
+    /**
+     * Applies a change map to this world, updating the game state.
+     *
+     * @param changeMap A list of changes to apply.
+     */
+    public void apply(List<Entity.Action> changeMap) {
+        run(() -> changeMap.forEach(a -> {
+            Entity<?> entity = getEntity(a.id());
+            if (a.interaction().type() == ActionType.Pinged) entity.ping();
+            else {
+                entity.setDir(a.newDir());
+                entity.move(a.moveVector());
+            }
+        }));
+    }
+
+    /**
+     * Undoes a change map in this world, updating the game state.
+     *
+     * @param changeMap A list of changes to undo.
+     */
+    public void undo(List<Entity.Action> changeMap) {
+        run(() -> changeMap.forEach(a -> {
+            Entity<?> entity = getEntity(a.id());
+            if (a.interaction().type() == ActionType.Pinged) entity.unping();
+            else {
+                entity.setDir(a.oldDir());
+                entity.moveBy(-a.moveVector().x(), -a.moveVector().y());
+                a.interaction().type().undo(this, entity.getPos().add(a.moveVector()), a.interaction().color());
+            }
+        }));
+    }
+
+    /**
+     * Finds an entity based on its ID in constant time, used for
+     * replaying and rewinding moves. Suppresses raw types
+     * warning because the generic type is only used for observers
+     * and does not affect the implementation of this method.
+     *
+     * @param id ID of the entity.
+     * @return The entity that matches the ID.
+     */
+    @SuppressWarnings("rawtypes")
+    public Entity getEntity(int id) {
+        if (player.id() == id) return player;
+        Entity entity = entities.byID(id);
+        if (entity == null) throw new IllegalArgumentException("No entity exists with given ID.");
+        return entity;
+    }
+
+    /**
+     * @return A new entity ID, unique within this world.
+     */
+    int nextID() {
+        return globalID++;
+    }
+
+    /**
+     * @return The bus that events about this world are published on.
+     */
+    public EventBus getEvents() {
+        return events;
+    }
+
+    /**
+     * Reduce the number of treasures left by 1.
+     */
+    public void collectTreasure() {
+        if (treasuresLeft <= 0) throw new IllegalStateException("No treasure to collect.");
+        treasuresLeft--;
+    }
+
+    /**
+     * Increases the number of treasures left by 1.
+     */
+    public void addTreasure() {
+        treasuresLeft++;
+    }
+
+    /**
+     * @return Whether or not all the Treasure tiles on the map have been collected.
+     */
+    public boolean collectedAllTreasures() {
+        return treasuresLeft == 0;
+    }
+
+    /**
+     * @return The number of treasures left to collect.
+     */
+    public int getTreasuresLeft() {
+        return treasuresLeft;
+    }
+
+    /**
+     * @return The number of the next level to load.
+     */
+    public int getNextLevel() {
+        return nextLevel;
+    }
+
+    /**
+     * @return Whether or not there are more levels to load.
+     */
+    public boolean gameComplete() {
+        return nextLevel == -1;
+    }
+
+    /**
+     * @return Whether or not the game has been won.
+     */
+    public boolean gameWon() {
+        return isTile(player.getPos(), Exit.class);
+    }
+
+    /**
+     * @return Whether or not the player has lost the game.
+     */
+    public boolean isGameLost() {
+        return gameLost;
+    }
+
+    /**
+     * Flags the game as over, publishing a Died event the first time.
+     */
+    public void loseGame() {
+        if (gameLost) return;
+        gameLost = true;
+        events.died(player, player.getPos());
+    }
+
+    /**
+     * @return The current maze state in string form, one character per tile and a line per row. Used for testing.
+     */
+    public String getStringState() {
+        StringBuilder mazeState = new StringBuilder((tileMap.width() + 1) * tileMap.height());
+        for (int y = 0; y < tileMap.height(); y++) {
+            tileMap.appendRow(y, mazeState);
+            mazeState.append('\n');
+        }
+        return mazeState.toString();
+    }
+
+    /**
+     * @return The tiles of this world, for codecs that read them directly.
+     */
+    TileGrid getTileMap() {
+        if (tileMap == null) throw new IllegalStateException("World has no map.");
+        return tileMap;
+    }
+}
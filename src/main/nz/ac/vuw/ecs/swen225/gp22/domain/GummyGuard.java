@@ -2,18 +2,17 @@ package nz.ac.vuw.ecs.swen225.gp22.domain;
 
 /**
  * A basic enemy that moves back and forth.
- * Is not used by the game, as we moved on to
- * using jar files for enemies.
+ * The game loads enemies from jar files, but those only work in the default world,
+ * so this takes the place of the jar's GummyGuard in every other world.
  *
  * @author Abdul
- * @version 1.7
+ * @version 1.10
  */
-@Deprecated
 public class GummyGuard extends EnemyEntity<GummyGuard> {
     /**
      * Used for if the player walks into the enemy.
      */
-    private final Observer<Player> playerObserver;
+    private final EventBus.Subscription playerMoves;
 
     /**
      * Default constructor, sets the position, direction, and speed of the enemy.
@@ -24,10 +23,11 @@ public class GummyGuard extends EnemyEntity<GummyGuard> {
     public GummyGuard(Maze.Point entityPos, Direction facingDir) {
         super(entityPos, facingDir, 400);
 
-        playerObserver = player -> {
-            if (player.getPos().equals(getPos())) Maze.loseGame();
-        };
-        Maze.player.addObserver(playerObserver);
+        playerMoves = getWorld().getEvents().subscribe(GameEvent.Moved.class, moved -> {
+            // Looking the guard up at the player's cell also ignores moves after it has left the world.
+            if (moved.getEntity() == getWorld().getPlayer() && getWorld().getEntitiesAt(moved.getTo()).contains(this))
+                getWorld().loseGame();
+        });
     }
 
     @Override
@@ -35,21 +35,21 @@ public class GummyGuard extends EnemyEntity<GummyGuard> {
         Direction oldDir = getDir();
         Maze.Point oldPos = getPos();
         moveAndTurn(getDir());
-        if (Maze.getTile(getPos().add(getDir())).isObstructive()) setDir(getDir().opposite());
-        if (Maze.player.getPos().equals(getPos())) Maze.loseGame();
-        action = new Action(id(), getPos().subtract(oldPos), oldDir, getDir(), new Action.Interaction(Action.Interaction.ActionType.Pinged, ColorableTile.Color.None));
+        if (getWorld().isObstructive(getPos().add(getDir()))) setDir(getDir().opposite());
+        if (getWorld().getPlayer().getPos().equals(getPos())) getWorld().loseGame();
+        action = new Action(id(), getPos().subtract(oldPos), oldDir, getDir(), Action.Interaction.PINGED);
     }
 
     @Override
     public void unping() {
-        if (Maze.getTile(getPos().subtract(getDir())).isObstructive()) setDir(getDir().opposite());
+        if (getWorld().isObstructive(getPos().subtract(getDir()))) setDir(getDir().opposite());
         move(getDir().opposite());
         ;
-        if (Maze.player.getPos().equals(getPos())) Maze.loseGame();
+        if (getWorld().getPlayer().getPos().equals(getPos())) getWorld().loseGame();
     }
 
     @Override
     public void deleteEntity() {
-        Maze.player.removeObserver(playerObserver);
+        playerMoves.cancel();
     }
 }
\ No newline at end of file
@@ -0,0 +1,118 @@
+package nz.ac.vuw.ecs.swen225.gp22.domain;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The keys a player holds, stored as a count for each color so that every query
+ * takes constant time. Observers are updated whenever a key is added or used, so
+ * the UI only has to redraw the inventory when it changes. Only the player changes
+ * the inventory, everything else gets a read only view of it.
+ *
+ * @author agent
+ * @version 1.0
+ */
+public final class Inventory extends Observable<Inventory> {
+    /**
+     * Cached values of the color enum.
+     */
+    private static final ColorableTile.Color[] COLORS = ColorableTile.Color.values();
+
+    /**
+     * Number of keys held of each color, indexed by ordinal.
+     */
+    private final int[] counts = new int[COLORS.length];
+
+    /**
+     * Total number of keys held.
+     */
+    private int total = 0;
+
+    /**
+     * Immutable list of the keys held, made when first asked for after a change.
+     */
+    private List<ColorableTile.Color> keys = List.of();
+
+    /**
+     * Creates an empty inventory. Only players have inventories.
+     */
+    Inventory() {
+    }
+
+    /**
+     * @param color Color of the key.
+     * @return The number of keys of a color held.
+     */
+    public int count(ColorableTile.Color color) {
+        if (color == null) throw new IllegalArgumentException("Given color is null.");
+        return counts[color.ordinal()];
+    }
+
+    /**
+     * @param color Color of the key.
+     * @return Whether or not a key of a color is held.
+     */
+    public boolean has(ColorableTile.Color color) {
+        return count(color) > 0;
+    }
+
+    /**
+     * @return The number of keys held.
+     */
+    public int total() {
+        return total;
+    }
+
+    /**
+     * Gets the keys held, grouped by color. The same list is returned until the
+     * inventory changes, so this can be called every frame.
+     *
+     * @return An immutable list of the keys held.
+     */
+    public List<ColorableTile.Color> asList() {
+        if (keys == null) {
+            List<ColorableTile.Color> list = new ArrayList<>(total);
+            for (ColorableTile.Color color : COLORS) {
+                for (int i = 0; i < counts[color.ordinal()]; i++) list.add(color);
+            }
+            keys = Collections.unmodifiableList(list);
+        }
+        return keys;
+    }
+
+    /**
+     * Adds a key without updating observers.
+     *
+     * @param color Color of the key.
+     */
+    void add(ColorableTile.Color color) {
+        counts[color.ordinal()]++;
+        total++;
+        keys = null;
+    }
+
+    /**
+     * Removes a key without updating observers.
+     *
+     * @param color Color of the key, which must be held.
+     */
+    void remove(ColorableTile.Color color) {
+        if (counts[color.ordinal()] == 0) throw new IllegalArgumentException("Player does not have this key.");
+        counts[color.ordinal()]--;
+        total--;
+        keys = null;
+    }
+
+    /**
+     * Replaces every key without updating observers.
+     *
+     * @param newKeys The keys to hold.
+     */
+    void set(List<ColorableTile.Color> newKeys) {
+        for (int i = 0; i < counts.length; i++) counts[i] = 0;
+        total = 0;
+        keys = null;
+        newKeys.forEach(this::add);
+    }
+}
@@ -1,45 +1,38 @@
 package nz.ac.vuw.ecs.swen225.gp22.domain;
 
-import nz.ac.vuw.ecs.swen225.gp22.domain.Entity.Action.Interaction;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Entity.Action.Interaction.ActionType;
 
 /**
  * Represents a tile with a key on it, which the player
  * can pick up by walking onto the tile.
  *
  * @author Abdul
- * @version 1.5
+ * @version 1.7
  */
 public class Key extends ColorableTile {
-    /**
-     * Used for tile functionality that depends on the player.
-     */
-    private final Observer<Player> playerObserver;
-
     /**
      * Default constructor, sets the position and color of the tile, and
-     * obstructiveness to false. An observer is also added to the player so
-     * that when they are on this tile, it is reset and a key is added
-     * to the player inventory.
+     * obstructiveness to false.
      *
      * @param tilePos Point to set the position field to.
      * @param color   Color to set the color field to.
      */
     public Key(Maze.Point tilePos, Color color) {
         super(tilePos, false, color);
-
-        playerObserver = player -> {
-            if (Maze.getTile(tilePos) == this && player.getPos().equals(tilePos)) {
-                Maze.resetTile(tilePos);
-                Maze.player.addKey(color);
-                Maze.unclaimedInteractions.offer(new Interaction(Interaction.ActionType.PickupKey, color));
-            }
-        };
-        Maze.player.addObserver(playerObserver);
     }
 
+    /**
+     * When the player is on this tile, it is reset and a key is added
+     * to the player inventory.
+     *
+     * @param player The player on this tile.
+     */
     @Override
-    public void deleteTile() {
-        Maze.player.removeObserver(playerObserver);
+    public void onEnter(Player player) {
+        getWorld().resetTile(getPos());
+        player.addKey(getColor());
+        player.interacted(ActionType.PickupKey, getColor());
+        getWorld().getEvents().keyCollected(player, getPos(), getColor());
     }
 
     @Override
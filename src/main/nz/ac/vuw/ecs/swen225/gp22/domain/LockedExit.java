@@ -1,44 +1,45 @@
 package nz.ac.vuw.ecs.swen225.gp22.domain;
 
-import nz.ac.vuw.ecs.swen225.gp22.domain.Entity.Action.Interaction;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Entity.Action.Interaction.ActionType;
 
 /**
  * Represents a tile which the player can only walk
  * on if they have collected all the treasures.
  *
  * @author Abdul
- * @version 1.5
+ * @version 1.7
  */
 public class LockedExit extends Tile {
     /**
-     * Used for tile functionality that depends on the player.
-     */
-    private final Observer<Player> playerObserver;
-
-    /**
-     * Default constructor, sets the position and color of the tile, and
-     * obstructiveness to true. An observer is also added to the player so
-     * that the obstructiveness is updated based on the treasures collected. The same
-     * observer makes sure that when they are on this tile, it is reset.
+     * Default constructor, sets the position the tile, and
+     * obstructiveness to true.
      *
      * @param tilePos Point to set the position field to.
      */
     public LockedExit(Maze.Point tilePos) {
         super(tilePos, true);
+    }
 
-        playerObserver = player -> {
-            setObstructive(!Maze.collectedAllTreasures());
-            if (Maze.getTile(tilePos) == this && player.getPos().equals(tilePos)) {
-                Maze.resetTile(tilePos);
-                Maze.unclaimedInteractions.offer(new Interaction(Interaction.ActionType.UnlockExit, ColorableTile.Color.None));
-            }
-        };
-        Maze.player.addObserver(playerObserver);
+    /**
+     * The exit is obstructive until all the treasures have been collected.
+     *
+     * @return The obstructiveness of the tile.
+     */
+    @Override
+    public boolean isObstructive() {
+        return !getWorld().collectedAllTreasures();
     }
 
+    /**
+     * When the player is on this tile, it is reset.
+     *
+     * @param player The player on this tile.
+     */
     @Override
-    public void deleteTile() {
-        Maze.player.removeObserver(playerObserver);
+    public void onEnter(Player player) {
+        getWorld().resetTile(getPos());
+        player.interacted(ActionType.UnlockExit, ColorableTile.Color.None);
+        getWorld().getEvents().exitUnlocked(player, getPos());
     }
 
     @Override
@@ -0,0 +1,240 @@
+package nz.ac.vuw.ecs.swen225.gp22.domain;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Builds a new map for a world in one batch, for level loading. Tiles are placed by
+ * their database ID and parameters, the same as {@link TileDatabase#create}, and the
+ * types that the tile grid packs are written straight into it without being created.
+ * Nothing in the world changes until {@link #commit()}, which replaces the map, the
+ * counters and the player in one go.
+ * <p>
+ * Tile types from other modules are kept as objects, and their constructors need the
+ * map they are on, so they are created as the last step of committing.
+ * <p>
+ * A builder can also be kept as a {@link MapTemplate} instead of being committed, and
+ * a builder started from a template begins with its map, so changes can be placed over it.
+ *
+ * @author agent
+ * @version 1.0
+ */
+public final class MapBuilder {
+    /**
+     * A tile that will be created once the map is committed.
+     *
+     * @param tileID ID of the tile.
+     * @param params Parameters of the tile, starting with its position.
+     */
+    record Pending(String tileID, Object[] params) {
+    }
+
+    /**
+     * The world the map is for.
+     */
+    private final GameWorld world;
+
+    /**
+     * The tiles being built, not yet seen by the world.
+     */
+    private final TileGrid grid;
+
+    /**
+     * Tiles to create on commit, keyed by cell index in the order they were placed.
+     */
+    private final Map<Integer, Pending> pending = new LinkedHashMap<>();
+
+    /**
+     * The number of treasures on the map, and the next level to load.
+     */
+    private int treasures = 0, nextLevel = -1;
+
+    /**
+     * Where the player starts.
+     */
+    private Maze.Point playerPos = Maze.Point.of(0, 0);
+
+    /**
+     * The direction the player starts facing.
+     */
+    private Entity.Direction playerDir = Entity.Direction.Down;
+
+    /**
+     * Whether or not the map has been committed.
+     */
+    private boolean committed = false;
+
+    /**
+     * Creates a builder for a map. Use {@link GameWorld#builder} or {@link Maze#builder}.
+     *
+     * @param world The world the map is for.
+     * @param grid  An empty grid of the size of the map.
+     */
+    MapBuilder(GameWorld world, TileGrid grid) {
+        this.world = world;
+        this.grid = grid;
+    }
+
+    /**
+     * Creates a builder that starts with the map of a template. Use {@link GameWorld#builder(MapTemplate)}.
+     *
+     * @param world    The world the map is for.
+     * @param template The template to start from.
+     */
+    MapBuilder(GameWorld world, MapTemplate template) {
+        this(world, template.grid());
+        pending.putAll(template.pending());
+        treasures = template.getTreasures();
+        nextLevel = template.getNextLevel();
+        playerPos = template.getPlayerPos();
+        playerDir = template.getPlayerDir();
+    }
+
+    /**
+     * @param treasures The number of treasures on the map.
+     * @return This builder.
+     */
+    public MapBuilder treasures(int treasures) {
+        if (treasures < 0) throw new IllegalArgumentException("Number of treasures cannot be below 0.");
+        this.treasures = treasures;
+        return this;
+    }
+
+    /**
+     * @param nextLevel The number of the next level to load, -1 if there is none.
+     * @return This builder.
+     */
+    public MapBuilder nextLevel(int nextLevel) {
+        this.nextLevel = nextLevel;
+        return this;
+    }
+
+    /**
+     * @param pos Where the player starts, the top left by default.
+     * @param dir The direction the player starts facing, down by default.
+     * @return This builder.
+     */
+    public MapBuilder player(Maze.Point pos, Entity.Direction dir) {
+        if (pos == null || dir == null) throw new IllegalArgumentException("Given player state is null.");
+        if (!grid.contains(pos.x(), pos.y())) throw new IllegalArgumentException("Invalid point given.");
+        playerPos = pos;
+        playerDir = dir;
+        return this;
+    }
+
+    /**
+     * Places a tile on every cell of the map.
+     *
+     * @param tileID ID of the tile.
+     * @param params Parameters of the tile after its position.
+     * @return This builder.
+     */
+    public MapBuilder fill(String tileID, Object... params) {
+        return fill(Maze.Point.of(0, 0), Maze.Point.of(grid.width() - 1, grid.height() - 1), tileID, params);
+    }
+
+    /**
+     * Places a tile on every cell of a rectangle.
+     *
+     * @param from   Top left corner, inclusive.
+     * @param to     Bottom right corner, inclusive.
+     * @param tileID ID of the tile.
+     * @param params Parameters of the tile after its position.
+     * @return This builder.
+     */
+    public MapBuilder fill(Maze.Point from, Maze.Point to, String tileID, Object... params) {
+        checkOpen();
+        if (from == null || to == null) throw new IllegalArgumentException("Given point is null.");
+        if (!grid.contains(from.x(), from.y()) || !grid.contains(to.x(), to.y()) || from.x() > to.x() || from.y() > to.y())
+            throw new IllegalArgumentException("Invalid rectangle given.");
+        int code = TileGrid.code(TileDatabase.classOf(tileID, withPos(from, params)), params);
+        for (int y = from.y(); y <= to.y(); y++) {
+            for (int x = from.x(); x <= to.x(); x++) {
+                if (code >= 0) packed(x, y, code, params);
+                else pending.put(grid.index(x, y), new Pending(tileID, withPos(Maze.Point.of(x, y), params)));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Places a tile, replacing any placed on the same cell before.
+     *
+     * @param tileID ID of the tile.
+     * @param pos    Position of the tile.
+     * @param params Parameters of the tile after its position.
+     * @return This builder.
+     */
+    public MapBuilder place(String tileID, Maze.Point pos, Object... params) {
+        checkOpen();
+        if (pos == null) throw new IllegalArgumentException("Given point is null.");
+        if (!grid.contains(pos.x(), pos.y())) throw new IllegalArgumentException("Invalid point given.");
+        Object[] all = withPos(pos, params);
+        int code = TileGrid.code(TileDatabase.classOf(tileID, all), params);
+        if (code >= 0) packed(pos.x(), pos.y(), code, params);
+        else pending.put(grid.index(pos.x(), pos.y()), new Pending(tileID, all));
+        return this;
+    }
+
+    /**
+     * Replaces the world's map with the one built, resetting the game state and
+     * creating a new player, then creates the tiles kept as objects.
+     *
+     * @return The world.
+     */
+    public GameWorld commit() {
+        checkOpen();
+        committed = true;
+        world.install(grid, treasures, nextLevel, playerPos, playerDir);
+        world.run(() -> pending.values().forEach(tile -> {
+            Tile created = TileDatabase.create(tile.tileID(), tile.params());
+            world.setTile(created.getPos(), created);
+        }));
+        pending.clear();
+        return world;
+    }
+
+    /**
+     * Keeps the map built so far as a template, which any number of builders can start from.
+     * The chunks are shared with this builder, which copies them before it next writes to them,
+     * so this builder can still be used afterwards.
+     *
+     * @return The template.
+     */
+    public MapTemplate template() {
+        checkOpen();
+        return new MapTemplate(grid.snapshot(), pending, treasures, nextLevel, playerPos, playerDir);
+    }
+
+    /**
+     * Writes a packed tile, dropping any tile waiting to be created on the cell.
+     *
+     * @param x      X position.
+     * @param y      Y position.
+     * @param code   Packed code of the tile.
+     * @param params Parameters of the tile after its position.
+     */
+    void packed(int x, int y, int code, Object[] params) {
+        if (!pending.isEmpty()) pending.remove(grid.index(x, y));
+        grid.setPacked(x, y, code, params);
+    }
+
+    /**
+     * Makes sure the map has not been committed.
+     */
+    private void checkOpen() {
+        if (committed) throw new IllegalStateException("Map has already been committed.");
+    }
+
+    /**
+     * @param pos    Position of a tile.
+     * @param params Parameters of the tile after its position.
+     * @return All of the tile's parameters.
+     */
+    private static Object[] withPos(Maze.Point pos, Object[] params) {
+        Object[] all = new Object[params.length + 1];
+        all[0] = pos;
+        System.arraycopy(params, 0, all, 1, params.length);
+        return all;
+    }
+}
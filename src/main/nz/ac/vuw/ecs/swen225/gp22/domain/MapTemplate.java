@@ -0,0 +1,113 @@
+package nz.ac.vuw.ecs.swen225.gp22.domain;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A map that has been built but not given to a world, made with {@link MapBuilder#template()}.
+ * It cannot be changed, so one template can start any number of maps, in any number of worlds,
+ * with {@link GameWorld#builder(MapTemplate)}. The tile chunks are shared with each map built
+ * from it and only copied when that map changes them, so starting a map is cheap.
+ * <p>
+ * Tiles kept as objects belong to a world, so they are kept as their ID and parameters
+ * and created again for each map.
+ *
+ * @author agent
+ * @version 1.0
+ */
+public final class MapTemplate {
+    /**
+     * The packed tiles.
+     */
+    private final TileGrid.Snapshot tiles;
+
+    /**
+     * Tiles to create when a map is committed, keyed by cell index.
+     */
+    private final Map<Integer, MapBuilder.Pending> pending;
+
+    /**
+     * The number of treasures on the map, and the next level to load.
+     */
+    private final int treasures, nextLevel;
+
+    /**
+     * Where the player starts.
+     */
+    private final Maze.Point playerPos;
+
+    /**
+     * The direction the player starts facing.
+     */
+    private final Entity.Direction playerDir;
+
+    /**
+     * Creates a template. Use {@link MapBuilder#template()}.
+     *
+     * @param tiles     The packed tiles, which must not be written to again.
+     * @param pending   Tiles to create when a map is committed.
+     * @param treasures The number of treasures on the map.
+     * @param nextLevel The number of the next level to load.
+     * @param playerPos Where the player starts.
+     * @param playerDir The direction the player starts facing.
+     */
+    MapTemplate(TileGrid.Snapshot tiles, Map<Integer, MapBuilder.Pending> pending, int treasures, int nextLevel,
+                Maze.Point playerPos, Entity.Direction playerDir) {
+        this.tiles = tiles;
+        this.pending = Collections.unmodifiableMap(new LinkedHashMap<>(pending));
+        this.treasures = treasures;
+        this.nextLevel = nextLevel;
+        this.playerPos = playerPos;
+        this.playerDir = playerDir;
+    }
+
+    /**
+     * @return The size of the map.
+     */
+    public Maze.Point getDimensions() {
+        return Maze.Point.of(tiles.width(), tiles.height());
+    }
+
+    /**
+     * @return The number of treasures on the map.
+     */
+    public int getTreasures() {
+        return treasures;
+    }
+
+    /**
+     * @return The number of the next level to load, -1 if there is none.
+     */
+    public int getNextLevel() {
+        return nextLevel;
+    }
+
+    /**
+     * @return Where the player starts.
+     */
+    public Maze.Point getPlayerPos() {
+        return playerPos;
+    }
+
+    /**
+     * @return The direction the player starts facing.
+     */
+    public Entity.Direction getPlayerDir() {
+        return playerDir;
+    }
+
+    /**
+     * @return A grid holding the packed tiles, sharing their chunks.
+     */
+    TileGrid grid() {
+        return new TileGrid(tiles);
+    }
+
+    /**
+     * @return Tiles to create when a map is committed, keyed by cell index.
+     */
+    Map<Integer, MapBuilder.Pending> pending() {
+        return pending;
+    }
+}
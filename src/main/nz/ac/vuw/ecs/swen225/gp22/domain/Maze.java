@@ -1,99 +1,93 @@
 package nz.ac.vuw.ecs.swen225.gp22.domain;
 
-import java.util.ArrayDeque;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
-import java.util.Queue;
-import java.util.stream.Collectors;
-
-import nz.ac.vuw.ecs.swen225.gp22.domain.Entity.Action.Interaction.ActionType;
 
 /**
- * This class stores the game state (player, tilemap, entities, and treasures).
- * As such, it is accessed by other packages to query the game state for specific tiles
- * or perform operations on the player.
+ * Static adapter over the {@link GameWorld} bound to the calling thread, which is the
+ * default world unless another has been bound. The Swing app and existing enemy jars use
+ * this class to query the game state for specific tiles or perform operations on the player.
  *
  * @author Abdul
- * @version 1.13
+ * @version 1.22
  */
 public class Maze {
     /**
-     * Stores the Player entity so that other tiles can access it easily.
+     * Stores the Player entity of the default world so that other tiles can access it easily.
      */
     public static Player player;
 
     /**
-     * Contains all non-player entities. Suppressed the raw types warning as
+     * Contains all non-player entities of the default world. Suppressed the raw types warning as
      * the generic type is only used for observers and does not affect this use case.
      */
     @SuppressWarnings("rawtypes")
-    public static ArrayList<Entity> entities = new ArrayList<>();
+    public static final List<Entity> entities = GameWorld.getDefault().getEntities();
 
     /**
-     * A 2D array that stores the level Tile instances in a
-     * way where they can be accessed by position.
+     * Generates a new map. This will be used by the persistency module for level loading.
+     *
+     * @param dimensions The size of the map.
+     * @param treasures  The number of treasures on the map.
+     * @param nextLevelP Stores the number of the next level to load.
      */
-    private static Tile tileMap[][];
+    public static void generateMap(Point dimensions, int treasures, int nextLevelP) {
+        GameWorld.current().generateMap(dimensions, treasures, nextLevelP);
+    }
 
     /**
-     * Represents how many more Treasure tiles are still on the map.
+     * Starts building a new map that replaces the current one when it is committed.
+     *
+     * @param dimensions The size of the map.
+     * @return The builder.
      */
-    private static int treasuresLeft;
+    public static MapBuilder builder(Point dimensions) {
+        return GameWorld.current().builder(dimensions);
+    }
 
     /**
-     * Stores the number of the next level to load. If -1 the game complete flag returns true.
+     * Captures the state of the game so that it can be restored later.
+     *
+     * @return The snapshot.
      */
-    private static int nextLevel;
+    public static GameWorld.Snapshot snapshot() {
+        return GameWorld.current().snapshot();
+    }
 
     /**
-     * Stores Interaction records to be claimed by entities.
+     * Puts the game back to the state captured in a snapshot.
+     *
+     * @param snapshot A snapshot taken of the current world.
      */
-    public static Queue<Entity.Action.Interaction> unclaimedInteractions = new ArrayDeque<>();
+    public static void restore(GameWorld.Snapshot snapshot) {
+        GameWorld.current().restore(snapshot);
+    }
 
     /**
-     * Flag used to check if the player was killed.
+     * @return The service enemies use to find shortest paths to the player.
      */
-    private static boolean gameLost;
+    public static PathService getPaths() {
+        return GameWorld.current().getPaths();
+    }
 
     /**
-     * Used to make entity IDs.
+     * @return The bus that events about the current world are published on.
      */
-    public static int globalID;
+    public static EventBus getEvents() {
+        return GameWorld.current().getEvents();
+    }
 
     /**
-     * Generates a new map. This will be used by the persistency module for level loading.
-     *
-     * @param dimensions The size of the map.
-     * @param treasures  The number of treasures on the map.
-     * @param nextLevelP Stores the number of the next level to load.
+     * @return A constant time hash of the current game state.
      */
-    public static void generateMap(Point dimensions, int treasures, int nextLevelP) {
-        if (dimensions == null || dimensions.x() <= 0 || dimensions.y() <= 0)
-            throw new IllegalArgumentException("Invalid map dimensions.");
-        if (treasures < 0) throw new IllegalArgumentException("Number of treasures cannot be below 0.");
-
-        nextLevel = nextLevelP;
-        gameLost = false;
-        globalID = 0;
-        entities.clear();
-
-        tileMap = new Tile[dimensions.x()][dimensions.y()];
-        for (int x = 0; x < dimensions.x(); x++) {
-            for (int y = 0; y < dimensions.y(); y++) {
-                setTile(new Point(x, y), new Ground(new Point(x, y)));
-            }
-        }
-
-        treasuresLeft = treasures;
-        player = new Player(new Point(0, 0), Entity.Direction.Down);
+    public static long getStateHash() {
+        return GameWorld.current().getStateHash();
     }
 
     /**
      * @return A Point representing the maps dimensions.
      */
     public static Point getDimensions() {
-        return new Point(tileMap.length, tileMap[0].length);
+        return GameWorld.current().getDimensions();
     }
 
     /**
@@ -103,8 +97,31 @@ public class Maze {
      * @return Tile object at the given position.
      */
     public static Tile getTile(Point point) {
-        if (point == null || !point.isValid()) throw new IllegalArgumentException("Invalid point given.");
-        return tileMap[point.x()][point.y()];
+        return GameWorld.current().getTile(point);
+    }
+
+    /**
+     * Overloaded method for getTile() that accepts two individual numbers
+     * that represent X and Y, respectively.
+     *
+     * @param x X position of the tile.
+     * @param y Y position of the tile.
+     * @return Tile object at the given position.
+     */
+    public static Tile getTile(int x, int y) {
+        return GameWorld.current().getTile(x, y);
+    }
+
+    /**
+     * Checks the type of the tile at a position, without creating the tile.
+     *
+     * @param x     X position of the tile.
+     * @param y     Y position of the tile.
+     * @param clazz The tile class to check for.
+     * @return Whether or not the tile is an instance of the class.
+     */
+    public static boolean isTile(int x, int y, Class<? extends Tile> clazz) {
+        return GameWorld.current().isTile(x, y, clazz);
     }
 
     /**
@@ -114,14 +131,7 @@ public class Maze {
      * @param tile  The tile to add to the tilemap.
      */
     public static void setTile(Point point, Tile tile) {
-        if (point == null || !point.isValid()) throw new IllegalArgumentException("Invalid point given.");
-        if (tile == null) throw new IllegalArgumentException("Given tile does not exist.");
-        if (!tile.getPos().equals(point))
-            throw new IllegalArgumentException("Tile position does not match the point it is being set to.");
-        Tile oldTile = getTile(point);
-        if (oldTile != null) oldTile.deleteTile();
-        tileMap[point.x()][point.y()] = tile;
-        assert Maze.getTile(point) != oldTile : "Tile has not been removed from the map.";
+        GameWorld.current().setTile(point, tile);
     }
 
     /**
@@ -130,18 +140,14 @@ public class Maze {
      * @param point Point to reset.
      */
     public static void resetTile(Point point) {
-        if (point == null || !point.isValid()) throw new IllegalArgumentException("Invalid point given.");
-        setTile(point, new Ground(point));
-        assert getTile(point) instanceof Ground : "Tile not reset properly.";
+        GameWorld.current().resetTile(point);
     }
 
     /**
      * @return A list of changes that have occurred since this was last called.
      */
     public static List<Entity.Action> getChangeMap() {
-        List<Entity.Action> changeMap = entities.stream().filter(Entity::hasAction).map(n -> n.pollAction()).collect(Collectors.toList());
-        if (player.hasAction()) changeMap.add(player.pollAction());
-        return changeMap;
+        return GameWorld.current().getChangeMap();
     }
 
     /**
@@ -150,13 +156,7 @@ public class Maze {
      * @param changeMap A list of changes to apply.
      */
     public static void apply(List<Entity.Action> changeMap) {
-        changeMap.forEach(a -> {
-            if (a.interaction().type() == ActionType.Pinged) getEntity(a.id()).ping();
-            else {
-                getEntity(a.id()).setDir(a.newDir());
-                getEntity(a.id()).move(a.moveVector());
-            }
-        });
+        GameWorld.current().apply(changeMap);
     }
 
     /**
@@ -165,14 +165,7 @@ public class Maze {
      * @param changeMap A list of changes to undo.
      */
     public static void undo(List<Entity.Action> changeMap) {
-        changeMap.forEach(a -> {
-            if (a.interaction().type() == ActionType.Pinged) getEntity(a.id()).unping();
-            else {
-                getEntity(a.id()).setDir(a.oldDir());
-                getEntity(a.id()).move(a.moveVector().x() * -1, a.moveVector().y() * -1);
-                a.interaction().type().undo(getEntity(a.id()).getPos().add(a.moveVector()), a.interaction().color());
-            }
-        });
+        GameWorld.current().undo(changeMap);
     }
 
     /**
@@ -186,93 +179,143 @@ public class Maze {
      */
     @SuppressWarnings("rawtypes")
     public static Entity getEntity(int id) {
-        if (player.id() == id) return player;
-        return entities.stream().filter(n -> n.id() == id).findFirst().orElseThrow(() -> new IllegalArgumentException("No entity exists with given ID."));
+        return GameWorld.current().getEntity(id);
+    }
+
+    /**
+     * Finds the non-player entities on a cell.
+     *
+     * @param point Position of the cell.
+     * @return An unmodifiable list of the entities on the cell.
+     */
+    public static List<Entity<?>> getEntitiesAt(Point point) {
+        return GameWorld.current().getEntitiesAt(point);
+    }
+
+    /**
+     * Finds the non-player entities within a rectangle of cells.
+     *
+     * @param minX Left edge, inclusive.
+     * @param minY Top edge, inclusive.
+     * @param maxX Right edge, inclusive.
+     * @param maxY Bottom edge, inclusive.
+     * @return A new list of the entities in the rectangle.
+     */
+    public static List<Entity<?>> getEntitiesIn(int minX, int minY, int maxX, int maxY) {
+        return GameWorld.current().getEntitiesIn(minX, minY, maxX, maxY);
     }
 
     /**
      * Reduce the number of treasures left by 1.
      */
     public static void collectTreasure() {
-        if (treasuresLeft <= 0) throw new IllegalStateException("No treasure to collect.");
-        treasuresLeft--;
+        GameWorld.current().collectTreasure();
     }
 
     /**
      * Increases the number of treasures left by 1.
      */
     public static void addTreasure() {
-        treasuresLeft++;
+        GameWorld.current().addTreasure();
     }
 
     /**
      * @return Whether or not all the Treasure tiles on the map have been collected.
      */
     public static boolean collectedAllTreasures() {
-        return treasuresLeft == 0;
+        return GameWorld.current().collectedAllTreasures();
     }
 
     /**
      * @return The number of treasures left to collect.
      */
     public static int getTreasuresLeft() {
-        return treasuresLeft;
+        return GameWorld.current().getTreasuresLeft();
     }
 
     /**
      * @return The number of the next level to load.
      */
     public static int getNextLevel() {
-        return nextLevel;
+        return GameWorld.current().getNextLevel();
     }
 
     /**
      * @return Whether or not there are more levels to load.
      */
     public static boolean gameComplete() {
-        return nextLevel == -1;
+        return GameWorld.current().gameComplete();
     }
 
     /**
      * @return Whether or not the game has been won.
      */
     public static boolean gameWon() {
-        return getTile(player.getPos()) instanceof Exit;
+        return GameWorld.current().gameWon();
     }
 
     /**
      * @return Whether or not the player has lost the game.
      */
     public static boolean isGameLost() {
-        return gameLost;
+        return GameWorld.current().isGameLost();
     }
 
     /**
      * Flags the game as over.
      */
     public static void loseGame() {
-        gameLost = true;
+        GameWorld.current().loseGame();
     }
 
     /**
      * @return The current maze state in string form. Used for testing.
      */
     public static String getStringState() {
-        String mazeState = "";
-        for (int y = 0; y < tileMap[0].length; y++) {
-            for (int x = 0; x < tileMap.length; x++) {
-                mazeState += getTile(new Point(x, y)).toString();
-            }
-            mazeState += "\n";
-        }
-
-        return mazeState;
+        return GameWorld.current().getStringState();
     }
 
     /**
-     * Represents a point on the tilemap.
+     * Represents a point on the tilemap. Points near the origin are interned, so
+     * arithmetic on them and of() do not allocate while moving around a level.
      */
     public record Point(int x, int y) {
+        /**
+         * Lowest coordinate that is interned.
+         */
+        private static final int CACHE_MIN = -8;
+
+        /**
+         * Number of coordinates interned along each axis.
+         */
+        private static final int CACHE_SIZE = 256;
+
+        /**
+         * Interned points, filled in as they are first asked for. Points are immutable,
+         * so two threads creating the same entry at once is harmless.
+         */
+        private static final Point[] cache = new Point[CACHE_SIZE * CACHE_SIZE];
+
+        /**
+         * Gets a point, reusing an interned one if the coordinates are in range.
+         * Prefer this over the constructor on hot paths.
+         *
+         * @param x X position.
+         * @param y Y position.
+         * @return Point representing the position.
+         */
+        public static Point of(int x, int y) {
+            int cx = x - CACHE_MIN, cy = y - CACHE_MIN;
+            if (cx < 0 || cx >= CACHE_SIZE || cy < 0 || cy >= CACHE_SIZE) return new Point(x, y);
+            int index = cy * CACHE_SIZE + cx;
+            Point point = cache[index];
+            if (point == null) {
+                point = new Point(x, y);
+                cache[index] = point;
+            }
+            return point;
+        }
+
         /**
          * Adds this point and another, then returns the result.
          *
@@ -281,7 +324,7 @@ public class Maze {
          */
         public Point add(Point point) {
             if (point == null) throw new IllegalArgumentException("Given point is null");
-            return new Point(x + point.x(), y + point.y());
+            return of(x + point.x(), y + point.y());
         }
 
         /**
@@ -292,7 +335,7 @@ public class Maze {
          */
         public Point add(Entity.Direction dir) {
             if (dir == null) throw new IllegalArgumentException("Given direction is null");
-            return add(new Point(dir.posChange.x(), dir.posChange.y()));
+            return of(x + dir.posChange.x(), y + dir.posChange.y());
         }
 
         /**
@@ -304,7 +347,7 @@ public class Maze {
          * @return Point object representing the sum of the point and the two numbers.
          */
         public Point add(int addX, int addY) {
-            return add(new Point(addX, addY));
+            return of(x + addX, y + addY);
         }
 
         /**
@@ -315,7 +358,7 @@ public class Maze {
          */
         public Point subtract(Point point) {
             if (point == null) throw new IllegalArgumentException("Given point is null");
-            return new Point(x - point.x(), y - point.y());
+            return of(x - point.x(), y - point.y());
         }
 
         /**
@@ -326,7 +369,7 @@ public class Maze {
          */
         public Point subtract(Entity.Direction dir) {
             if (dir == null) throw new IllegalArgumentException("Given direction is null");
-            return subtract(new Point(dir.posChange.x(), dir.posChange.y()));
+            return of(x - dir.posChange.x(), y - dir.posChange.y());
         }
 
         /**
@@ -338,19 +381,19 @@ public class Maze {
          * @return Point object representing the result of the point minus the two numbers.
          */
         public Point subtract(int subtractX, int subtractY) {
-            return subtract(new Point(subtractX, subtractY));
+            return of(x - subtractX, y - subtractY);
         }
 
         /**
-         * @return Whether or not the point exists on the tilemap.
+         * @return Whether or not the point exists on the tilemap of the current world.
          */
         public boolean isValid() {
-            return x >= 0 && x < tileMap.length && y >= 0 && y < tileMap[0].length;
+            return GameWorld.current().contains(this);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(x, y);
+            return 31 * (31 + x) + y;
         }
 
         @Override
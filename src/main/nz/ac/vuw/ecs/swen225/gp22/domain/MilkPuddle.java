@@ -4,14 +4,9 @@ package nz.ac.vuw.ecs.swen225.gp22.domain;
  * Represents a tile that kills the player.
  *
  * @author Abdul
- * @version 1.1
+ * @version 1.2
  */
 public class MilkPuddle extends Tile {
-    /**
-     * Used for tile functionality that depends on the player.
-     */
-    private final Observer<Player> playerObserver;
-
     /**
      * Default constructor, sets the position of the tile,
      * and obstructiveness to false.
@@ -20,18 +15,11 @@ public class MilkPuddle extends Tile {
      */
     public MilkPuddle(Maze.Point tilePos) {
         super(tilePos, false);
-
-        playerObserver = player -> {
-            if (player.getPos().equals(tilePos)) {
-                Maze.loseGame();
-            }
-        };
-        Maze.player.addObserver(playerObserver);
     }
 
     @Override
-    public void deleteTile() {
-        Maze.player.removeObserver(playerObserver);
+    public void onEnter(Player player) {
+        getWorld().loseGame();
     }
 
     @Override
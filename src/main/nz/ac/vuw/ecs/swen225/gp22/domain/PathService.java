@@ -0,0 +1,313 @@
+package nz.ac.vuw.ecs.swen225.gp22.domain;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shortest paths to the player for enemies that chase them. A breadth first search
+ * from the player's cell gives every cell's distance to the player and the direction
+ * of its next step, so asking where to go is a single array lookup no matter how many
+ * enemies ask. Fields are cached by the cell the player is on, so all the enemies
+ * pinged on a tick share one search, and a player moving back and forth reuses them.
+ * <p>
+ * When a tile is set, cached fields are repaired rather than thrown away, and only
+ * the cells whose distance can change are visited: a cell that opens up can only make
+ * cells closer, and a cell that closes can only affect the cells whose next steps lead
+ * through it, which are found by following the steps back from it.
+ * <p>
+ * Doors and exit gates count as walls until they are replaced, as whether they can
+ * be passed depends on the player's items rather than on the map. Entities do not
+ * block paths.
+ *
+ * @author agent
+ * @version 1.0
+ */
+public final class PathService {
+    /**
+     * Number of fields kept before the least recently used one is dropped.
+     */
+    private static final int MAX_FIELDS = 16;
+
+    /**
+     * Distance of a cell that cannot reach the player.
+     */
+    public static final int UNREACHABLE = -1;
+
+    /**
+     * Directions in the order they are tried.
+     */
+    private static final Entity.Direction[] DIRECTIONS = Entity.Direction.values();
+
+    /**
+     * Distances and next steps to one target cell.
+     */
+    private static final class Field {
+        /**
+         * Distance from each cell to the target, UNREACHABLE if there is no path.
+         */
+        final int[] distances;
+
+        /**
+         * Ordinal of the direction of each cell's next step, -1 if there is none.
+         */
+        final byte[] steps;
+
+        /**
+         * Creates a field where no cell can reach the target.
+         *
+         * @param size Number of cells.
+         */
+        Field(int size) {
+            distances = new int[size];
+            steps = new byte[size];
+            Arrays.fill(distances, UNREACHABLE);
+            Arrays.fill(steps, (byte) -1);
+        }
+    }
+
+    /**
+     * The world paths are found in.
+     */
+    private final GameWorld world;
+
+    /**
+     * Cached fields keyed by the index of their target cell, least recently used first.
+     */
+    private final Map<Integer, Field> fields = new LinkedHashMap<>(MAX_FIELDS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Field> eldest) {
+            return size() > MAX_FIELDS;
+        }
+    };
+
+    /**
+     * Whether or not each cell blocks paths, null until a field is first needed.
+     */
+    private boolean[] blocked;
+
+    /**
+     * Size of the map the blocked cells were read from.
+     */
+    private int width, height;
+
+    /**
+     * Number of fields that have been searched from scratch.
+     */
+    private int fieldsComputed = 0;
+
+    /**
+     * Queue reused between searches.
+     */
+    private final ArrayDeque<Integer> queue = new ArrayDeque<>();
+
+    /**
+     * Creates a service with no cached fields.
+     *
+     * @param world The world paths will be found in.
+     */
+    PathService(GameWorld world) {
+        this.world = world;
+    }
+
+    /**
+     * @param from Position to find the distance from.
+     * @return The number of steps from the position to the player, or UNREACHABLE.
+     */
+    public int distance(Maze.Point from) {
+        if (from == null) throw new IllegalArgumentException("Given point is null.");
+        return distance(from.x(), from.y());
+    }
+
+    /**
+     * @param x X position.
+     * @param y Y position.
+     * @return The number of steps from the position to the player, or UNREACHABLE.
+     */
+    public int distance(int x, int y) {
+        if (!world.contains(x, y)) throw new IllegalArgumentException("Invalid point given.");
+        return field().distances[y * width + x];
+    }
+
+    /**
+     * @param from Position to step from.
+     * @return The direction of the first step on a shortest path to the player,
+     * or null if the position is the player's or cannot reach them.
+     */
+    public Entity.Direction nextStep(Maze.Point from) {
+        if (from == null) throw new IllegalArgumentException("Given point is null.");
+        return nextStep(from.x(), from.y());
+    }
+
+    /**
+     * @param x X position.
+     * @param y Y position.
+     * @return The direction of the first step on a shortest path to the player,
+     * or null if the position is the player's or cannot reach them.
+     */
+    public Entity.Direction nextStep(int x, int y) {
+        if (!world.contains(x, y)) throw new IllegalArgumentException("Invalid point given.");
+        byte step = field().steps[y * width + x];
+        return step < 0 ? null : DIRECTIONS[step];
+    }
+
+    /**
+     * @return The number of fields that have been searched from scratch rather than found in the cache.
+     */
+    public int getFieldsComputed() {
+        return fieldsComputed;
+    }
+
+    /**
+     * Drops every cached field, for when the world's map is replaced.
+     */
+    void reset() {
+        fields.clear();
+        blocked = null;
+    }
+
+    /**
+     * Repairs the cached fields after a tile is set, if it changed whether the cell blocks paths.
+     *
+     * @param x X position of the tile.
+     * @param y Y position of the tile.
+     */
+    void tileChanged(int x, int y) {
+        if (blocked == null) return;
+        int cell = y * width + x;
+        boolean nowBlocked = world.blocksPaths(x, y);
+        if (blocked[cell] == nowBlocked) return;
+        blocked[cell] = nowBlocked;
+        for (Map.Entry<Integer, Field> entry : fields.entrySet()) {
+            if (entry.getKey() == cell) continue;
+            if (nowBlocked) closed(entry.getValue(), cell);
+            else opened(entry.getValue(), cell);
+        }
+    }
+
+    /**
+     * @return The field to the player's cell, searching for it if it is not cached.
+     */
+    private Field field() {
+        if (blocked == null) readMap();
+        Maze.Point pos = world.getPlayer().getPos();
+        int target = pos.y() * width + pos.x();
+        Field field = fields.get(target);
+        if (field != null) return field;
+
+        field = new Field(blocked.length);
+        field.distances[target] = 0;
+        queue.add(target);
+        spread(field);
+        fields.put(target, field);
+        fieldsComputed++;
+        return field;
+    }
+
+    /**
+     * Reads which cells block paths from the world.
+     */
+    private void readMap() {
+        width = world.getDimensions().x();
+        height = world.getDimensions().y();
+        blocked = new boolean[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) blocked[y * width + x] = world.blocksPaths(x, y);
+        }
+    }
+
+    /**
+     * Breadth first search from the cells in the queue, giving each open cell that
+     * is further away than its neighbour plus one step a shorter distance.
+     *
+     * @param field The field to update.
+     */
+    private void spread(Field field) {
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+            int next = field.distances[cell] + 1;
+            for (Entity.Direction dir : DIRECTIONS) {
+                int neighbour = neighbour(cell, dir);
+                if (neighbour < 0 || blocked[neighbour]) continue;
+                int old = field.distances[neighbour];
+                if (old != UNREACHABLE && old <= next) continue;
+                field.distances[neighbour] = next;
+                field.steps[neighbour] = (byte) dir.opposite().ordinal();
+                queue.add(neighbour);
+            }
+        }
+    }
+
+    /**
+     * Repairs a field after a cell stops blocking paths. Only cells that the
+     * new cell brings closer are visited.
+     *
+     * @param field The field to repair.
+     * @param cell  The cell that opened.
+     */
+    private void opened(Field field, int cell) {
+        for (Entity.Direction dir : DIRECTIONS) {
+            int neighbour = neighbour(cell, dir);
+            if (neighbour < 0 || field.distances[neighbour] == UNREACHABLE) continue;
+            int distance = field.distances[neighbour] + 1;
+            if (field.distances[cell] != UNREACHABLE && field.distances[cell] <= distance) continue;
+            field.distances[cell] = distance;
+            field.steps[cell] = (byte) dir.ordinal();
+        }
+        if (field.distances[cell] == UNREACHABLE) return;
+        queue.add(cell);
+        spread(field);
+    }
+
+    /**
+     * Repairs a field after a cell starts blocking paths. Only the cells whose next steps
+     * lead through the closed cell lose their paths, and every other cell keeps its distance.
+     * The lost cells are searched again from the cells around them that kept their paths,
+     * nearest to the player first.
+     *
+     * @param field The field to repair.
+     * @param cell  The cell that closed.
+     */
+    private void closed(Field field, int cell) {
+        if (field.distances[cell] == UNREACHABLE) return;
+        List<Integer> lost = new ArrayList<>();
+        lost.add(cell);
+        for (int i = 0; i < lost.size(); i++) {
+            int from = lost.get(i);
+            for (Entity.Direction dir : DIRECTIONS) {
+                int neighbour = neighbour(from, dir);
+                if (neighbour >= 0 && field.steps[neighbour] == dir.opposite().ordinal()) lost.add(neighbour);
+            }
+        }
+        for (int lostCell : lost) {
+            field.distances[lostCell] = UNREACHABLE;
+            field.steps[lostCell] = -1;
+        }
+
+        List<Integer> edge = new ArrayList<>();
+        for (int lostCell : lost) {
+            for (Entity.Direction dir : DIRECTIONS) {
+                int neighbour = neighbour(lostCell, dir);
+                if (neighbour >= 0 && !blocked[neighbour] && field.distances[neighbour] != UNREACHABLE) edge.add(neighbour);
+            }
+        }
+        edge.sort(Comparator.comparingInt(edgeCell -> field.distances[edgeCell]));
+        queue.addAll(edge);
+        spread(field);
+    }
+
+    /**
+     * @param cell Index of a cell.
+     * @param dir  Direction to step in.
+     * @return The index of the cell one step away, or -1 if it is off the map.
+     */
+    private int neighbour(int cell, Entity.Direction dir) {
+        int x = cell % width + dir.posChange.x();
+        int y = cell / width + dir.posChange.y();
+        return x < 0 || y < 0 || x >= width || y >= height ? -1 : y * width + x;
+    }
+}
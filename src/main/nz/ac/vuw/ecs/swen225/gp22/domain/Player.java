@@ -1,24 +1,32 @@
 package nz.ac.vuw.ecs.swen225.gp22.domain;
 
-import java.util.ArrayList;
 import java.util.List;
 
-import nz.ac.vuw.ecs.swen225.gp22.domain.ColorableTile.Color;
 import nz.ac.vuw.ecs.swen225.gp22.domain.Entity.Action.Interaction;
-import nz.ac.vuw.ecs.swen225.gp22.domain.Entity.Action.Interaction.ActionType;
 
 /**
  * The entity that will be controller by user input, this functions just like
  * a base {@link Entity} but with an inventory to hold keys.
  *
  * @author Abdul
- * @version 1.8
+ * @version 1.15
  */
 public class Player extends Entity<Player> {
     /**
      * Stores all the keys that the player has.
      */
-    private List<ColorableTile.Color> collectedKeys = new ArrayList<>();
+    private final Inventory inventory = new Inventory();
+
+    /**
+     * The interaction with a tile during the current move, if any.
+     */
+    private Interaction interaction;
+
+    /**
+     * Whether or not the player has been constructed. The entity constructor places the
+     * player before the inventory exists, so the tile it starts on is not notified.
+     */
+    private boolean placed;
 
     /**
      * Default constructor, sets the position and direction of the player.
@@ -28,6 +36,7 @@ public class Player extends Entity<Player> {
      */
     public Player(Maze.Point entityPos, Direction facingDir) {
         super(entityPos, facingDir);
+        placed = true;
     }
 
     // Does not do anything because the player should not be pinged.
@@ -39,22 +48,51 @@ public class Player extends Entity<Player> {
     public void unping() {
     }
 
+    /**
+     * Notifies the tile the player is on before updating the observers,
+     * so that tiles react without each observing the player. The tile the
+     * player starts on is not notified.
+     */
+    @Override
+    public void updateObservers() {
+        if (placed) getWorld().triggerTile(this);
+        super.updateObservers();
+    }
+
     @Override
     public void moveAndTurn(Direction dir) {
         Direction oldDir = getDir();
         Maze.Point oldPos = getPos();
+        interaction = null;
         super.moveAndTurn(dir);
 
-        Action.Interaction interaction = new Interaction(ActionType.None, Color.None);
-        if (!Maze.unclaimedInteractions.isEmpty()) interaction = Maze.unclaimedInteractions.poll();
-        action = new Action(id(), getPos().subtract(oldPos), oldDir, getDir(), interaction);
+        action = new Action(id(), getPos().subtract(oldPos), oldDir, getDir(), interaction == null ? Interaction.NONE : interaction);
+        interaction = null;
+    }
+
+    /**
+     * Records an interaction with a tile for the action of the current move.
+     * Called by tiles when the player enters them.
+     *
+     * @param type  The type of interaction.
+     * @param color The color of the interaction, if any.
+     */
+    void interacted(Interaction.ActionType type, ColorableTile.Color color) {
+        interaction = Interaction.of(type, color);
     }
 
     /**
      * Clears all the keys that the player has.
      */
     public void resetItems() {
-        collectedKeys.clear();
+        if (inventory.total() == 0) return;
+        for (ColorableTile.Color color : ColorableTile.Color.values()) {
+            int oldCount = inventory.count(color);
+            for (int i = 0; i < oldCount; i++) inventory.remove(color);
+            if (oldCount > 0) getWorld().keysChanged(this, color, oldCount);
+        }
+        assert inventory.total() == 0 : "Keys were not cleared.";
+        inventory.updateObservers();
     }
 
     /**
@@ -65,9 +103,11 @@ public class Player extends Entity<Player> {
     public void addKey(ColorableTile.Color color) {
         if (color == null || color == ColorableTile.Color.None)
             throw new IllegalArgumentException("Given color is null.");
-        int oldKeyCount = Maze.player.keyCount();
-        collectedKeys.add(color);
-        assert oldKeyCount + 1 == Maze.player.keyCount() && Maze.player.hasKey(color) : "Key was not added to inventory.";
+        int oldKeyCount = keyCount();
+        inventory.add(color);
+        getWorld().keysChanged(this, color, keyCount(color) - 1);
+        assert oldKeyCount + 1 == keyCount() && hasKey(color) : "Key was not added to inventory.";
+        inventory.updateObservers();
         updateObservers();
     }
 
@@ -79,13 +119,31 @@ public class Player extends Entity<Player> {
     public void consumeKey(ColorableTile.Color color) {
         if (color == null || color == ColorableTile.Color.None)
             throw new IllegalArgumentException("Given color is null.");
-        if (!collectedKeys.contains(color)) throw new IllegalArgumentException("Player does not have this key.");
-        int oldKeyCount = Maze.player.keyCount();
-        collectedKeys.remove(color);
-        assert oldKeyCount - 1 == Maze.player.keyCount() : "Key was not consumed.";
+        if (!hasKey(color)) throw new IllegalArgumentException("Player does not have this key.");
+        int oldKeyCount = keyCount();
+        inventory.remove(color);
+        getWorld().keysChanged(this, color, keyCount(color) + 1);
+        assert oldKeyCount - 1 == keyCount() : "Key was not consumed.";
+        inventory.updateObservers();
         updateObservers();
     }
 
+    /**
+     * Replaces the inventory without updating observers. Used when restoring a snapshot.
+     *
+     * @param keys The keys the player should have.
+     */
+    void restoreKeys(List<ColorableTile.Color> keys) {
+        inventory.set(keys);
+    }
+
+    /**
+     * @return The player's inventory, which observers can be added to.
+     */
+    public Inventory getInventory() {
+        return inventory;
+    }
+
     /**
      * Checks if the player has a key of a certain color.
      *
@@ -93,20 +151,28 @@ public class Player extends Entity<Player> {
      * @return Whether or not the key is in the player's inventory.
      */
     public boolean hasKey(ColorableTile.Color color) {
-        return collectedKeys.contains(color);
+        return color != null && inventory.has(color);
+    }
+
+    /**
+     * @param color Color of the key.
+     * @return The number of keys of a color the player has.
+     */
+    public int keyCount(ColorableTile.Color color) {
+        return inventory.count(color);
     }
 
     /**
      * @return The number of keys the player has.
      */
     public int keyCount() {
-        return collectedKeys.size();
+        return inventory.total();
     }
 
     /**
-     * @return An immutable list of the keys collected.
+     * @return An immutable list of the keys collected, grouped by color.
      */
     public List<ColorableTile.Color> getAllKeys() {
-        return collectedKeys.stream().toList();
+        return inventory.asList();
     }
 }
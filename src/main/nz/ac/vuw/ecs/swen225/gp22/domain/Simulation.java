@@ -0,0 +1,304 @@
+package nz.ac.vuw.ecs.swen225.gp22.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Advances a {@link GameWorld} in fixed logical ticks, pinging enemies when they
+ * are due and collecting the changes made each tick. This has no dependency on
+ * Swing or wall-clock time, so app can drive it from a timer while tests and bots
+ * can run it as fast as they like. Observers are updated after every tick, and can
+ * read that tick's changes from {@link #getLastActions()}.
+ * <p>
+ * A simulation can be put back to an earlier point with {@link #snapshot()} and
+ * {@link #restore(Snapshot)}, which is what bots use to try moves out.
+ *
+ * @author agent
+ * @version 1.0
+ */
+public class Simulation extends Observable<Simulation> {
+    /**
+     * Length of a single tick in milliseconds.
+     */
+    public static final int TICK_MS = 20;
+
+    /**
+     * Used as the time limit when the game should never run out of time.
+     */
+    public static final int NO_TIME_LIMIT = -1;
+
+    /**
+     * The state of a simulation at one point in time: its world and its clock.
+     */
+    public static final class Snapshot {
+        /**
+         * The simulation the snapshot was taken of.
+         */
+        private final Simulation simulation;
+
+        /**
+         * The world's state.
+         */
+        private final GameWorld.Snapshot world;
+
+        /**
+         * Logical time that had passed, in milliseconds.
+         */
+        private final int timeMS;
+
+        /**
+         * Captures a simulation.
+         *
+         * @param simulation The simulation.
+         */
+        private Snapshot(Simulation simulation) {
+            this.simulation = simulation;
+            this.world = simulation.world.snapshot();
+            this.timeMS = simulation.timeMS;
+        }
+
+        /**
+         * @return The logical time when the snapshot was taken, in milliseconds.
+         */
+        public int getTime() {
+            return timeMS;
+        }
+    }
+
+    /**
+     * The world being simulated.
+     */
+    private final GameWorld world;
+
+    /**
+     * Time after which the player loses, in milliseconds. NO_TIME_LIMIT if there is none.
+     */
+    private final int timeLimitMS;
+
+    /**
+     * Logical time that has passed, in milliseconds.
+     */
+    private int timeMS = 0;
+
+    /**
+     * The changes that occurred during the most recent tick.
+     */
+    private List<Entity.Action> lastActions = List.of();
+
+    /**
+     * Decides which enemies are pinged each tick.
+     */
+    private final EnemyScheduler scheduler = new EnemyScheduler(TICK_MS);
+
+    /**
+     * Version of the world's entity list that the scheduler was last filled from.
+     */
+    private int scheduledVersion = -1;
+
+    /**
+     * Enemies pinged on the current tick, reused between ticks.
+     */
+    private final List<Entity<?>> pinged = new ArrayList<>();
+
+    /**
+     * Default constructor, sets the world to simulate and the time limit.
+     *
+     * @param world       The world to simulate.
+     * @param timeLimitMS Time after which the player loses, or NO_TIME_LIMIT.
+     */
+    public Simulation(GameWorld world, int timeLimitMS) {
+        if (world == null || world.getPlayer() == null) throw new IllegalArgumentException("Given world has no map.");
+        if (timeLimitMS < 0 && timeLimitMS != NO_TIME_LIMIT)
+            throw new IllegalArgumentException("Time limit cannot be negative.");
+        this.world = world;
+        this.timeLimitMS = timeLimitMS;
+    }
+
+    /**
+     * Overloaded constructor for a simulation with no time limit.
+     *
+     * @param world The world to simulate.
+     */
+    public Simulation(GameWorld world) {
+        this(world, NO_TIME_LIMIT);
+    }
+
+    /**
+     * Advances the simulation by a number of ticks, stopping early if the game ends.
+     *
+     * @param ticks The number of ticks to advance by.
+     * @return The number of ticks that were actually advanced.
+     */
+    public int step(int ticks) {
+        if (ticks < 0) throw new IllegalArgumentException("Cannot step by a negative amount.");
+        return world.call(() -> {
+            int stepped = 0;
+            while (stepped < ticks && !isOver()) {
+                tick();
+                stepped++;
+            }
+            return stepped;
+        });
+    }
+
+    /**
+     * Overloaded method for step() that advances by a single tick.
+     *
+     * @return Whether or not a tick was advanced.
+     */
+    public boolean step() {
+        return step(1) == 1;
+    }
+
+    /**
+     * Advances the simulation until the condition is met or the game ends.
+     *
+     * @param condition Checked before every tick.
+     * @param maxTicks  The most ticks to advance by.
+     * @return The number of ticks that were advanced.
+     */
+    public int runUntil(Predicate<Simulation> condition, int maxTicks) {
+        if (condition == null) throw new IllegalArgumentException("Given condition is null.");
+        if (maxTicks < 0) throw new IllegalArgumentException("Cannot step by a negative amount.");
+        return world.call(() -> {
+            int stepped = 0;
+            while (stepped < maxTicks && !isOver() && !condition.test(this)) {
+                tick();
+                stepped++;
+            }
+            return stepped;
+        });
+    }
+
+    /**
+     * Overloaded method for runUntil() with no tick limit. The game must be able to end,
+     * either through the condition or a time limit, or this will not return.
+     *
+     * @param condition Checked before every tick.
+     * @return The number of ticks that were advanced.
+     */
+    public int runUntil(Predicate<Simulation> condition) {
+        return runUntil(condition, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Runs a single tick. Enemies are pinged when the time is a multiple of their speed.
+     * The scheduler is refilled only when entities have been added or removed. The tick's
+     * changes are taken from every entity, as an entity can act without being pinged, such
+     * as when it reacts to an event from another entity.
+     */
+    private void tick() {
+        timeMS += TICK_MS;
+        if (scheduledVersion != world.entitiesVersion()) {
+            scheduler.schedule(world.getEntities());
+            scheduledVersion = world.entitiesVersion();
+        }
+        try {
+            scheduler.tick(pinged);
+            lastActions = world.getChangeMap();
+        } finally {
+            pinged.clear();
+        }
+        updateObservers();
+    }
+
+    /**
+     * Captures the world and the clock so that the simulation can go back to this point.
+     *
+     * @return The snapshot.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Puts the world and the clock back to a snapshot. Enemies are scheduled again from
+     * the restored time, so they are pinged on the same ticks as they were before.
+     *
+     * @param snapshot A snapshot taken of this simulation.
+     */
+    public void restore(Snapshot snapshot) {
+        if (snapshot == null) throw new IllegalArgumentException("Given snapshot is null.");
+        if (snapshot.simulation != this) throw new IllegalArgumentException("Snapshot belongs to a different simulation.");
+        world.restore(snapshot.world);
+        timeMS = snapshot.timeMS;
+        lastActions = List.of();
+        scheduler.rewind(timeMS / TICK_MS);
+        scheduledVersion = -1;
+    }
+
+    /**
+     * Moves the player in a direction, or just turns them if the move is blocked.
+     *
+     * @param dir The direction to move in.
+     * @return Whether or not the player moved.
+     */
+    public boolean movePlayer(Entity.Direction dir) {
+        return world.call(() -> {
+            try {
+                world.getPlayer().moveAndTurn(dir);
+                return true;
+            } catch (IllegalArgumentException e) {
+                world.getPlayer().setDir(dir);
+                return false;
+            }
+        });
+    }
+
+    /**
+     * @return The world being simulated.
+     */
+    public GameWorld getWorld() {
+        return world;
+    }
+
+    /**
+     * @return The logical time that has passed, in milliseconds.
+     */
+    public int getTime() {
+        return timeMS;
+    }
+
+    /**
+     * @return The number of ticks that have been run.
+     */
+    public int getTicks() {
+        return timeMS / TICK_MS;
+    }
+
+    /**
+     * @return The changes that occurred during the most recent tick.
+     */
+    public List<Entity.Action> getLastActions() {
+        return lastActions;
+    }
+
+    /**
+     * @return Whether or not the time limit has been reached.
+     */
+    public boolean isTimeUp() {
+        return timeLimitMS != NO_TIME_LIMIT && timeMS >= timeLimitMS;
+    }
+
+    /**
+     * @return Whether or not the player has died or run out of time.
+     */
+    public boolean isLost() {
+        return world.isGameLost() || isTimeUp();
+    }
+
+    /**
+     * @return Whether or not the player has reached the exit.
+     */
+    public boolean isWon() {
+        return world.gameWon();
+    }
+
+    /**
+     * @return Whether or not the game has ended.
+     */
+    public boolean isOver() {
+        return isLost() || isWon();
+    }
+}
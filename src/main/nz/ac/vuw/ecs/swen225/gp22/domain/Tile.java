@@ -2,11 +2,17 @@ package nz.ac.vuw.ecs.swen225.gp22.domain;
 
 /**
  * Template for tiles that has fields and methods that all tiles will need.
+ * A tile belongs to the {@link GameWorld} that was bound when it was created.
  *
  * @author Abdul
- * @version 1.4
+ * @version 1.7
  */
 public abstract class Tile {
+    /**
+     * The world this tile belongs to.
+     */
+    private final GameWorld world;
+
     /**
      * The position of the tile on the tilemap.
      */
@@ -24,6 +30,7 @@ public abstract class Tile {
      * @param obstructive Boolean to set the obstructive field to.
      */
     public Tile(Maze.Point tilePos, boolean obstructive) {
+        world = GameWorld.current();
         setPos(tilePos);
         this.obstructive = obstructive;
     }
@@ -35,6 +42,13 @@ public abstract class Tile {
         return tilePos;
     }
 
+    /**
+     * @return The world this tile belongs to.
+     */
+    public GameWorld getWorld() {
+        return world;
+    }
+
     /**
      * @return The obstructiveness of the tile.
      */
@@ -48,7 +62,7 @@ public abstract class Tile {
      * @param pos Point that represents the tile's new position.
      */
     public void setPos(Maze.Point pos) {
-        if (pos == null || !pos.isValid()) throw new IllegalArgumentException("Invalid point given.");
+        if (!world.contains(pos)) throw new IllegalArgumentException("Invalid point given.");
         tilePos = pos;
     }
 
@@ -61,6 +75,16 @@ public abstract class Tile {
         this.obstructive = obstructive;
     }
 
+    /**
+     * Called when the player enters this tile. Turning on the spot does not
+     * call it again. This method is not abstract because most tiles do not
+     * react to the player.
+     *
+     * @param player The player on this tile.
+     */
+    public void onEnter(Player player) {
+    }
+
     /**
      * Called when a tile is removed or replaced.
      * This method is not abstract because not all tiles
@@ -1,60 +1,145 @@
 package nz.ac.vuw.ecs.swen225.gp22.domain;
 
-import java.lang.reflect.Constructor;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.function.Function;
+
+import nz.ac.vuw.ecs.swen225.gp22.domain.Maze.Point;
 
 /**
  * Used by persistency module to create tiles based on an ID (for loading),
- * as well as get the ID of a current object (for saving).
+ * as well as get the ID of a current object (for saving). Every tile type is
+ * registered with a factory and its parameter types, so no reflection is needed,
+ * and other modules can register their own tile types with register().
  *
  * @author Abdul
- * @version 1.2
+ * @version 1.5
  */
 public class TileDatabase {
     /**
-     * Map of tile classes with a string as the key/ID.
+     * A registered tile type.
+     *
+     * @param clazz      The class of the tile.
+     * @param paramTypes The types of the parameters the factory takes.
+     * @param factory    Creates a tile from parameters that have already been checked.
+     */
+    private record Entry(Class<? extends Tile> clazz, Class<?>[] paramTypes, Function<Object[], ? extends Tile> factory) {
+    }
+
+    /**
+     * Map of registered tile types with a string as the key/ID. Replaced
+     * rather than modified when a type is registered, so it can be read
+     * without locking.
      */
-    private static Map<String, Class<? extends Tile>> tileDB = new HashMap<>() {{
-        put("ground", Ground.class);
-        put("wall", Wall.class);
-        put("info", InfoField.class);
-        put("key", Key.class);
-        put("treasure", Treasure.class);
-        put("door", LockedDoor.class);
-        put("exit-gate", LockedExit.class);
-        put("exit", Exit.class);
-        put("death", MilkPuddle.class);
-        put("bounce-pad", BouncyPad.class);
-    }};
+    private static volatile Map<String, Entry> tileDB = new HashMap<>();
+
+    /**
+     * Map of tile classes to their ID, replaced along with tileDB.
+     */
+    private static volatile Map<Class<?>, String> classIDs = new IdentityHashMap<>();
+
+    static {
+        register("ground", Ground.class, p -> new Ground((Point) p[0]), Point.class);
+        register("wall", Wall.class, p -> new Wall((Point) p[0]), Point.class);
+        register("info", InfoField.class, p -> new InfoField((Point) p[0], (String) p[1]), Point.class, String.class);
+        register("key", Key.class, p -> new Key((Point) p[0], (ColorableTile.Color) p[1]), Point.class, ColorableTile.Color.class);
+        register("treasure", Treasure.class, p -> new Treasure((Point) p[0]), Point.class);
+        register("door", LockedDoor.class, p -> new LockedDoor((Point) p[0], (ColorableTile.Color) p[1]), Point.class, ColorableTile.Color.class);
+        register("exit-gate", LockedExit.class, p -> new LockedExit((Point) p[0]), Point.class);
+        register("exit", Exit.class, p -> new Exit((Point) p[0]), Point.class);
+        register("death", MilkPuddle.class, p -> new MilkPuddle((Point) p[0]), Point.class);
+        register("bounce-pad", BouncyPad.class, p -> new BouncyPad((Point) p[0], (Entity.Direction) p[1]), Point.class, Entity.Direction.class);
+    }
+
+    /**
+     * Registers a tile type so that it can be created and saved by ID.
+     * The factory is only called with parameters that match the given types.
+     *
+     * @param tileID     ID of the tile type.
+     * @param clazz      Class of the tile type.
+     * @param factory    Creates a tile from its parameters.
+     * @param paramTypes The types of the parameters, in order.
+     * @param <T>        The type of tile.
+     */
+    public static synchronized <T extends Tile> void register(String tileID, Class<T> clazz,
+                                                              Function<Object[], T> factory, Class<?>... paramTypes) {
+        if (tileID == null || clazz == null || factory == null || paramTypes == null)
+            throw new IllegalArgumentException("Given tile type is incomplete.");
+        if (tileDB.containsKey(tileID)) throw new IllegalArgumentException("Tile ID already exists.");
+        if (classIDs.containsKey(clazz)) throw new IllegalArgumentException("Tile class already registered.");
+
+        Map<String, Entry> newDB = new HashMap<>(tileDB);
+        newDB.put(tileID, new Entry(clazz, paramTypes.clone(), factory));
+        Map<Class<?>, String> newIDs = new IdentityHashMap<>(classIDs);
+        newIDs.put(clazz, tileID);
+        tileDB = newDB;
+        classIDs = newIDs;
+        assert getID(clazz).equals(tileID) : "Tile type not registered.";
+    }
 
     /**
      * Factory method that creates a Tile object based on the tile ID.
      * Makes sure the given parameters are the correct amount and with
-     * the correct types. Suppresses unchecked warnings because I know that any constructor
-     * from a class in tileDB will be of the correct constructor type.
+     * the correct types.
      *
      * @param tileID     ID of the requested tile.
      * @param tileParams Array of the given tile parameters.
      * @return The newly created tile Tile.
      */
-    @SuppressWarnings("unchecked")
     public static Tile create(String tileID, Object... tileParams) {
-        if (!tileDB.containsKey(tileID)) throw new IllegalArgumentException("Tile ID doesn't exist.");
-        Constructor<? extends Tile> c = (Constructor<? extends Tile>) tileDB.get(tileID).getConstructors()[0];
-        if (c.getParameterCount() != tileParams.length) throw new IllegalArgumentException("Invalid parameter count.");
-        for (int i = 0; i < c.getParameterCount(); i++) {
-            if (tileParams[i].getClass() != c.getParameterTypes()[i] && tileParams[i].getClass().getSuperclass() != c.getParameterTypes()[i]) {
+        Entry entry = check(tileID, tileParams);
+        try {
+            return entry.factory().apply(tileParams);
+        } catch (RuntimeException e) {
+            // The parameters are valid, so the tile itself rejected them.
+            throw new IllegalStateException("Failure creating tile object.", e);
+        }
+    }
+
+    /**
+     * Makes sure a tile could be created from the given parameters, without creating it.
+     *
+     * @param tileID     ID of the requested tile.
+     * @param tileParams Array of the given tile parameters.
+     * @return The registered tile type.
+     */
+    private static Entry check(String tileID, Object... tileParams) {
+        Entry entry = tileDB.get(tileID);
+        if (entry == null) throw new IllegalArgumentException("Tile ID doesn't exist.");
+        if (entry.paramTypes().length != tileParams.length) throw new IllegalArgumentException("Invalid parameter count.");
+        for (int i = 0; i < tileParams.length; i++) {
+            if (!entry.paramTypes()[i].isInstance(tileParams[i])) {
                 throw new IllegalArgumentException("Invalid parameter types.");
             }
         }
+        return entry;
+    }
 
-        try {
-            return c.newInstance(tileParams);
-        } catch (Exception e) {
-            // Should not be reachable because of preconditions. 
-            throw new IllegalStateException("Failure creating tile object.");
-        }
+    /**
+     * Makes sure a tile could be created from the given parameters, and gets
+     * its class, so that packed tiles can be stored without being created.
+     *
+     * @param tileID     ID of the requested tile.
+     * @param tileParams Array of the given tile parameters.
+     * @return The class of the tile that would be created.
+     */
+    static Class<? extends Tile> classOf(String tileID, Object... tileParams) {
+        return check(tileID, tileParams).clazz();
+    }
+
+    /**
+     * Overloaded method for create() that makes the tile
+     * belong to the given world rather than the current one.
+     *
+     * @param world      World the tile will belong to.
+     * @param tileID     ID of the requested tile.
+     * @param tileParams Array of the given tile parameters.
+     * @return The newly created tile Tile.
+     */
+    public static Tile create(GameWorld world, String tileID, Object... tileParams) {
+        if (world == null) throw new IllegalArgumentException("Given world is null.");
+        return world.call(() -> create(tileID, tileParams));
     }
 
     /**
@@ -64,10 +149,9 @@ public class TileDatabase {
      * @return String ID of the class
      */
     public static String getID(Class<? extends Tile> clazz) {
-        return tileDB.keySet().stream().filter(t -> tileDB.get(t) == clazz).findFirst()
-                .orElseThrow(() -> {
-                    throw new IllegalArgumentException("No such class exists in database.");
-                });
+        String id = classIDs.get(clazz);
+        if (id == null) throw new IllegalArgumentException("No such class exists in database.");
+        return id;
     }
 
     /**
@@ -78,6 +162,7 @@ public class TileDatabase {
      * @return String ID of the object's class.
      */
     public static String getID(Tile tile) {
+        if (tile == null) throw new IllegalArgumentException("Given tile is null.");
         return getID(tile.getClass());
     }
 }
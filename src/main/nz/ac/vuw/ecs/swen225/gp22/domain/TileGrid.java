@@ -0,0 +1,753 @@
+package nz.ac.vuw.ecs.swen225.gp22.domain;
+
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Compact backing store for a world's tilemap. Every cell is a single short code
+ * holding the tile type along with its color and direction, and info text is kept
+ * in a small side table. Tile objects are only created when they are asked for.
+ * <p>
+ * Tile types that have no code are kept as live objects in a second side table
+ * so that the same instance is always returned for them. Recently created packed
+ * tiles are kept in a small cache, so that redrawing the area around the player
+ * or checking a door every move does not create new tiles.
+ * <p>
+ * Codes are stored in 32x32 chunks that can be shared with snapshots. A shared
+ * chunk is copied the first time it is written to, so taking a snapshot only copies
+ * the chunk references and the side tables.
+ * <p>
+ * Chunks are only allocated once something other than ground is written to them. When
+ * more chunks are on the heap than {@link #MAX_RESIDENT_CHUNKS}, the ones that are not
+ * near an anchor (the player or an enemy) are paged out to a {@link ChunkFile}, and read
+ * back in when they are next used. This keeps very large maps to a fixed amount of heap.
+ * <p>
+ * The grid keeps the tile part of the world's {@link Zobrist} hash up to date as cells are written.
+ * <p>
+ * The grid also acts as the index for tile triggers: when the player updates, only
+ * the tile under them is notified, and only if its type reacts to the player.
+ *
+ * @author agent
+ * @version 1.0
+ */
+final class TileGrid {
+    /**
+     * Type codes, indexes into TYPES.
+     */
+    static final int GROUND = 0, WALL = 1, INFO = 2, KEY = 3, TREASURE = 4, DOOR = 5,
+            EXIT_GATE = 6, EXIT = 7, DEATH = 8, BOUNCE_PAD = 9, OBJECT = 10;
+
+    /**
+     * Tile classes in order of their type code. OBJECT is any other tile class.
+     */
+    private static final List<Class<? extends Tile>> TYPES = List.of(Ground.class, Wall.class, InfoField.class,
+            Key.class, Treasure.class, LockedDoor.class, LockedExit.class, Exit.class, MilkPuddle.class,
+            BouncyPad.class, Tile.class);
+
+    /**
+     * Type codes keyed by tile class, so that storing a tile does not search TYPES.
+     */
+    private static final Map<Class<?>, Integer> TYPE_CODES = new IdentityHashMap<>();
+
+    static {
+        for (int type = 0; type < OBJECT; type++) TYPE_CODES.put(TYPES.get(type), type);
+    }
+
+    /**
+     * Whether or not each type is always obstructive.
+     */
+    private static final boolean[] OBSTRUCTIVE = {false, true, false, false, false, false, false, false, false, false, false};
+
+    /**
+     * Whether or not the obstructiveness of each type depends on the game state, so the tile must be asked.
+     */
+    private static final boolean[] DYNAMIC = {false, false, false, false, false, true, true, false, false, false, true};
+
+    /**
+     * Whether or not each type reacts to the player being on it.
+     */
+    private static final boolean[] TRIGGER = {false, false, false, true, true, true, true, false, true, true, true};
+
+    /**
+     * String form of each packed type, the same as its tile's toString().
+     */
+    private static final String[] SYMBOLS = {"G", "W", "I", "K", "T", "D", "L", "E", "M", "B"};
+
+    /**
+     * Masks and shifts used to pack a tile into a code.
+     */
+    private static final int TYPE_MASK = 0xFF, COLOR_SHIFT = 8, COLOR_MASK = 0xF, DIR_SHIFT = 12, DIR_MASK = 0x3;
+
+    /**
+     * Cached values of the enums stored in codes.
+     */
+    private static final ColorableTile.Color[] COLORS = ColorableTile.Color.values();
+    private static final Entity.Direction[] DIRECTIONS = Entity.Direction.values();
+
+    /**
+     * Width and height of each square chunk of codes as a power of 2, and the number of cells in a chunk.
+     */
+    private static final int CHUNK_BITS = 5, CHUNK_SIDE = 1 << CHUNK_BITS, CHUNK_SIZE = CHUNK_SIDE * CHUNK_SIDE;
+
+    /**
+     * Number of chunks kept on the heap before far away chunks are paged out.
+     */
+    static final int MAX_RESIDENT_CHUNKS = 4096;
+
+    /**
+     * Chunks within this many chunks of an anchor are never paged out. One chunk
+     * either side keeps far more than the viewport around the player.
+     */
+    private static final int ANCHOR_RADIUS = 1;
+
+    /**
+     * The state of a grid at one point in time. The chunks must not be written to.
+     *
+     * @param width     Width of the grid.
+     * @param height    Height of the grid.
+     * @param chunks    The chunks of codes, null if paged out or all ground.
+     * @param slots     Slot in the file of each chunk that is paged out, otherwise -1. The snapshot holds them.
+     * @param file      The file chunks are paged out to, or null if none have been.
+     * @param texts     Info text of info field cells.
+     * @param liveTiles Tiles that are kept as objects.
+     * @param hash      Zobrist hash of the tiles.
+     */
+    record Snapshot(int width, int height, short[][] chunks, int[] slots, ChunkFile file, Map<Integer, String> texts,
+                    Map<Integer, Tile> liveTiles, long hash) {
+    }
+
+    /**
+     * Number of entries in the tile cache, must be a power of 2.
+     */
+    private static final int CACHE_SIZE = 1024;
+
+    /**
+     * Width and height of the grid.
+     */
+    private final int width, height;
+
+    /**
+     * Number of chunks across the grid.
+     */
+    private final int chunksWide;
+
+    /**
+     * One code per cell, split into square chunks stored row by row. A chunk is null
+     * if it is paged out, or if it has never been written to and so is all ground.
+     */
+    private final short[][] chunks;
+
+    /**
+     * Whether or not each chunk is shared with a snapshot, and must be copied before it is written to.
+     */
+    private final boolean[] shared;
+
+    /**
+     * Slot in the file of each chunk that is paged out, otherwise -1. The grid holds each of
+     * them until the chunk is paged in or the grid is no longer used.
+     */
+    private final int[] slots;
+
+    /**
+     * The file chunks are paged out to, created when it is first needed.
+     */
+    private ChunkFile file;
+
+    /**
+     * Chunks on the heap, and how many there are.
+     */
+    private final BitSet resident = new BitSet();
+    private int residentCount = 0;
+
+    /**
+     * Number of resident chunks at which chunks are next paged out. It is raised when
+     * paging out frees too little, so that the anchors are not checked on every read.
+     */
+    private int pageOutAt = MAX_RESIDENT_CHUNKS;
+
+    /**
+     * Positions that the chunks around must stay on the heap.
+     */
+    private Supplier<? extends Collection<Maze.Point>> anchors = List::of;
+
+    /**
+     * Info text of info field cells, keyed by cell index.
+     */
+    private final Map<Integer, String> texts = new HashMap<>();
+
+    /**
+     * Tiles that are kept as objects, keyed by cell index.
+     */
+    private final Map<Integer, Tile> liveTiles = new HashMap<>();
+
+    /**
+     * Recently created packed tiles, with the cell index of each stored
+     * alongside it. An entry is only valid while the cell is unchanged.
+     */
+    private final Tile[] cachedTiles = new Tile[CACHE_SIZE];
+    private final int[] cachedIndexes = new int[CACHE_SIZE];
+
+    /**
+     * Zobrist hash of every cell. Ground cells add nothing, so a new grid hashes to 0.
+     */
+    private long hash = 0;
+
+    /**
+     * Creates a grid where every cell is ground.
+     *
+     * @param width  Width of the grid.
+     * @param height Height of the grid.
+     */
+    TileGrid(int width, int height) {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("Invalid map dimensions.");
+        Math.multiplyExact(width, height);
+        this.width = width;
+        this.height = height;
+        chunksWide = (width + CHUNK_SIDE - 1) >> CHUNK_BITS;
+        chunks = new short[chunksWide * ((height + CHUNK_SIDE - 1) >> CHUNK_BITS)][];
+        shared = new boolean[chunks.length];
+        slots = new int[chunks.length];
+        Arrays.fill(slots, -1);
+    }
+
+    /**
+     * Creates a grid with the state of a snapshot, sharing its chunks.
+     *
+     * @param snapshot The snapshot to restore.
+     */
+    TileGrid(Snapshot snapshot) {
+        width = snapshot.width();
+        height = snapshot.height();
+        chunksWide = (width + CHUNK_SIDE - 1) >> CHUNK_BITS;
+        chunks = snapshot.chunks().clone();
+        shared = new boolean[chunks.length];
+        Arrays.fill(shared, true);
+        slots = snapshot.slots().clone();
+        file = snapshot.file();
+        if (file != null) {
+            file.hold(slots);
+            file.releaseWhenUnused(this, slots);
+        }
+        for (int c = 0; c < chunks.length; c++) {
+            if (chunks[c] != null) resident.set(c);
+        }
+        residentCount = resident.cardinality();
+        texts.putAll(snapshot.texts());
+        liveTiles.putAll(snapshot.liveTiles());
+        hash = snapshot.hash();
+    }
+
+    /**
+     * Captures the state of the grid. The chunks become shared, so this
+     * does not copy any codes.
+     *
+     * @return The snapshot.
+     */
+    Snapshot snapshot() {
+        Arrays.fill(shared, true);
+        int[] held = slots.clone();
+        Snapshot snapshot = new Snapshot(width, height, chunks.clone(), held, file,
+                Collections.unmodifiableMap(new HashMap<>(texts)), Collections.unmodifiableMap(new HashMap<>(liveTiles)), hash);
+        if (file != null) {
+            file.hold(held);
+            file.releaseWhenUnused(snapshot, held);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Sets the positions that the chunks around must stay on the heap. They are
+     * only asked for when chunks need to be paged out.
+     *
+     * @param anchors Gives the positions of the player and enemies.
+     */
+    void setAnchors(Supplier<? extends Collection<Maze.Point>> anchors) {
+        if (anchors == null) throw new IllegalArgumentException("Given anchors are null.");
+        this.anchors = anchors;
+    }
+
+    /**
+     * @return The number of chunks on the heap.
+     */
+    int residentChunks() {
+        return residentCount;
+    }
+
+    /**
+     * @return The number of slots in the file chunks are paged out to, 0 if there is none.
+     */
+    int fileSlots() {
+        return file == null ? 0 : file.slots();
+    }
+
+    /**
+     * @return Zobrist hash of the tiles.
+     */
+    long hash() {
+        return hash;
+    }
+
+    /**
+     * @return Width of the grid.
+     */
+    int width() {
+        return width;
+    }
+
+    /**
+     * @return Height of the grid.
+     */
+    int height() {
+        return height;
+    }
+
+    /**
+     * @param x X position.
+     * @param y Y position.
+     * @return Whether or not the position is on the grid.
+     */
+    boolean contains(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    /**
+     * @param x X position.
+     * @param y Y position.
+     * @return The cell index of a position.
+     */
+    int index(int x, int y) {
+        return y * width + x;
+    }
+
+    /**
+     * @param x X position.
+     * @param y Y position.
+     * @return The type code of the tile at a position.
+     */
+    int type(int x, int y) {
+        return code(x, y) & TYPE_MASK;
+    }
+
+    /**
+     * @param x X position.
+     * @param y Y position.
+     * @return The tile kept live at a position, or null if it is packed.
+     */
+    Tile liveTile(int x, int y) {
+        return liveTiles.get(index(x, y));
+    }
+
+    /**
+     * Creates the Tile for a cell, or returns the live tile if there is one.
+     * The tile is created in the given world.
+     *
+     * @param world World the grid belongs to.
+     * @param x     X position.
+     * @param y     Y position.
+     * @return The tile at the position.
+     */
+    Tile get(GameWorld world, int x, int y) {
+        int index = index(x, y);
+        Tile live = liveTiles.get(index);
+        if (live != null) return live;
+        int slot = index & (CACHE_SIZE - 1);
+        Tile cached = cachedTiles[slot];
+        if (cached != null && cachedIndexes[slot] == index && cached.getPos().x() == x && cached.getPos().y() == y)
+            return cached;
+        int code = code(x, y);
+        Maze.Point pos = Maze.Point.of(x, y);
+        Tile tile = world.call(() -> switch (code & TYPE_MASK) {
+            case WALL -> new Wall(pos);
+            case INFO -> new InfoField(pos, texts.get(index));
+            case KEY -> new Key(pos, color(code));
+            case TREASURE -> new Treasure(pos);
+            case DOOR -> new LockedDoor(pos, color(code));
+            case EXIT_GATE -> new LockedExit(pos);
+            case EXIT -> new Exit(pos);
+            case DEATH -> new MilkPuddle(pos);
+            case BOUNCE_PAD -> new BouncyPad(pos, direction(code));
+            default -> new Ground(pos);
+        });
+        cachedTiles[slot] = tile;
+        cachedIndexes[slot] = index;
+        return tile;
+    }
+
+    /**
+     * Stores a tile in a cell, packing it if possible.
+     *
+     * @param x    X position.
+     * @param y    Y position.
+     * @param tile The tile to store.
+     */
+    void set(int x, int y, Tile tile) {
+        int type = typeOf(tile);
+        int code = type;
+        if (tile instanceof ColorableTile c) code |= c.getColor().ordinal() << COLOR_SHIFT;
+        if (tile instanceof BouncyPad b) code |= b.getDir().ordinal() << DIR_SHIFT;
+        write(x, y, code, tile instanceof InfoField info ? info.getText() : null, type == OBJECT ? tile : null);
+    }
+
+    /**
+     * Stores a packed tile in a cell without creating it.
+     *
+     * @param x      X position.
+     * @param y      Y position.
+     * @param code   Code from {@link #code(Class, Object[])}.
+     * @param params Parameters the tile would be created with after its position.
+     */
+    void setPacked(int x, int y, int code, Object[] params) {
+        if (code < 0 || (code & TYPE_MASK) >= OBJECT) throw new IllegalArgumentException("Code is not packed.");
+        String text = null;
+        if ((code & TYPE_MASK) == INFO) {
+            for (Object param : params) if (param instanceof String s) text = s;
+            if (text == null) throw new IllegalArgumentException("Given text is null.");
+        }
+        write(x, y, code, text, null);
+    }
+
+    /**
+     * Works out the code a tile would be packed into, from the parameters it would be
+     * created with, so that it does not need to be created.
+     *
+     * @param clazz  Class of the tile.
+     * @param params Parameters the tile would be created with after its position.
+     * @return The code, or -1 if tiles of the class are kept as objects.
+     */
+    static int code(Class<? extends Tile> clazz, Object[] params) {
+        Integer type = TYPE_CODES.get(clazz);
+        if (type == null) return -1;
+        int code = type;
+        for (Object param : params) {
+            if (param instanceof ColorableTile.Color color) code |= color.ordinal() << COLOR_SHIFT;
+            else if (param instanceof Entity.Direction dir) code |= dir.ordinal() << DIR_SHIFT;
+        }
+        if ((type == KEY || type == DOOR) && color(code) == ColorableTile.Color.None)
+            throw new IllegalArgumentException("Given color is null.");
+        return code;
+    }
+
+    /**
+     * Writes a cell and its side tables, keeping the hash and tile cache up to date.
+     *
+     * @param x    X position.
+     * @param y    Y position.
+     * @param code The new code.
+     * @param text Info text of the cell, or null if it is not an info field.
+     * @param live The tile if it is kept as an object, otherwise null.
+     */
+    private void write(int x, int y, int code, String text, Tile live) {
+        int index = index(x, y);
+        setCode(x, y, (short) code);
+
+        String oldText = text != null ? texts.put(index, text) : texts.remove(index);
+        if (oldText != null) hash ^= Zobrist.key(Zobrist.TEXT, index, oldText.hashCode());
+        if (text != null) hash ^= Zobrist.key(Zobrist.TEXT, index, text.hashCode());
+        Tile oldLive = live != null ? liveTiles.put(index, live) : liveTiles.remove(index);
+        if (oldLive != null) hash ^= liveKey(index, oldLive);
+        if (live != null) hash ^= liveKey(index, live);
+        int slot = index & (CACHE_SIZE - 1);
+        if (cachedIndexes[slot] == index) cachedTiles[slot] = null;
+    }
+
+    /**
+     * Checks whether a tile is obstructive, only creating it if
+     * the answer depends on the game state.
+     *
+     * @param world World the grid belongs to.
+     * @param x     X position.
+     * @param y     Y position.
+     * @return Whether or not the tile at a position is obstructive.
+     */
+    boolean isObstructive(GameWorld world, int x, int y) {
+        int type = type(x, y);
+        return DYNAMIC[type] ? get(world, x, y).isObstructive() : OBSTRUCTIVE[type];
+    }
+
+    /**
+     * Checks whether a tile stops enemies finding paths through it. Doors and exit
+     * gates always do, as whether they can be passed depends on the player.
+     *
+     * @param world World the grid belongs to.
+     * @param x     X position.
+     * @param y     Y position.
+     * @return Whether or not the tile at a position blocks paths.
+     */
+    boolean blocksPaths(GameWorld world, int x, int y) {
+        int type = type(x, y);
+        return type == DOOR || type == EXIT_GATE || isObstructive(world, x, y);
+    }
+
+    /**
+     * Finds the tile that should be notified when the player is at a position.
+     *
+     * @param world World the grid belongs to.
+     * @param x     X position.
+     * @param y     Y position.
+     * @return The tile at the position, or null if its type does not react to the player.
+     */
+    Tile trigger(GameWorld world, int x, int y) {
+        return TRIGGER[type(x, y)] ? get(world, x, y) : null;
+    }
+
+    /**
+     * Checks the class of a tile without creating it.
+     *
+     * @param x     X position.
+     * @param y     Y position.
+     * @param clazz Class to check for.
+     * @return Whether or not the tile at a position is an instance of the class.
+     */
+    boolean is(int x, int y, Class<? extends Tile> clazz) {
+        int index = index(x, y);
+        Tile live = liveTiles.get(index);
+        return live != null ? clazz.isInstance(live) : clazz.isAssignableFrom(TYPES.get(code(x, y) & TYPE_MASK));
+    }
+
+    /**
+     * Appends the string form of every tile in a row, reading each chunk once.
+     *
+     * @param y   Y position of the row.
+     * @param out Where to append the row.
+     */
+    void appendRow(int y, StringBuilder out) {
+        for (int cx = 0; cx < chunksWide; cx++) {
+            short[] chunk = chunk((y >> CHUNK_BITS) * chunksWide + cx);
+            int end = Math.min((cx + 1) << CHUNK_BITS, width);
+            for (int x = cx << CHUNK_BITS; x < end; x++) {
+                Tile live = liveTiles.isEmpty() ? null : liveTiles.get(index(x, y));
+                if (live != null) out.append(live);
+                else out.append(SYMBOLS[chunk == null ? GROUND : chunk[offset(x, y)] & TYPE_MASK]);
+            }
+        }
+    }
+
+    /**
+     * Finds the cells whose tile differs from another grid of the same size. Chunks that
+     * are still shared between the two grids are skipped without reading their codes, and
+     * cells holding a tile kept as an object always differ, as they cannot be compared.
+     *
+     * @param other The grid to compare to.
+     * @return The cell indexes that differ.
+     */
+    BitSet differences(TileGrid other) {
+        if (other.width != width || other.height != height) throw new IllegalArgumentException("Grids are not the same size.");
+        BitSet changed = new BitSet();
+        for (int c = 0; c < chunks.length; c++) {
+            if (chunks[c] == other.chunks[c] && (chunks[c] != null
+                    || (slots[c] == other.slots[c] && (slots[c] < 0 || file == other.file)))) continue;
+            short[] mine = chunk(c), theirs = other.chunk(c);
+            if (mine == theirs) continue;
+            int left = (c % chunksWide) << CHUNK_BITS, top = (c / chunksWide) << CHUNK_BITS;
+            for (int offset = 0; offset < CHUNK_SIDE * CHUNK_SIDE; offset++) {
+                int code = mine == null ? GROUND : mine[offset], otherCode = theirs == null ? GROUND : theirs[offset];
+                int x = left + (offset & (CHUNK_SIDE - 1)), y = top + (offset >> CHUNK_BITS);
+                if (code != otherCode && contains(x, y)) changed.set(index(x, y));
+            }
+        }
+        for (Map<Integer, String> table : List.of(texts, other.texts)) {
+            table.keySet().forEach(index -> {
+                if (!Objects.equals(texts.get(index), other.texts.get(index))) changed.set(index);
+            });
+        }
+        liveTiles.keySet().forEach(changed::set);
+        other.liveTiles.keySet().forEach(changed::set);
+        return changed;
+    }
+
+    /**
+     * @param x X position.
+     * @param y Y position.
+     * @return The color of the packed tile at a position, None if it has no color.
+     */
+    ColorableTile.Color color(int x, int y) {
+        return color(code(x, y));
+    }
+
+    /**
+     * @param x X position.
+     * @param y Y position.
+     * @return The direction of the packed tile at a position, only meaningful for bounce pads.
+     */
+    Entity.Direction direction(int x, int y) {
+        return direction(code(x, y));
+    }
+
+    /**
+     * @param x X position.
+     * @param y Y position.
+     * @return The info text at a position, or null if it is not an info field.
+     */
+    String text(int x, int y) {
+        return texts.get(index(x, y));
+    }
+
+    /**
+     * @param x X position.
+     * @param y Y position.
+     * @return The index of the chunk holding a position.
+     */
+    private int chunkIndex(int x, int y) {
+        return (y >> CHUNK_BITS) * chunksWide + (x >> CHUNK_BITS);
+    }
+
+    /**
+     * @param x X position.
+     * @param y Y position.
+     * @return The index of a position within its chunk.
+     */
+    private static int offset(int x, int y) {
+        return (y & (CHUNK_SIDE - 1)) << CHUNK_BITS | (x & (CHUNK_SIDE - 1));
+    }
+
+    /**
+     * @param x X position.
+     * @param y Y position.
+     * @return The code of a cell.
+     */
+    private int code(int x, int y) {
+        short[] chunk = chunk(chunkIndex(x, y));
+        return chunk == null ? GROUND : chunk[offset(x, y)];
+    }
+
+    /**
+     * Gets a chunk, paging it in if it was paged out, which releases its slot.
+     *
+     * @param c Index of the chunk.
+     * @return The chunk, or null if it is all ground.
+     */
+    private short[] chunk(int c) {
+        short[] chunk = chunks[c];
+        if (chunk != null || slots[c] < 0) return chunk;
+        makeRoom();
+        chunk = file.read(slots[c]);
+        file.release(slots[c]);
+        slots[c] = -1;
+        chunks[c] = chunk;
+        shared[c] = false;
+        resident.set(c);
+        residentCount++;
+        return chunk;
+    }
+
+    /**
+     * Writes the code of a cell, first copying its chunk if it is shared, or
+     * allocating it if it is all ground.
+     *
+     * @param x    X position.
+     * @param y    Y position.
+     * @param code The new code.
+     */
+    private void setCode(int x, int y, short code) {
+        int c = chunkIndex(x, y), offset = offset(x, y);
+        short[] chunk = chunk(c);
+        if ((chunk == null ? GROUND : chunk[offset]) == code) return;
+        if (chunk == null) {
+            makeRoom();
+            chunk = new short[CHUNK_SIZE];
+            chunks[c] = chunk;
+            resident.set(c);
+            residentCount++;
+        } else if (shared[c]) {
+            chunk = chunk.clone();
+            chunks[c] = chunk;
+            shared[c] = false;
+        }
+        int index = index(x, y);
+        hash ^= Zobrist.tile(index, chunk[offset]) ^ Zobrist.tile(index, code);
+        chunk[offset] = code;
+    }
+
+    /**
+     * Pages out every chunk that is not near an anchor if there are too many on the
+     * heap, before another chunk is put there.
+     */
+    private void makeRoom() {
+        if (residentCount < pageOutAt) return;
+        BitSet keep = new BitSet(chunks.length);
+        for (Maze.Point anchor : anchors.get()) {
+            if (!contains(anchor.x(), anchor.y())) continue;
+            int cx = anchor.x() >> CHUNK_BITS, cy = anchor.y() >> CHUNK_BITS;
+            for (int y = Math.max(cy - ANCHOR_RADIUS, 0); y <= cy + ANCHOR_RADIUS; y++) {
+                for (int x = Math.max(cx - ANCHOR_RADIUS, 0); x <= Math.min(cx + ANCHOR_RADIUS, chunksWide - 1); x++) {
+                    if (y * chunksWide + x < chunks.length) keep.set(y * chunksWide + x);
+                }
+            }
+        }
+        try {
+            if (file == null) {
+                file = new ChunkFile(CHUNK_SIZE);
+                file.releaseWhenUnused(this, slots);
+            }
+            for (int c = resident.nextSetBit(0); c >= 0; c = resident.nextSetBit(c + 1)) {
+                if (!keep.get(c)) pageOut(c);
+            }
+        } catch (UncheckedIOException e) {
+            // chunks that could not be paged out stay on the heap
+        }
+        pageOutAt = Math.max(MAX_RESIDENT_CHUNKS, residentCount * 2);
+    }
+
+    /**
+     * Moves a chunk off the heap. Chunks that are all ground are dropped.
+     *
+     * @param c Index of the chunk.
+     */
+    private void pageOut(int c) {
+        short[] chunk = chunks[c];
+        boolean ground = true;
+        for (short code : chunk) {
+            if (code != GROUND) {
+                ground = false;
+                break;
+            }
+        }
+        if (!ground) slots[c] = file.write(chunk);
+        chunks[c] = null;
+        shared[c] = false;
+        resident.clear(c);
+        residentCount--;
+    }
+
+    /**
+     * @param index Cell index.
+     * @param tile  Live tile on the cell.
+     * @return The key of a live tile, based on its class name so that it is the same in every run.
+     */
+    private static long liveKey(int index, Tile tile) {
+        return Zobrist.key(Zobrist.LIVE_TILE, index, tile.getClass().getName().hashCode());
+    }
+
+    /**
+     * @param tile Tile to find the code of.
+     * @return The type code of the tile's class, OBJECT if it has none.
+     */
+    private static int typeOf(Tile tile) {
+        return TYPE_CODES.getOrDefault(tile.getClass(), OBJECT);
+    }
+
+    /**
+     * @param code Code to unpack.
+     * @return The color stored in a code.
+     */
+    private static ColorableTile.Color color(int code) {
+        return COLORS[(code >> COLOR_SHIFT) & COLOR_MASK];
+    }
+
+    /**
+     * @param code Code to unpack.
+     * @return The direction stored in a code.
+     */
+    private static Entity.Direction direction(int code) {
+        return DIRECTIONS[(code >> DIR_SHIFT) & DIR_MASK];
+    }
+}
@@ -1,44 +1,37 @@
 package nz.ac.vuw.ecs.swen225.gp22.domain;
 
-import nz.ac.vuw.ecs.swen225.gp22.domain.Entity.Action.Interaction;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Entity.Action.Interaction.ActionType;
 
 /**
  * Represents a tile with a treasure on it, which the player
  * can pick up by walking onto the tile.
  *
  * @author Abdul
- * @version 1.4
+ * @version 1.6
  */
 public class Treasure extends Tile {
-    /**
-     * Used for tile functionality that depends on the player.
-     */
-    private final Observer<Player> playerObserver;
-
     /**
      * Default constructor, sets the position the tile, and
-     * obstructiveness to false. An observer is also added to the player so
-     * that when they are on this tile, it is reset and the treasure counter
-     * is updated.
+     * obstructiveness to false.
      *
      * @param tilePos Point to set the position field to.
      */
     public Treasure(Maze.Point tilePos) {
         super(tilePos, false);
-
-        playerObserver = player -> {
-            if (Maze.getTile(tilePos) == this && player.getPos().equals(tilePos)) {
-                Maze.collectTreasure();
-                Maze.resetTile(tilePos);
-                Maze.unclaimedInteractions.offer(new Interaction(Interaction.ActionType.PickupTreasure, ColorableTile.Color.None));
-            }
-        };
-        Maze.player.addObserver(playerObserver);
     }
 
+    /**
+     * When the player is on this tile, it is reset and the treasure counter
+     * is updated.
+     *
+     * @param player The player on this tile.
+     */
     @Override
-    public void deleteTile() {
-        Maze.player.removeObserver(playerObserver);
+    public void onEnter(Player player) {
+        getWorld().collectTreasure();
+        getWorld().resetTile(getPos());
+        player.interacted(ActionType.PickupTreasure, ColorableTile.Color.None);
+        getWorld().getEvents().treasureCollected(player, getPos(), getWorld().getTreasuresLeft());
     }
 
     @Override
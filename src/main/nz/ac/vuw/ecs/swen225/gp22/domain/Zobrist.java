@@ -0,0 +1,106 @@
+package nz.ac.vuw.ecs.swen225.gp22.domain;
+
+/**
+ * Keys for the Zobrist hash of a world's state. Each part of the state (a tile code on a
+ * cell, an entity on a cell, and so on) has its own pseudo-random 64-bit key, and the hash
+ * is the XOR of the keys of every part that is present, so changing one part only needs
+ * the old key and the new key XORed in. Keys are computed by mixing their inputs rather
+ * than looked up in a table, so they cost no memory and are the same in every run.
+ *
+ * @author agent
+ * @version 1.0
+ */
+final class Zobrist {
+    /**
+     * The kinds of state that have keys.
+     */
+    static final int TILE = 1, TEXT = 2, LIVE_TILE = 3, ENTITY_POS = 4, ENTITY_DIR = 5, KEYS = 6;
+
+    /**
+     * Not instantiable.
+     */
+    private Zobrist() {
+    }
+
+    /**
+     * @param kind Kind of state.
+     * @param a    First value.
+     * @param b    Second value.
+     * @return The key for the values.
+     */
+    static long key(int kind, int a, int b) {
+        return mix(mix(mix(kind) ^ a) ^ b);
+    }
+
+    /**
+     * @param kind Kind of state.
+     * @param a    First value.
+     * @param b    Second value.
+     * @param c    Third value.
+     * @return The key for the values.
+     */
+    static long key(int kind, int a, int b, int c) {
+        return mix(key(kind, a, b) ^ c);
+    }
+
+    /**
+     * @param index Cell index.
+     * @param code  Packed tile code.
+     * @return The key of a tile code on a cell, 0 for ground so empty cells cost nothing.
+     */
+    static long tile(int index, int code) {
+        return code == 0 ? 0 : key(TILE, index, code);
+    }
+
+    /**
+     * @param id  Entity ID.
+     * @param pos Position of the entity.
+     * @return The key of an entity being at a position.
+     */
+    static long position(int id, Maze.Point pos) {
+        return key(ENTITY_POS, id, pos.x(), pos.y());
+    }
+
+    /**
+     * @param id  Entity ID.
+     * @param dir Direction of the entity.
+     * @return The key of an entity facing a direction.
+     */
+    static long direction(int id, Entity.Direction dir) {
+        return key(ENTITY_DIR, id, dir.ordinal());
+    }
+
+    /**
+     * Hashes the position and direction of an entity.
+     * Suppressed the raw types warning as the generic type is only used for observers.
+     *
+     * @param entity The entity.
+     * @return The combined key of its position and direction.
+     */
+    @SuppressWarnings("rawtypes")
+    static long entity(Entity entity) {
+        return position(entity.id(), entity.getPos()) ^ direction(entity.id(), entity.getDir());
+    }
+
+    /**
+     * @param color Color of key.
+     * @param count Number of keys of the color held.
+     * @return The key of holding a number of keys of a color, 0 for none.
+     */
+    static long keys(ColorableTile.Color color, int count) {
+        return count == 0 ? 0 : key(KEYS, color.ordinal(), count);
+    }
+
+    /**
+     * SplitMix64 finaliser.
+     *
+     * @param z Value to mix.
+     * @return The mixed value.
+     */
+    private static long mix(long z) {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,262 @@
+package nz.ac.vuw.ecs.swen225.gp22.persistency;
+
+import nz.ac.vuw.ecs.swen225.gp22.domain.*;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Used to save levels and games in the compact binary format, and to convert
+ * between it and xml. Files are read back with {@link BinaryParser}.
+ * <p>
+ * All numbers are big endian. A file holds, in order:
+ * <ul>
+ *     <li>a header: the magic number, the version, the level, time, keys collected,
+ *     width, height, treasures and next level;</li>
+ *     <li>the player's position and direction, and the count of each color of key it holds;</li>
+ *     <li>a palette of the tiles used, each a tile ID and a color or direction ordinal,
+ *     where entry 0 is always ground;</li>
+ *     <li>the text of each info field in the order they appear in the grid;</li>
+ *     <li>the grid row by row, as runs of a varint length and a varint palette entry;</li>
+ *     <li>the entities, each an ID, position and direction.</li>
+ * </ul>
+ * The header and player position are ints. Key counts, table sizes, entity positions and
+ * the lengths of strings are varints, and strings are followed by their UTF-8 bytes.
+ *
+ * @author agent
+ * @version 1.0
+ */
+public final class BinaryFormat {
+    /**
+     * File extension of binary files.
+     */
+    public static final String EXTENSION = ".chapsb";
+
+    /**
+     * First four bytes of every binary file, "CHPB".
+     */
+    public static final int MAGIC = 0x43485042;
+
+    /**
+     * Version of the format written.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Palette parameter of tiles that have no color or direction.
+     */
+    static final byte NO_PARAM = -1;
+
+    /**
+     * A tile type in the palette.
+     *
+     * @param ID    ID of the tile
+     * @param param ordinal of its color or direction, or NO_PARAM
+     */
+    record PaletteEntry(String ID, byte param) {
+    }
+
+    /**
+     * Not used, this class only has static methods.
+     */
+    private BinaryFormat() {
+    }
+
+    /**
+     * Save the game in a world to a binary file.
+     *
+     * @param world world holding the game
+     * @param level level number of the game
+     * @param time  time that has passed in the game
+     * @param file  file to write to
+     * @throws IOException if the file could not be written
+     */
+    public static void save(GameWorld world, int level, int time, File file) throws IOException {
+        if (world == null || file == null) throw new IllegalArgumentException("World and file cannot be null");
+        write(world, level, time, world.getEntities().stream().map(EntityInfo::of).toList(), file);
+    }
+
+    /**
+     * Convert an xml level or save to a binary file.
+     * Entities are copied without their classes being loaded.
+     *
+     * @param xml    xml file to read
+     * @param binary binary file to write
+     * @throws IOException if the binary file could not be written
+     */
+    public static void fromXml(File xml, File binary) throws IOException {
+        StreamParser parser = new StreamParser(xml, new GameWorld());
+        GameWorld world = parser.load();
+        write(world, parser.getLevel(), parser.getTime(), parser.getEntityInfos(), binary);
+    }
+
+    /**
+     * Convert a binary level or save to an xml file.
+     * Entities are copied without their classes being loaded.
+     *
+     * @param binary binary file to read
+     * @param xml    xml file to write
+     * @throws IOException if the xml file could not be written
+     */
+    public static void toXml(File binary, File xml) throws IOException {
+        BinaryParser parser = new BinaryParser(binary, new GameWorld());
+        GameWorld world = parser.load();
+        Save.write(Save.createDocument(world, parser.getLevel(), parser.getTime(), parser.getEntityInfos()), xml);
+    }
+
+    /**
+     * Write a game to a binary file.
+     *
+     * @param world    world holding the game
+     * @param level    level number of the game
+     * @param time     time that has passed in the game
+     * @param entities entities of the game, as they are stored
+     * @param file     file to write to
+     * @throws IOException if the file could not be written
+     */
+    static void write(GameWorld world, int level, int time, List<EntityInfo> entities, File file) throws IOException {
+        Maze.Point dimensions = world.getDimensions();
+        Player player = world.getPlayer();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeInt(level);
+            out.writeInt(time);
+            out.writeInt(player.keyCount());
+            out.writeInt(dimensions.x());
+            out.writeInt(dimensions.y());
+            out.writeInt(world.getTreasuresLeft());
+            out.writeInt(world.getNextLevel());
+
+            out.writeInt(player.getPos().x());
+            out.writeInt(player.getPos().y());
+            out.writeByte(player.getDir().ordinal());
+            ColorableTile.Color[] colors = ColorableTile.Color.values();
+            out.writeByte(colors.length);
+            for (ColorableTile.Color color : colors) writeVarint(out, player.getInventory().count(color));
+
+            writeTiles(world, out);
+
+            writeVarint(out, entities.size());
+            for (EntityInfo entity : entities) {
+                writeString(out, entity.ID());
+                writeVarint(out, entity.position().x());
+                writeVarint(out, entity.position().y());
+                out.writeByte(entity.direction().ordinal());
+            }
+        }
+    }
+
+    /**
+     * Write the palette, the info text and the run-length encoded grid of a world.
+     * Runs carry on from the end of one row to the start of the next.
+     *
+     * @param world world holding the tiles
+     * @param out   stream to write to
+     * @throws IOException if the stream could not be written
+     */
+    private static void writeTiles(GameWorld world, DataOutputStream out) throws IOException {
+        int width = world.getDimensions().x(), height = world.getDimensions().y();
+        List<PaletteEntry> palette = new ArrayList<>();
+        Map<PaletteEntry, Integer> paletteIndexes = new HashMap<>();
+        PaletteEntry ground = new PaletteEntry(TileDatabase.getID(Ground.class), NO_PARAM);
+        palette.add(ground);
+        paletteIndexes.put(ground, 0);
+
+        // runs are written aside first, as the palette and text must come before them
+        ByteArrayOutputStream runBytes = new ByteArrayOutputStream();
+        DataOutputStream runs = new DataOutputStream(runBytes);
+        List<String> texts = new ArrayList<>();
+        int runEntry = 0, runLength = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int entry = 0;
+                if (!world.isTile(x, y, Ground.class)) {
+                    Tile tile = world.getTile(x, y);
+                    String tileID = TileDatabase.getID(tile);
+                    byte param = switch (tileID) {
+                        case "door", "key" -> (byte) ((ColorableTile) tile).getColor().ordinal();
+                        case "bounce-pad" -> (byte) ((BouncyPad) tile).getDir().ordinal();
+                        default -> NO_PARAM;
+                    };
+                    if (tileID.equals("info")) texts.add(((InfoField) tile).getText());
+                    PaletteEntry key = new PaletteEntry(tileID, param);
+                    Integer index = paletteIndexes.get(key);
+                    if (index == null) {
+                        index = palette.size();
+                        palette.add(key);
+                        paletteIndexes.put(key, index);
+                    }
+                    entry = index;
+                }
+                if (entry == runEntry) {
+                    runLength++;
+                    continue;
+                }
+                if (runLength > 0) writeRun(runs, runLength, runEntry);
+                runEntry = entry;
+                runLength = 1;
+            }
+        }
+        writeRun(runs, runLength, runEntry);
+
+        writeVarint(out, palette.size());
+        for (PaletteEntry entry : palette) {
+            writeString(out, entry.ID());
+            out.writeByte(entry.param());
+        }
+        writeVarint(out, texts.size());
+        for (String text : texts) writeString(out, text);
+        runBytes.writeTo(out);
+    }
+
+    /**
+     * Write a run of cells that use the same palette entry.
+     *
+     * @param out    stream to write to
+     * @param length number of cells in the run
+     * @param entry  palette entry of the cells
+     * @throws IOException if the stream could not be written
+     */
+    private static void writeRun(DataOutputStream out, int length, int entry) throws IOException {
+        writeVarint(out, length);
+        writeVarint(out, entry);
+    }
+
+    /**
+     * Write a non-negative int in as few bytes as possible, 7 bits at a time.
+     *
+     * @param out   stream to write to
+     * @param value value to write
+     * @throws IOException if the stream could not be written
+     */
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Write a string as its length followed by its UTF-8 bytes.
+     *
+     * @param out    stream to write to
+     * @param string string to write
+     * @throws IOException if the stream could not be written
+     */
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,220 @@
+package nz.ac.vuw.ecs.swen225.gp22.persistency;
+
+import nz.ac.vuw.ecs.swen225.gp22.domain.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Used to load levels and saved games from the binary format written by {@link BinaryFormat}.
+ * The file is memory mapped rather than read through a stream, and runs of the same
+ * tile are placed a row at a time, so loading takes time in proportion to the size of
+ * the file rather than the map.
+ *
+ * @author agent
+ * @version 1.0
+ */
+public class BinaryParser extends GameFileParser {
+    /**
+     * Create a parser for the given binary file.
+     * The level is loaded into the current world.
+     *
+     * @param file file to parse
+     */
+    public BinaryParser(File file) {
+        this(file, GameWorld.current());
+    }
+
+    /**
+     * Create a parser for the given binary file.
+     * The level is loaded into the given world.
+     *
+     * @param file  file to parse
+     * @param world world to load the level into
+     */
+    public BinaryParser(File file, GameWorld world) {
+        super(file, world);
+    }
+
+    /**
+     * Map the file and read it.
+     *
+     * @return a builder holding the map read from the file
+     */
+    @Override
+    MapBuilder read() {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer);
+        } catch (IOException | BufferUnderflowException e) {
+            throw new IllegalArgumentException("Invalid Game File", e);
+        }
+    }
+
+    /**
+     * Read the whole file from a buffer.
+     *
+     * @param buffer buffer holding the file
+     * @return a builder holding the map read from the file
+     */
+    private MapBuilder read(ByteBuffer buffer) {
+        if (buffer.remaining() < Integer.BYTES || buffer.getInt() != BinaryFormat.MAGIC)
+            throw new IllegalArgumentException("Invalid Game File");
+        int version = buffer.getShort();
+        if (version != BinaryFormat.VERSION) throw new IllegalArgumentException("Unsupported version " + version);
+        level = buffer.getInt();
+        time = buffer.getInt();
+        keysCollected = buffer.getInt();
+        int width = buffer.getInt(), height = buffer.getInt();
+        MapBuilder builder = world.builder(new Maze.Point(width, height))
+                .treasures(buffer.getInt())
+                .nextLevel(buffer.getInt());
+
+        Maze.Point playerPos = Maze.Point.of(buffer.getInt(), buffer.getInt());
+        builder.player(playerPos, direction(buffer.get()));
+        ColorableTile.Color[] colors = ColorableTile.Color.values();
+        int colorCount = buffer.get();
+        for (int i = 0; i < colorCount; i++) {
+            int count = readVarint(buffer);
+            if (i < colors.length) keys[i] = count;
+        }
+
+        readTiles(buffer, builder, width, height);
+
+        int entityCount = count(buffer);
+        for (int i = 0; i < entityCount; i++) {
+            String ID = readString(buffer);
+            Maze.Point position = Maze.Point.of(readVarint(buffer), readVarint(buffer));
+            entities.add(new EntityInfo(ID, position, direction(buffer.get())));
+        }
+        return builder;
+    }
+
+    /**
+     * Read the palette, the info text and the runs of tiles, placing them into a builder.
+     *
+     * @param buffer  buffer positioned at the palette
+     * @param builder builder to place the tiles into
+     * @param width   width of the map
+     * @param height  height of the map
+     */
+    private void readTiles(ByteBuffer buffer, MapBuilder builder, int width, int height) {
+        BinaryFormat.PaletteEntry[] palette = new BinaryFormat.PaletteEntry[count(buffer)];
+        Object[][] params = new Object[palette.length][];
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = new BinaryFormat.PaletteEntry(readString(buffer), buffer.get());
+            params[i] = params(palette[i]);
+        }
+        String[] texts = new String[count(buffer)];
+        for (int i = 0; i < texts.length; i++) texts[i] = readString(buffer);
+
+        long cells = (long) width * height;
+        int text = 0;
+        for (long cell = 0; cell < cells; ) {
+            int length = readVarint(buffer), entry = readVarint(buffer);
+            if (length <= 0 || cell + length > cells || entry >= palette.length)
+                throw new IllegalArgumentException("Invalid Game File");
+            String ID = palette[entry].ID();
+            for (long start = cell, end = cell + length; entry != 0 && start < end; ) {
+                int y = (int) (start / width), x = (int) (start % width);
+                if (ID.equals("info")) {
+                    if (text == texts.length) throw new IllegalArgumentException("Invalid Game File");
+                    builder.place(ID, Maze.Point.of(x, y), texts[text++]);
+                    start++;
+                    continue;
+                }
+                int rowEnd = (int) Math.min(end - (long) y * width, width);
+                builder.fill(Maze.Point.of(x, y), Maze.Point.of(rowEnd - 1, y), ID, params[entry]);
+                start = (long) y * width + rowEnd;
+            }
+            cell += length;
+        }
+        if (text != texts.length) throw new IllegalArgumentException("Invalid Game File");
+    }
+
+    /**
+     * Get the parameters a palette entry's tiles are created with after their position.
+     *
+     * @param entry the palette entry
+     * @return the parameters
+     */
+    private static Object[] params(BinaryFormat.PaletteEntry entry) {
+        return switch (entry.ID()) {
+            case "door", "key" -> new Object[]{color(entry.param())};
+            case "bounce-pad" -> new Object[]{direction(entry.param())};
+            default -> new Object[0];
+        };
+    }
+
+    /**
+     * Get the color with the given ordinal.
+     *
+     * @param ordinal ordinal of the color
+     * @return the color
+     */
+    private static ColorableTile.Color color(int ordinal) {
+        ColorableTile.Color[] colors = ColorableTile.Color.values();
+        if (ordinal < 0 || ordinal >= colors.length) throw new IllegalArgumentException("Invalid Game File");
+        return colors[ordinal];
+    }
+
+    /**
+     * Get the direction with the given ordinal.
+     *
+     * @param ordinal ordinal of the direction
+     * @return the direction
+     */
+    private static Entity.Direction direction(int ordinal) {
+        Entity.Direction[] directions = Entity.Direction.values();
+        if (ordinal < 0 || ordinal >= directions.length) throw new IllegalArgumentException("Invalid Game File");
+        return directions[ordinal];
+    }
+
+    /**
+     * Read the number of items in a table, each of which takes at least one byte.
+     *
+     * @param buffer buffer to read from
+     * @return the number of items
+     */
+    private static int count(ByteBuffer buffer) {
+        int count = readVarint(buffer);
+        if (count < 0 || count > buffer.remaining()) throw new IllegalArgumentException("Invalid Game File");
+        return count;
+    }
+
+    /**
+     * Read an int written 7 bits at a time.
+     *
+     * @param buffer buffer to read from
+     * @return the int
+     */
+    private static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Invalid Game File");
+    }
+
+    /**
+     * Read a string written as its length followed by its UTF-8 bytes.
+     *
+     * @param buffer buffer to read from
+     * @return the string
+     */
+    private static String readString(ByteBuffer buffer) {
+        int length = readVarint(buffer);
+        if (length < 0 || length > buffer.remaining()) throw new IllegalArgumentException("Invalid Game File");
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
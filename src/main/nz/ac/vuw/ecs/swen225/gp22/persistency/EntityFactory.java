@@ -0,0 +1,132 @@
+package nz.ac.vuw.ecs.swen225.gp22.persistency;
+
+import nz.ac.vuw.ecs.swen225.gp22.domain.EnemyEntity;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Entity;
+import nz.ac.vuw.ecs.swen225.gp22.domain.GameWorld;
+import nz.ac.vuw.ecs.swen225.gp22.domain.GummyGuard;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Maze;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Creates entities from their ID, using the classes loaded from a level's jar.
+ * Shared by the parsers so that both load entity classes and images the same way.
+ * Classes are only loaded once per factory, and a factory can be shared between threads.
+ * <p>
+ * Enemies from a jar find the player through {@link Maze#player}, which only follows the
+ * default world. In any other world an enemy is created from the domain class with the same
+ * ID instead, which finds the player through its own world.
+ *
+ * @author agent
+ * @version 1.0
+ */
+final class EntityFactory {
+    /**
+     * Enemies that work in any world, keyed by the ID of the jar enemy they stand in for.
+     */
+    private static final Map<String, Class<?>> WORLD_ENEMIES = Map.of("GummyGuard", GummyGuard.class);
+
+    private final HashMap<String, Class<?>> classMap = new HashMap<>();
+    private final int levelNum;
+
+    /**
+     * Create a factory for the entities of a level.
+     *
+     * @param levelNum level whose jar the entity classes are loaded from
+     */
+    EntityFactory(int levelNum) {
+        this.levelNum = levelNum;
+    }
+
+    /**
+     * Check if an entity can be created in a world.
+     *
+     * @param ID    ID of the entity's class
+     * @param world world the entity would belong to
+     * @return true if the world is the default world, or the entity has a class that works in any world
+     */
+    static boolean canCreate(String ID, GameWorld world) {
+        return world == GameWorld.getDefault() || WORLD_ENEMIES.containsKey(ID);
+    }
+
+    /**
+     * Create an entity of the class with the given ID.
+     * The entity belongs to the world bound to the calling thread. Outside the default
+     * world it is created from the class that works in any world.
+     *
+     * @param ID        ID of the entity's class
+     * @param position  position of the entity
+     * @param direction direction the entity faces
+     * @return the entity, or null if it could not be created
+     */
+    synchronized Entity<?> create(String ID, Maze.Point position, Entity.Direction direction) {
+        try {
+            Class<?> entityClass = GameWorld.current() == GameWorld.getDefault() ? getClass(ID) : WORLD_ENEMIES.get(ID);
+            if (entityClass == null) return null;
+            Object entity = entityClass.getConstructor(Maze.Point.class, Entity.Direction.class).newInstance(position, direction);
+            return entity instanceof Entity<?> e ? e : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Create stored entities in a world.
+     * Entities whose class could not be loaded are left out.
+     *
+     * @param world    world the entities belong to
+     * @param entities entities as they are stored
+     * @return the entities
+     */
+    synchronized List<Entity<?>> createAll(GameWorld world, List<EntityInfo> entities) {
+        return world.call(() -> entities.stream()
+                .<Entity<?>>map(e -> create(e.ID(), e.position(), e.direction()))
+                .filter(Objects::nonNull).toList());
+    }
+
+    /**
+     * Get the Class object for the given ID and store it in the classMap if it is not already there.
+     * Also loads images for the class.
+     *
+     * @param ID ID of the class to get
+     * @return Class object for the given ID
+     */
+    private Class<?> getClass(String ID) {
+        if (classMap.get(ID) == null) {
+            try {
+                Class<?> entityClass = Load.getClassLoader(levelNum).loadClass("nz.ac.vuw.ecs.swen225.gp22.entities." + ID);
+                classMap.put(ID, entityClass);
+                loadEnemyEntityImages(entityClass);
+                return entityClass;
+            } catch (ClassNotFoundException e) {
+                return null;
+            }
+        }
+        return classMap.get(ID);
+    }
+
+    /**
+     * Loads the images for the given subclass of EnemyEntity.
+     * Loads the image for each direction and stores it in the imageMap.
+     *
+     * @param entityClass the entity class to load images for
+     */
+    private void loadEnemyEntityImages(Class<?> entityClass) {
+        if (EnemyEntity.class.isAssignableFrom(entityClass)) {
+            try {
+                for (Entity.Direction direction : Entity.Direction.values()) {
+                    URL imagePath = entityClass.getClassLoader().getResource("resources/imgs/Enemy" + direction.name() + ".png");
+                    BufferedImage image = ImageIO.read(imagePath);
+                    EnemyEntity.imageMap.put(direction, image);
+                }
+            } catch (Exception e) {
+            }
+        }
+    }
+}
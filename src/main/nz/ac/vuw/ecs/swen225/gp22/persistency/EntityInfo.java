@@ -0,0 +1,38 @@
+package nz.ac.vuw.ecs.swen225.gp22.persistency;
+
+import nz.ac.vuw.ecs.swen225.gp22.domain.Entity;
+import nz.ac.vuw.ecs.swen225.gp22.domain.GameWorld;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Maze;
+
+/**
+ * An entity as it is stored in a file, by the ID of its class, its position and direction.
+ * Files can be read and converted without the entity classes of their level being loaded.
+ *
+ * @param ID        ID of the entity's class
+ * @param position  position of the entity
+ * @param direction direction the entity faces
+ * @author agent
+ * @version 1.0
+ */
+record EntityInfo(String ID, Maze.Point position, Entity.Direction direction) {
+    /**
+     * Get the stored form of an entity.
+     *
+     * @param entity entity to store
+     * @return the entity's ID, position and direction
+     */
+    @SuppressWarnings("rawtypes")
+    static EntityInfo of(Entity entity) {
+        return new EntityInfo(entity.getClass().getSimpleName(), entity.getPos(), entity.getDir());
+    }
+
+    /**
+     * Get the stored form of an entity as it was when a snapshot was taken.
+     *
+     * @param state the entity's state in the snapshot
+     * @return the entity's ID, and the position and direction it had
+     */
+    static EntityInfo of(GameWorld.Snapshot.EntityState state) {
+        return new EntityInfo(state.entity().getClass().getSimpleName(), state.pos(), state.dir());
+    }
+}
@@ -0,0 +1,162 @@
+package nz.ac.vuw.ecs.swen225.gp22.persistency;
+
+import nz.ac.vuw.ecs.swen225.gp22.domain.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shared parts of the parsers that load a level or saved game straight into a world:
+ * what the file says about the game, and the entities, which can only be created
+ * once the map has been committed.
+ * <p>
+ * A level can also be loaded as a {@link MapTemplate}, which leaves the world alone.
+ *
+ * @author agent
+ * @version 1.0
+ */
+abstract class GameFileParser {
+    final File file;
+    final GameWorld world;
+    final List<EntityInfo> entities = new ArrayList<>();
+    final int[] keys = new int[ColorableTile.Color.values().length];
+    int level = -1, time = 0, keysCollected = 0;
+    private boolean loaded = false;
+
+    /**
+     * Create a parser for the given file.
+     *
+     * @param file  file to parse
+     * @param world world to load the level into
+     */
+    GameFileParser(File file, GameWorld world) {
+        if (file == null) throw new IllegalArgumentException("File cannot be null");
+        if (world == null) throw new IllegalArgumentException("World cannot be null");
+        this.file = file;
+        this.world = world;
+    }
+
+    /**
+     * Read the file and replace the world's map with it.
+     * The player starts where the file says, with the keys it holds.
+     * Entities are not added, get them with getEntities().
+     *
+     * @return the world the level was loaded into
+     */
+    public GameWorld load() {
+        return commit(readOnce());
+    }
+
+    /**
+     * Read the file into a template instead of the world, which is not changed.
+     * Keys the player holds in the file are not part of the template.
+     *
+     * @return the map read from the file
+     */
+    MapTemplate loadTemplate() {
+        return readOnce().template();
+    }
+
+    /**
+     * Get the level number stored in the file.
+     *
+     * @return the level number, or -1 if the file has none
+     */
+    public int getLevel() {
+        checkLoaded();
+        return level;
+    }
+
+    /**
+     * Get the amount of time that has passed in a save file.
+     *
+     * @return the time that has passed, 0 for a level
+     */
+    public int getTime() {
+        checkLoaded();
+        return time;
+    }
+
+    /**
+     * Get the number of keys the player has collected in a save file.
+     *
+     * @return the number of keys collected, 0 for a level
+     */
+    public int getNumKeysCollected() {
+        checkLoaded();
+        return keysCollected;
+    }
+
+    /**
+     * Check if there are entities in the file.
+     *
+     * @return true if there are entities in the file
+     */
+    public boolean entitiesPresent() {
+        checkLoaded();
+        return !entities.isEmpty();
+    }
+
+    /**
+     * Create the entities read from the file in the world.
+     * Entities whose class could not be loaded are left out.
+     *
+     * @return list of entities
+     */
+    public List<Entity<?>> getEntities() {
+        checkLoaded();
+        return new EntityFactory(level).createAll(world, entities);
+    }
+
+    /**
+     * Get the entities as they are stored in the file, without creating them.
+     *
+     * @return the stored entities
+     */
+    List<EntityInfo> getEntityInfos() {
+        checkLoaded();
+        return Collections.unmodifiableList(entities);
+    }
+
+    /**
+     * Read the whole file into a builder for the world.
+     *
+     * @return a builder holding the map read from the file
+     */
+    abstract MapBuilder read();
+
+    /**
+     * Read the file, making sure it is only read once.
+     *
+     * @return a builder holding the map read from the file
+     */
+    private MapBuilder readOnce() {
+        if (loaded) throw new IllegalStateException("File has already been loaded");
+        loaded = true;
+        return read();
+    }
+
+    /**
+     * Commit a builder holding the whole map, then give the player its keys.
+     *
+     * @param builder builder holding the map read from the file
+     * @return the world the level was loaded into
+     */
+    private GameWorld commit(MapBuilder builder) {
+        GameWorld loadedWorld = builder.commit();
+        Player player = loadedWorld.getPlayer();
+        for (ColorableTile.Color color : ColorableTile.Color.values()) {
+            for (int i = 0; i < keys[color.ordinal()]; i++) player.addKey(color);
+        }
+        return loadedWorld;
+    }
+
+    /**
+     * Make sure the file has been loaded before its contents are asked for.
+     */
+    private void checkLoaded() {
+        if (!loaded) throw new IllegalStateException("File has not been loaded");
+    }
+}
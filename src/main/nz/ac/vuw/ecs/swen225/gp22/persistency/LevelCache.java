@@ -0,0 +1,64 @@
+package nz.ac.vuw.ecs.swen225.gp22.persistency;
+
+import nz.ac.vuw.ecs.swen225.gp22.domain.GameWorld;
+import nz.ac.vuw.ecs.swen225.gp22.domain.MapTemplate;
+
+import java.lang.ref.SoftReference;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps each level once it has been parsed, so that starting or restarting a level
+ * copies a template instead of reading the file again.
+ * Levels are held by soft references, so they are dropped when memory runs low
+ * and parsed again the next time they are needed.
+ * <p>
+ * Safe to use from any thread, as headless games load levels in parallel.
+ * Two threads that miss at once may both parse the level, which is harmless.
+ *
+ * @author agent
+ * @version 1.0
+ */
+final class LevelCache {
+    /**
+     * A parsed level.
+     *
+     * @param map           the level's map, which is never changed
+     * @param entities      the level's entities, as they are stored
+     * @param entityFactory creates the entities, keeping their classes and images loaded
+     */
+    record Level(MapTemplate map, List<EntityInfo> entities, EntityFactory entityFactory) {
+    }
+
+    private static final Map<Integer, SoftReference<Level>> levels = new ConcurrentHashMap<>();
+
+    /**
+     * Not used, this class only has static methods.
+     */
+    private LevelCache() {
+    }
+
+    /**
+     * Get a level, parsing it if it is not cached.
+     *
+     * @param levelNum level to get
+     * @return the level
+     */
+    static Level get(int levelNum) {
+        SoftReference<Level> cached = levels.get(levelNum);
+        Level level = cached == null ? null : cached.get();
+        if (level != null) return level;
+        StreamParser parser = new StreamParser(Load.getFile("levels/level" + levelNum), new GameWorld());
+        level = new Level(parser.loadTemplate(), List.copyOf(parser.getEntityInfos()), new EntityFactory(levelNum));
+        levels.put(levelNum, new SoftReference<>(level));
+        return level;
+    }
+
+    /**
+     * Drop every cached level, so they are parsed again.
+     */
+    static void clear() {
+        levels.clear();
+    }
+}
@@ -2,8 +2,8 @@ package nz.ac.vuw.ecs.swen225.gp22.persistency;
 
 import nz.ac.vuw.ecs.swen225.gp22.app.Base;
 import nz.ac.vuw.ecs.swen225.gp22.domain.Entity;
-import nz.ac.vuw.ecs.swen225.gp22.domain.Maze;
-import nz.ac.vuw.ecs.swen225.gp22.domain.Tile;
+import nz.ac.vuw.ecs.swen225.gp22.domain.GameWorld;
+import nz.ac.vuw.ecs.swen225.gp22.domain.MapTemplate;
 
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
@@ -12,18 +12,40 @@ import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Used to load levels and resume games.
  * Using xml files.
+ * <p>
+ * Levels are parsed once and kept in a {@link LevelCache}, so starting or restarting
+ * a level copies the parsed map rather than reading the file again.
+ * {@link #loadLevel(int, GameWorld)} does not touch the app, so headless games can
+ * load levels from any thread. Entities from a level's jar only work in the default
+ * world, so other worlds are given enemies from the domain in their place.
  *
  * @author Gideon
- * @version 1.4
+ * @version 1.13
  */
 public class Load {
     private static final String resourceDirectory = System.getProperty("user.dir") + "/resources/";
     private static final String previousGame = "saves/previousGame";
-    private static URLClassLoader classLoader;
+    private static final Map<Integer, URLClassLoader> classLoaders = new ConcurrentHashMap<>();
+
+    /**
+     * Time in seconds that every level starts with.
+     */
+    private static final int LEVEL_TIME = 60;
+
+    /**
+     * The level a world was loaded with, and the time in seconds it starts with.
+     *
+     * @param level level number
+     * @param time  time the level starts with
+     */
+    public record LevelStart(int level, int time) {
+    }
 
     /**
      * Load saved game from xml.
@@ -33,7 +55,8 @@ public class Load {
         JFileChooser fileChooser = new JFileChooser(resourceDirectory + "/saves");
         fileChooser.setDialogTitle("Select a game to load");
         fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
-        FileNameExtensionFilter filter = new FileNameExtensionFilter("Game File (xml)", "xml");
+        FileNameExtensionFilter filter = new FileNameExtensionFilter("Game File (xml, chapsb)", "xml",
+                BinaryFormat.EXTENSION.substring(1));
         fileChooser.setFileFilter(filter);
         fileChooser.showOpenDialog(null);
 
@@ -42,16 +65,51 @@ public class Load {
     }
 
     /**
-     * Load level from xml.
+     * Load level from xml, or from the cache if it has been loaded before.
+     * The level is loaded into the current world, and becomes the app's level.
      *
      * @param levelNum level to load.
      */
     public static void loadLevel(int levelNum) {
-        Base.setTime(60);
-        Base.setLevel(levelNum);
-        loadGame(getFile("levels/level" + levelNum));
-        Base.setLevel(levelNum);
-        Base.setTime(60);
+        LevelStart start = loadLevel(levelNum, GameWorld.current());
+        Base.setLevel(start.level());
+        Base.setTime(start.time());
+    }
+
+    /**
+     * Load level from xml, or from the cache if it has been loaded before, into a world.
+     * Unlike loadLevel(int) the app's level and time are not changed, so this can be
+     * called from any thread.
+     *
+     * @param levelNum level to load.
+     * @param world    world to load the level into.
+     * @return the level and the time it starts with.
+     * @throws IllegalArgumentException if the level has an entity that only works in the default world,
+     *                                  and the world is not the default world.
+     */
+    public static LevelStart loadLevel(int levelNum, GameWorld world) {
+        if (world == null) throw new IllegalArgumentException("World cannot be null");
+        LevelCache.Level level = LevelCache.get(levelNum);
+        for (EntityInfo entity : level.entities()) {
+            if (!EntityFactory.canCreate(entity.ID(), world))
+                throw new IllegalArgumentException("Level " + levelNum + " has a " + entity.ID() + ", which only works in the default world");
+        }
+        world.builder(level.map()).commit();
+        if (!level.entities().isEmpty()) {
+            world.getEntities().addAll(level.entityFactory().createAll(world, level.entities()));
+        }
+        return new LevelStart(levelNum, LEVEL_TIME);
+    }
+
+    /**
+     * Get the map of a level without loading it.
+     * Delta saves are written and loaded relative to it.
+     *
+     * @param levelNum level to get
+     * @return the level's map
+     */
+    static MapTemplate levelTemplate(int levelNum) {
+        return LevelCache.get(levelNum).map();
     }
 
     /**
@@ -84,12 +142,23 @@ public class Load {
     }
 
     /**
-     * returns the current URLClassLoader.
+     * returns the URLClassLoader of the app's current level.
      *
-     * @return the current URLClassLoader
+     * @return the current URLClassLoader, or null if its level has no entities loaded
      */
     public static URLClassLoader getClassLoader() {
-        return classLoader;
+        return classLoaders.get(Base.getLevel());
+    }
+
+    /**
+     * Get the class loader for the jar of a level, creating it the first time.
+     * Each level keeps its own, so loading one level never changes the classes of another.
+     *
+     * @param levelNum level number to load associated jar for
+     * @return the class loader, or null if it could not be made
+     */
+    static URLClassLoader getClassLoader(int levelNum) {
+        return classLoaders.computeIfAbsent(levelNum, Load::loadJar);
     }
 
     /**
@@ -100,7 +169,7 @@ public class Load {
      */
     public static void continueGame(File file, boolean condition) {
         if (condition) {
-            Parser parser = loadGame(file);
+            GameFileParser parser = loadGame(file);
             Base.setTime(parser.getTime());
             Base.setLevel(parser.getLevel());
         } else {
@@ -119,22 +188,16 @@ public class Load {
     }
 
     /**
-     * Parses a game from the provided file.
+     * Parses a game from the provided file, which can be xml or binary.
      *
      * @param file the file to parse and load the game from
      */
-    private static Parser loadGame(File file) {
-        Parser parser = new Parser(file);
-        parser.parseMapInfo();
-        parser.parsePlayer(Maze.player);
-        List<Tile> tiles = parser.getTiles();
+    private static GameFileParser loadGame(File file) {
+        GameFileParser parser = file.getName().endsWith(BinaryFormat.EXTENSION) ? new BinaryParser(file) : new StreamParser(file);
+        GameWorld world = parser.load();
         if (parser.entitiesPresent()) {
-            loadJar(parser.getLevel());
-            List<Entity> entities = parser.getEntities();
-            Maze.entities.addAll(entities);
-        }
-        for (Tile t : tiles) {
-            Maze.setTile(t.getPos(), t);
+            List<Entity<?>> entities = parser.getEntities();
+            world.getEntities().addAll(entities);
         }
         return parser;
     }
@@ -144,17 +207,17 @@ public class Load {
      * Loads classes from a jar file.
      *
      * @param levelNum level number to load associated jar for
+     * @return a class loader for the jar, or null if it could not be made
      */
-    private static void loadJar(int levelNum) {
+    private static URLClassLoader loadJar(int levelNum) {
         File file = getFile("level/level" + levelNum + ".jar");
         try {
-            URLClassLoader child = new URLClassLoader(
+            return new URLClassLoader(
                     new URL[]{file.toURI().toURL()},
                     Load.class.getClassLoader()
             );
-            classLoader = child;
         } catch (IOException e) {
-            classLoader = null;
+            return null;
         }
     }
 
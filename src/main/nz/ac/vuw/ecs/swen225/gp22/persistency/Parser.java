@@ -6,31 +6,42 @@ import org.dom4j.DocumentException;
 import org.dom4j.Element;
 import org.dom4j.io.SAXReader;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
 import java.io.*;
-import java.net.URL;
 import java.util.*;
 
 /**
  * Used to parse XML files.
  *
  * @author Gideon
- * @version 1.5
+ * @version 1.9
  */
 public class Parser {
     private Document document;
-    private HashMap<String, Class<?>> classMap;
+    private EntityFactory entityFactory;
+    private final GameWorld world;
 
     /**
      * Read given xml file and store in a document.
+     * The parsed level is loaded into the current world.
      *
      * @param file file to parse
      */
     public Parser(File file) {
+        this(file, GameWorld.current());
+    }
+
+    /**
+     * Read given xml file and store in a document.
+     * The parsed level is loaded into the given world.
+     *
+     * @param file  file to parse
+     * @param world world to load the level into
+     */
+    public Parser(File file, GameWorld world) {
+        if (world == null) throw new IllegalArgumentException("World cannot be null");
+        this.world = world;
         try {
             document = new SAXReader().read(file);
-            classMap = new HashMap<>();
         } catch (DocumentException e) {
             throw new IllegalArgumentException("Invalid Game File");
         }
@@ -44,7 +55,37 @@ public class Parser {
         int width = intFromElement(mapInfo, "width");
         int height = intFromElement(mapInfo, "height");
         Maze.Point dimensions = new Maze.Point(width, height);
-        Maze.generateMap(dimensions, intFromElement(mapInfo, "treasures"), intFromElement(mapInfo, "nextLevel"));
+        world.generateMap(dimensions, intFromElement(mapInfo, "treasures"), intFromElement(mapInfo, "nextLevel"));
+    }
+
+    /**
+     * Parse the dimensions of the level, the number of treasures, where the player
+     * starts and the tiles into a builder.
+     * The world is not changed until the builder is committed.
+     *
+     * @return a builder holding the level's map
+     */
+    public MapBuilder parseMap() {
+        Element mapInfo = document.getRootElement().element("mapInfo");
+        MapBuilder builder = world.builder(new Maze.Point(intFromElement(mapInfo, "width"), intFromElement(mapInfo, "height")))
+                .treasures(intFromElement(mapInfo, "treasures"))
+                .nextLevel(intFromElement(mapInfo, "nextLevel"));
+        Element playerNode = document.getRootElement().element("player");
+        builder.player(getPoint(playerNode), Entity.Direction.valueOf(playerNode.attributeValue("direction")));
+        List<Element> nodes = document.getRootElement().element("tiles").elements();
+        for (Element element : nodes) {
+            builder.place(element.attributeValue("ID"), getPoint(element), parseTileParams(element));
+        }
+        return builder;
+    }
+
+    /**
+     * Get the world this parser loads into.
+     *
+     * @return the world the level is loaded into
+     */
+    public GameWorld getWorld() {
+        return world;
     }
 
     /**
@@ -126,24 +167,20 @@ public class Parser {
      */
     public List<Entity> getEntities() {
         List<Element> nodes = document.getRootElement().element("entities").elements();
-        return nodes.stream().map(this::parseEntity).filter(e -> e instanceof Entity).map(e -> (Entity) e).toList();
+        if (entityFactory == null) entityFactory = new EntityFactory(getLevel());
+        return world.call(() -> nodes.stream().map(this::parseEntity).filter(Objects::nonNull).toList());
     }
 
     /**
      * Parse the given element into an entity.
      *
      * @param entity element to parse
-     * @return the entity
+     * @return the entity, or null if it could not be created
      */
-    private Object parseEntity(Element entity) {
+    private Entity parseEntity(Element entity) {
         Maze.Point position = getPoint(entity);
         Entity.Direction direction = Entity.Direction.valueOf(entity.attributeValue("direction"));
-        String ID = entity.attributeValue("ID");
-        try {
-            return getClass(ID).getConstructor(Maze.Point.class, Entity.Direction.class).newInstance(position, direction);
-        } catch (Exception e) {
-            return null;
-        }
+        return entityFactory.create(entity.attributeValue("ID"), position, direction);
     }
 
     /**
@@ -153,7 +190,7 @@ public class Parser {
      */
     public List<Tile> getTiles() {
         List<Element> nodes = document.getRootElement().element("tiles").elements();
-        return nodes.stream().map(this::parseTile).toList();
+        return world.call(() -> nodes.stream().map(this::parseTile).toList());
     }
 
     /**
@@ -163,24 +200,26 @@ public class Parser {
      * @return returns a tile parsed from the element
      */
     private Tile parseTile(Element element) {
-        String ID = element.attributeValue("ID");
-        Maze.Point p = getPoint(element);
-        switch (ID) {
-            case "info" -> {
-                return TileDatabase.create(ID, p, element.element("text").getText());
-            }
-            case "door", "key" -> {
-                ColorableTile.Color c = ColorableTile.Color.valueOf(element.element("color").getText());
-                return TileDatabase.create(ID, p, c);
-            }
-            case "bounce-pad" -> {
-                Entity.Direction direction = Entity.Direction.valueOf(element.elementText("direction"));
-                return TileDatabase.create(ID, p, direction);
-            }
-            default -> {
-                return TileDatabase.create(ID, p);
-            }
-        }
+        Object[] params = parseTileParams(element);
+        Object[] all = new Object[params.length + 1];
+        all[0] = getPoint(element);
+        System.arraycopy(params, 0, all, 1, params.length);
+        return TileDatabase.create(element.attributeValue("ID"), all);
+    }
+
+    /**
+     * Parses the parameters of the given tile element that come after its position.
+     *
+     * @param element element to parse the parameters of
+     * @return the parameters of the tile, in the order the tile database takes them
+     */
+    private Object[] parseTileParams(Element element) {
+        return switch (element.attributeValue("ID")) {
+            case "info" -> new Object[]{element.element("text").getText()};
+            case "door", "key" -> new Object[]{ColorableTile.Color.valueOf(element.element("color").getText())};
+            case "bounce-pad" -> new Object[]{Entity.Direction.valueOf(element.elementText("direction"))};
+            default -> new Object[0];
+        };
     }
 
     /**
@@ -217,44 +256,4 @@ public class Parser {
     private int intFromAttribute(Element element, String attributeName) {
         return Integer.parseInt(element.attributeValue(attributeName));
     }
-
-    /**
-     * Get the Class object for the given ID and store it in the classMap if it is not already there.
-     * Also loads images for the class.
-     *
-     * @param ID ID of the class to get
-     * @return Class object for the given ID
-     */
-    private Class<?> getClass(String ID) {
-        if (classMap.get(ID) == null) {
-            try {
-                Class entityClass = Load.getClassLoader().loadClass("nz.ac.vuw.ecs.swen225.gp22.entities." + ID);
-                classMap.put(ID, entityClass);
-                loadEnemyEntityImages(entityClass);
-                return entityClass;
-            } catch (ClassNotFoundException e) {
-                return null;
-            }
-        }
-        return classMap.get(ID);
-    }
-
-    /**
-     * Loads the images for the given subclass of EnemyEntity.
-     * Loads the image for each direction and stores it in the imageMap.
-     *
-     * @param entityClass the entity class to load images for
-     */
-    private void loadEnemyEntityImages(Class<?> entityClass) {
-        if (EnemyEntity.class.isAssignableFrom(entityClass)) {
-            try {
-                for (Entity.Direction direction : Entity.Direction.values()) {
-                    URL imagePath = entityClass.getClassLoader().getResource("resources/imgs/Enemy" + direction.name() + ".png");
-                    BufferedImage image = ImageIO.read(imagePath);
-                    EnemyEntity.imageMap.put(direction, image);
-                }
-            } catch (Exception e) {
-            }
-        }
-    }
 }
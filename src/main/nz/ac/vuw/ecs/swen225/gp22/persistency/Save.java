@@ -8,114 +8,307 @@ import org.dom4j.Element;
 import org.dom4j.io.OutputFormat;
 import org.dom4j.io.XMLWriter;
 
-import java.io.FileWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Used to save the current game.
  * Using xml files.
+ * <p>
+ * Only a snapshot of the game is taken on the calling thread, which is cheap as its tiles are
+ * shared copy-on-write. The document is built from the snapshot and written on a background
+ * thread, so the game is never read there while it changes. Each file is written to a
+ * temporary file first and then renamed over the old one, so a save that fails part way
+ * never leaves a broken file behind.
+ * <p>
+ * Games can also be saved as a delta from their level, see {@link #saveGameAsync(boolean)}.
  *
  * @author Gideon
- * @version 1.4
+ * @version 1.10
  */
 public class Save {
+    /**
+     * Single thread that writes saves, so they are written in the order they are made.
+     */
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "save-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Save current game as xml, waiting until it has been written.
+     * Errors are printed rather than thrown.
+     *
+     * @see #saveGameAsync()
+     **/
+    public static void saveGame() {
+        try {
+            saveGameAsync().join();
+        } catch (CompletionException e) {
+            e.getCause().printStackTrace();
+        }
+    }
+
     /**
      * Save current game as xml.
      * Store information about the map, dimensions, number of treasures, nextLevel.
      * Store time and keysCollected.
      * Store player position, direction and inventory if present.
      * Store tilemap.
+     * <p>
+     * A snapshot of the game is taken before this returns, and the files are built and written
+     * in the background, to a timestamped file and to previousGame.xml.
+     *
+     * @return a future that completes with the timestamped file once both files are written,
+     * or exceptionally with an {@link UncheckedIOException} if they could not be
      **/
-    public static void saveGame() {
+    public static CompletableFuture<File> saveGameAsync() {
+        return saveGameAsync(false);
+    }
+
+    /**
+     * Save current game as xml, either in full or as a delta.
+     * A delta only stores the tiles that differ from the level the game started as,
+     * such as keys picked up, doors opened and treasures taken, along with everything
+     * else a full save stores, so it stays small however large the level is.
+     * Falls back to a full save if the level cannot be found or does not match the game.
+     *
+     * @param delta whether to only store the tiles that differ from the level
+     * @return a future that completes with the timestamped file once both files are written,
+     * or exceptionally with an {@link UncheckedIOException} if they could not be
+     **/
+    public static CompletableFuture<File> saveGameAsync(boolean delta) {
+        GameWorld.Snapshot snapshot = GameWorld.current().snapshot();
+        int level = Base.getLevel(), time = Base.getTime();
+        String saves = System.getProperty("user.dir") + "/resources/saves/";
+        File file = new File(saves + LocalDateTime.now().toString().replace(":", "-") + ".chaps.xml");
+        File previous = new File(saves + "previousGame.xml");
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                byte[] bytes = toBytes(createDocument(snapshot, level, time, delta));
+                write(bytes, file);
+                write(bytes, previous);
+                return file;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, WRITER);
+    }
+
+    /**
+     * Create the xml document of a game from a snapshot of it.
+     *
+     * @param snapshot snapshot of the world holding the game
+     * @param level    level number of the game
+     * @param time     time that has passed in the game
+     * @param delta    whether to only store the tiles that differ from the level, if it can be found
+     * @return the document
+     */
+    private static Document createDocument(GameWorld.Snapshot snapshot, int level, int time, boolean delta) {
+        GameWorld world = snapshot.copy();
+        List<EntityInfo> entities = snapshot.getEntities().stream().map(EntityInfo::of).toList();
+        try {
+            if (delta) return createDelta(world, Load.levelTemplate(level), level, time, entities);
+        } catch (IllegalArgumentException e) {
+            // the level is missing or a different size, so the whole map is saved
+        }
+        return createDocument(world, level, time, entities);
+    }
+
+    /**
+     * Create the xml document of a game.
+     *
+     * @param world    world holding the game
+     * @param level    level number of the game
+     * @param time     time that has passed in the game
+     * @param entities entities of the game, as they are stored
+     * @return the document
+     */
+    static Document createDocument(GameWorld world, int level, int time, List<EntityInfo> entities) {
+        Document doc = DocumentHelper.createDocument();
+        Element tiles = addGame(doc, world, level, time, entities).addElement("tiles");
+        Maze.Point dimensions = world.getDimensions();
+        for (int x = 0; x < dimensions.x(); x++) {
+            for (int y = 0; y < dimensions.y(); y++) {
+                if (world.isTile(x, y, Ground.class)) continue;
+                addTile(tiles, world.getTile(x, y));
+            }
+        }
+        return doc;
+    }
+
+    /**
+     * Create the xml document of a game that only stores the tiles that differ from its level.
+     * Tiles that have become ground are stored as ground.
+     *
+     * @param world    world holding the game
+     * @param template the map the level starts with
+     * @param level    level number of the game
+     * @param time     time that has passed in the game
+     * @param entities entities of the game, as they are stored
+     * @return the document
+     */
+    static Document createDelta(GameWorld world, MapTemplate template, int level, int time, List<EntityInfo> entities) {
+        List<Maze.Point> changes = world.changesFrom(template);
         Document doc = DocumentHelper.createDocument();
+        Element root = addGame(doc, world, level, time, entities);
+        root.addAttribute("delta", "true");
+        Element tiles = root.addElement("tiles");
+        for (Maze.Point point : changes) addTile(tiles, world.getTile(point));
+        return doc;
+    }
+
+    /**
+     * Add everything about a game but its tiles to a document.
+     *
+     * @param doc      document to add to
+     * @param world    world holding the game
+     * @param level    level number of the game
+     * @param time     time that has passed in the game
+     * @param entities entities of the game, as they are stored
+     * @return the root element
+     */
+    private static Element addGame(Document doc, GameWorld world, int level, int time, List<EntityInfo> entities) {
         Element root = doc.addElement("maze");
-        root.addAttribute("level", String.valueOf(Base.getLevel()));
+        root.addAttribute("level", String.valueOf(level));
         Element mapInfo = root.addElement("mapInfo");
-        Maze.Point dimensions = Maze.getDimensions();
+        Maze.Point dimensions = world.getDimensions();
         mapInfo.addElement("width").addText(String.valueOf(dimensions.x()));
         mapInfo.addElement("height").addText(String.valueOf(dimensions.y()));
-        mapInfo.addElement("treasures").addText(String.valueOf(Maze.getTreasuresLeft()));
-        mapInfo.addElement("nextLevel").addText(String.valueOf(Maze.getNextLevel()));
+        mapInfo.addElement("treasures").addText(String.valueOf(world.getTreasuresLeft()));
+        mapInfo.addElement("nextLevel").addText(String.valueOf(world.getNextLevel()));
 
-        int keyCount = Maze.player.keyCount();
+        Player worldPlayer = world.getPlayer();
+        int keyCount = worldPlayer.keyCount();
         Element saveInfo = root.addElement("saveInfo");
-        saveInfo.addElement("time").addText(String.valueOf(Base.getTime()));
+        saveInfo.addElement("time").addText(String.valueOf(time));
         saveInfo.addElement("keysCollected").addText(String.valueOf(keyCount));
         Element player = root.addElement("player");
-        addPoint(player, Maze.player.getPos());
-        player.addAttribute("direction", Maze.player.getDir().name());
+        addPoint(player, worldPlayer.getPos());
+        player.addAttribute("direction", worldPlayer.getDir().name());
         if (keyCount > 0) {
-            saveInventory(player);
+            saveInventory(player, worldPlayer.getInventory());
         }
-        if (Maze.entities.size() > 0) {
-            Element entities = root.addElement("entities");
-            Maze.entities.forEach(e -> saveEntity(entities, e));
+        if (!entities.isEmpty()) {
+            Element entitiesElement = root.addElement("entities");
+            entities.forEach(e -> saveEntity(entitiesElement, e));
         }
-        Element tiles = root.addElement("tiles");
-        for (int x = 0; x < dimensions.x(); x++) {
-            for (int y = 0; y < dimensions.y(); y++) {
-                Maze.Point p = new Maze.Point(x, y);
-                Tile tile = Maze.getTile(p);
-                String tileID = TileDatabase.getID(tile);
-                if (tileID.equals("ground")) continue;
-                Element tileElement = tiles.addElement("tile");
-
-                tileElement.addAttribute("ID", tileID);
-                addPoint(tileElement, p);
-                switch (tileID) {
-                    case "info" -> tileElement.addElement("text").addText(((InfoField) tile).getText());
-                    case "door", "key" ->
-                            tileElement.addElement("color").addText(((ColorableTile) tile).getColor().name());
-                    case "bounce-pad" ->
-                            tileElement.addElement("direction").addText(((BouncyPad) tile).getDir().name());
-                }
-            }
+        return root;
+    }
+
+    /**
+     * Save a tile to xml element.
+     *
+     * @param tiles Element to add the tile to.
+     * @param tile  Tile to save.
+     */
+    private static void addTile(Element tiles, Tile tile) {
+        String tileID = TileDatabase.getID(tile);
+        Element tileElement = tiles.addElement("tile");
+        tileElement.addAttribute("ID", tileID);
+        addPoint(tileElement, tile.getPos());
+        switch (tileID) {
+            case "info" -> tileElement.addElement("text").addText(((InfoField) tile).getText());
+            case "door", "key" -> tileElement.addElement("color").addText(((ColorableTile) tile).getColor().name());
+            case "bounce-pad" -> tileElement.addElement("direction").addText(((BouncyPad) tile).getDir().name());
         }
+    }
+
+    /**
+     * Write an xml document to a file.
+     *
+     * @param doc  document to write
+     * @param file file to write to
+     * @throws IOException if the file could not be written
+     */
+    static void write(Document doc, File file) throws IOException {
+        write(toBytes(doc), file);
+    }
+
+    /**
+     * Serialise an xml document.
+     *
+     * @param doc document to serialise
+     * @return the UTF-8 bytes of the document
+     * @throws IOException if the document could not be serialised
+     */
+    private static byte[] toBytes(Document doc) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new XMLWriter(out, OutputFormat.createPrettyPrint()).write(doc);
+        return out.toByteArray();
+    }
 
-        String filename = System.getProperty("user.dir") + "/resources/saves/"
-                + LocalDateTime.now().toString().replace(":", "-") + ".chaps.xml";
+    /**
+     * Write bytes to a temporary file next to a file, then rename it over the file.
+     *
+     * @param bytes bytes to write
+     * @param file  file to replace
+     * @throws IOException if the file could not be written
+     */
+    private static void write(byte[] bytes, File file) throws IOException {
+        Path target = file.getAbsoluteFile().toPath();
+        Path temp = Files.createTempFile(target.getParent(), file.getName(), ".tmp");
         try {
-            FileWriter out = new FileWriter(filename, StandardCharsets.UTF_8);
-            FileWriter previousOut = new FileWriter(System.getProperty("user.dir") + "/resources/saves/previousGame.xml", StandardCharsets.UTF_8);
-            (new XMLWriter(out, OutputFormat.createPrettyPrint())).write(doc);
-            (new XMLWriter(previousOut, OutputFormat.createPrettyPrint())).write(doc);
-            out.close();
-            previousOut.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+            Files.write(temp, bytes);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
         }
     }
 
     /**
      * Save entities to xml element.
      *
-     * @param entities Element to add the inventory to.
+     * @param entities Element to add the entity to.
      * @param e        Entity to save
      */
-    private static void saveEntity(Element entities, Entity e) {
+    private static void saveEntity(Element entities, EntityInfo e) {
         Element entity = entities.addElement("entity");
-        entity.addAttribute("ID", e.getClass().getSimpleName());
-        addPoint(entity, e.getPos());
-        entity.addAttribute("direction", e.getDir().name());
+        entity.addAttribute("ID", e.ID());
+        addPoint(entity, e.position());
+        entity.addAttribute("direction", e.direction().name());
     }
 
     /**
-     * Save inventory to xml element.
+     * Save the current player's inventory to xml element.
      *
      * @param player Element to add the inventory to.
      */
     public static void saveInventory(Element player) {
+        saveInventory(player, Maze.player.getInventory());
+    }
+
+    /**
+     * Save inventory to xml element.
+     *
+     * @param player Element to add the inventory to.
+     * @param keys   The inventory to save.
+     */
+    public static void saveInventory(Element player, Inventory keys) {
         Element inventory = player.addElement("inventory");
-        Map<String, Long> keyMap = Maze.player.getAllKeys().stream()
-                .collect(Collectors.groupingBy(ColorableTile.Color::name, Collectors.counting()));
-        keyMap.forEach(
-                (k, v) -> inventory.addElement("key")
-                        .addAttribute("count", String.valueOf(v))
-                        .addAttribute("color", k));
+        for (ColorableTile.Color color : ColorableTile.Color.values()) {
+            if (keys.count(color) == 0) continue;
+            inventory.addElement("key")
+                    .addAttribute("count", String.valueOf(keys.count(color)))
+                    .addAttribute("color", color.name());
+        }
     }
 
     /**
@@ -0,0 +1,184 @@
+package nz.ac.vuw.ecs.swen225.gp22.persistency;
+
+import nz.ac.vuw.ecs.swen225.gp22.domain.*;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Used to load levels and saved games by streaming their xml.
+ * Reads the same files as {@link Parser}, but instead of building a document
+ * first it places each tile into a {@link MapBuilder} as soon as it is read,
+ * so load time and memory only depend on the size of the map, not of the file.
+ * <p>
+ * Entities are created once the map has been committed, as they need a map to be on,
+ * so only their IDs and positions are kept while reading.
+ * <p>
+ * A save written by {@link Save#saveGameAsync(boolean)} as a delta only holds the tiles that
+ * differ from its level, so its map starts as the level's template and its tiles are placed over it.
+ *
+ * @author agent
+ * @version 1.0
+ */
+public class StreamParser extends GameFileParser {
+    /**
+     * Create a parser for the given xml file.
+     * The level is loaded into the current world.
+     *
+     * @param file file to parse
+     */
+    public StreamParser(File file) {
+        this(file, GameWorld.current());
+    }
+
+    /**
+     * Create a parser for the given xml file.
+     * The level is loaded into the given world.
+     *
+     * @param file  file to parse
+     * @param world world to load the level into
+     */
+    public StreamParser(File file, GameWorld world) {
+        super(file, world);
+    }
+
+    /**
+     * Stream the file, placing each tile as it is read.
+     *
+     * @return a builder holding the map read from the file
+     */
+    @Override
+    MapBuilder read() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            try {
+                return read(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException | IOException e) {
+            throw new IllegalArgumentException("Invalid Game File", e);
+        }
+    }
+
+    /**
+     * Read the whole document.
+     *
+     * @param reader reader positioned at the start of the document
+     * @return a builder holding the map read from the file
+     * @throws XMLStreamException if the xml is invalid
+     */
+    private MapBuilder read(XMLStreamReader reader) throws XMLStreamException {
+        MapBuilder builder = null;
+        MapTemplate template = null;
+        Maze.Point playerPos = null;
+        Entity.Direction playerDir = null;
+        int width = -1, height = -1, treasures = 0, nextLevel = -1;
+        while (reader.hasNext()) {
+            if (reader.next() != XMLStreamConstants.START_ELEMENT) continue;
+            switch (reader.getLocalName()) {
+                case "maze" -> {
+                    String levelAttribute = reader.getAttributeValue(null, "level");
+                    if (levelAttribute != null) level = Integer.parseInt(levelAttribute);
+                    if (Boolean.parseBoolean(reader.getAttributeValue(null, "delta"))) {
+                        if (levelAttribute == null) throw new IllegalArgumentException("Delta save has no level");
+                        template = Load.levelTemplate(level);
+                        builder = world.builder(template);
+                    }
+                }
+                case "width" -> width = Integer.parseInt(reader.getElementText());
+                case "height" -> height = Integer.parseInt(reader.getElementText());
+                case "treasures" -> treasures = Integer.parseInt(reader.getElementText());
+                case "nextLevel" -> nextLevel = Integer.parseInt(reader.getElementText());
+                case "time" -> time = Integer.parseInt(reader.getElementText());
+                case "keysCollected" -> keysCollected = Integer.parseInt(reader.getElementText());
+                case "player" -> {
+                    playerPos = getPoint(reader);
+                    playerDir = Entity.Direction.valueOf(reader.getAttributeValue(null, "direction"));
+                }
+                case "key" -> keys[ColorableTile.Color.valueOf(reader.getAttributeValue(null, "color")).ordinal()]
+                        += intFromAttribute(reader, "count");
+                case "entity" -> entities.add(new EntityInfo(reader.getAttributeValue(null, "ID"), getPoint(reader),
+                        Entity.Direction.valueOf(reader.getAttributeValue(null, "direction"))));
+                case "tile" -> {
+                    if (builder == null) builder = newBuilder(width, height);
+                    String ID = reader.getAttributeValue(null, "ID");
+                    builder.place(ID, getPoint(reader), parseTileParams(reader, ID));
+                }
+                default -> {
+                }
+            }
+        }
+        if (builder == null) builder = newBuilder(width, height);
+        if (template != null && !template.getDimensions().equals(Maze.Point.of(width, height)))
+            throw new IllegalArgumentException("Delta save does not match level " + level);
+        if (playerPos != null) builder.player(playerPos, playerDir);
+        return builder.treasures(treasures).nextLevel(nextLevel);
+    }
+
+    /**
+     * Parses the parameters of the tile the reader is on that come after its position,
+     * leaving the reader at the end of the tile.
+     *
+     * @param reader reader positioned at the start of a tile
+     * @param ID     ID of the tile
+     * @return the parameters of the tile, in the order the tile database takes them
+     * @throws XMLStreamException if the xml is invalid
+     */
+    private Object[] parseTileParams(XMLStreamReader reader, String ID) throws XMLStreamException {
+        Object[] params = new Object[0];
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            String text = reader.getElementText();
+            params = switch (ID) {
+                case "info" -> new Object[]{text};
+                case "door", "key" -> new Object[]{ColorableTile.Color.valueOf(text)};
+                case "bounce-pad" -> new Object[]{Entity.Direction.valueOf(text)};
+                default -> params;
+            };
+        }
+        return params;
+    }
+
+    /**
+     * Start building the map once its size is known.
+     *
+     * @param width  width of the map, -1 if it has not been read
+     * @param height height of the map, -1 if it has not been read
+     * @return a builder for the map
+     */
+    private MapBuilder newBuilder(int width, int height) {
+        if (width < 0 || height < 0) throw new IllegalArgumentException("Map size must come before the tiles");
+        return world.builder(new Maze.Point(width, height));
+    }
+
+    /**
+     * Creates a Maze.Point using the attributes of the element the reader is on.
+     *
+     * @param reader reader positioned at the start of an element
+     * @return Maze.Point that stores the position of the element
+     */
+    private Maze.Point getPoint(XMLStreamReader reader) {
+        return Maze.Point.of(intFromAttribute(reader, "x"), intFromAttribute(reader, "y"));
+    }
+
+    /**
+     * Get an int value from an attribute of the element the reader is on.
+     *
+     * @param reader        reader positioned at the start of an element
+     * @param attributeName name of the attribute
+     * @return int value stored in the attribute
+     */
+    private int intFromAttribute(XMLStreamReader reader, String attributeName) {
+        return Integer.parseInt(reader.getAttributeValue(null, attributeName));
+    }
+}
@@ -1,5 +1,6 @@
 package nz.ac.vuw.ecs.swen225.gp22.recorder;
 
+import nz.ac.vuw.ecs.swen225.gp22.domain.Entity;
 import org.dom4j.DocumentHelper;
 import org.dom4j.Element;
 
@@ -7,7 +8,7 @@ import org.dom4j.Element;
  * The action class to update the game.
  *
  * @author Chris
- * @version 1.2
+ * @version 1.3
  * @param entityID The id of the entity.
  * @param actionType The type of action.
  * @param x The x coordinate of the action.
@@ -17,6 +18,19 @@ import org.dom4j.Element;
  * @param color      The color of the tile. Can be None.
  */
 public record Action(int entityID, String actionType, int x, int y, String prevDir, String currDir, String color) {
+    /**
+     * Creates a recorder action from a domain action.
+     *
+     * @param action the domain action
+     * @return the recorder action
+     */
+    public static Action of(Entity.Action action) {
+        return new Action(action.id(), action.interaction().type().toString(),
+            action.moveVector().x(), action.moveVector().y(),
+            action.oldDir().toString(), action.newDir().toString(),
+            action.interaction().color().toString());
+    }
+
     /**
      * Creates an XML element from the action.
      *
@@ -0,0 +1,738 @@
+package nz.ac.vuw.ecs.swen225.gp22.recorder;
+
+import nz.ac.vuw.ecs.swen225.gp22.domain.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Finds the shortest sequence of moves that wins a loaded level, and turns it into a recording.
+ * <p>
+ * The level is read once into a compact model, and a search state is the player's cell plus
+ * a bitset of the keys, treasures, doors and exit gates that have been used up. The held keys
+ * and the treasures left follow from that set. From each state a flood fill finds the shortest
+ * route to every item that can be reached without using anything up, and every one of them is
+ * a branch of the search. A shortest win is made of such routes, so an A* search over the
+ * states, by moves taken, finds one. The bound on the moves left treats every door and gate as
+ * open, so it never overestimates, and the first time the exit is reached it is by the fewest
+ * moves. States are kept in buckets with the same bound, and the flood fills of a bucket run in
+ * parallel on a fork-join pool, with the tasks sharing a concurrent set of the states already
+ * expanded so none is expanded twice. Ties are broken by the order states were found in, so the
+ * same level always gives the same moves however many threads search it.
+ * <p>
+ * Enemies are not modelled, as their positions depend on time rather than on the moves made,
+ * so a solution shows that the map can be won rather than that it can be won against the
+ * enemies. Third-party tiles are treated as walls or floor depending on their obstructiveness.
+ *
+ * @author agent
+ * @version 1.0
+ */
+public class LevelSolver {
+    /**
+     * Time between the moves in a recording made from a solution, in milliseconds.
+     */
+    public static final int MOVE_MS = 200;
+
+    /**
+     * The most states that will be visited before giving up.
+     */
+    public static final int MAX_STATES = 1_000_000;
+
+    /**
+     * Bucket size below which a bucket is not split any further.
+     */
+    private static final int SPLIT_THRESHOLD = 8;
+
+    /**
+     * Distance given to cells that cannot be reached.
+     */
+    private static final int UNREACHABLE = Integer.MAX_VALUE / 4;
+
+    /**
+     * Kinds of cell in the model.
+     */
+    private static final byte FLOOR = 0, WALL = 1, KEY = 2, TREASURE = 3, DOOR = 4, GATE = 5, EXIT = 6,
+            DEATH = 7, PAD = 8;
+
+    /**
+     * Directions in the order they are tried.
+     */
+    private static final Entity.Direction[] DIRECTIONS = Entity.Direction.values();
+
+    /**
+     * Change in position of a step in each direction.
+     */
+    private static final Maze.Point[] CHANGES = Arrays.stream(DIRECTIONS)
+            .map(dir -> Maze.Point.of(0, 0).add(dir)).toArray(Maze.Point[]::new);
+
+    /**
+     * A search state.
+     *
+     * @param cell The player's cell index.
+     * @param used The items that have been used up. Never modified once the state exists.
+     */
+    private record State(int cell, BitSet used) {
+        /**
+         * Mixes the cell into the hash of the used items, as states at many cells share the
+         * same used items and small sets of them have hashes close together.
+         */
+        @Override
+        public int hashCode() {
+            return Long.hashCode((((long) used.hashCode() << 32) | cell) * 0x9E3779B97F4A7C15L);
+        }
+    }
+
+    /**
+     * A route between two states that only uses something up on its last move.
+     *
+     * @param from   The state at the start.
+     * @param to     The state at the end.
+     * @param length The number of moves taken.
+     */
+    private record Leg(State from, State to, int length) {
+    }
+
+    /**
+     * The world the level is loaded in.
+     */
+    private final GameWorld world;
+
+    /**
+     * The pool buckets are expanded on.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Size of the map.
+     */
+    private final int width, height;
+
+    /**
+     * Kind of each cell.
+     */
+    private final byte[] kinds;
+
+    /**
+     * Item index of each key, treasure, door and gate cell, -1 for other cells.
+     */
+    private final int[] items;
+
+    /**
+     * Color of each item, and the direction of each pad cell, as ordinals.
+     */
+    private final int[] itemColors, padDirs;
+
+    /**
+     * Kind of each item.
+     */
+    private final byte[] itemKinds;
+
+    /**
+     * Keys of each color the player holds at the start.
+     */
+    private final int[] startKeys = new int[ColorableTile.Color.values().length];
+
+    /**
+     * Treasures left at the start.
+     */
+    private final int startTreasures;
+
+    /**
+     * The state the search starts from.
+     */
+    private final State start;
+
+    /**
+     * Item index of each treasure that must be collected before the exit can be reached.
+     * Empty if the exit can be reached without opening an exit gate.
+     */
+    private final int[] neededTreasures;
+
+    /**
+     * Fewest moves from each cell to each needed treasure, and to the nearest exit last,
+     * with every door and gate open.
+     */
+    private final int[][] distances;
+
+    /**
+     * Fewest moves between each pair of needed treasures and the exit, whichever way is
+     * shorter, with every door and gate open.
+     */
+    private final int[][] between;
+
+    /**
+     * Number of states visited by the last search.
+     */
+    private volatile int statesVisited = 0;
+
+    /**
+     * Create a solver for the level currently loaded in a world, using the common pool.
+     *
+     * @param world the world the level is loaded in
+     */
+    public LevelSolver(GameWorld world) {
+        this(world, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a solver for the level currently loaded in a world.
+     *
+     * @param world the world the level is loaded in
+     * @param pool  the pool to search on
+     */
+    public LevelSolver(GameWorld world, ForkJoinPool pool) {
+        if (world == null || world.getPlayer() == null) throw new IllegalArgumentException("Given world has no level.");
+        if (pool == null) throw new IllegalArgumentException("Given pool is null.");
+        this.world = world;
+        this.pool = pool;
+        width = world.getDimensions().x();
+        height = world.getDimensions().y();
+        kinds = new byte[width * height];
+        items = new int[width * height];
+        padDirs = new int[width * height];
+
+        List<Integer> colors = new ArrayList<>();
+        List<Byte> itemKindList = new ArrayList<>();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int cell = y * width + x;
+                byte kind = kindOf(x, y);
+                kinds[cell] = kind;
+                items[cell] = -1;
+                if (kind == KEY || kind == TREASURE || kind == DOOR || kind == GATE) {
+                    items[cell] = itemKindList.size();
+                    itemKindList.add(kind);
+                    Tile tile = world.getTile(x, y);
+                    colors.add(tile instanceof ColorableTile c ? c.getColor().ordinal() : 0);
+                } else if (kind == PAD) {
+                    padDirs[cell] = ((BouncyPad) world.getTile(x, y)).getDir().ordinal();
+                }
+            }
+        }
+        itemColors = colors.stream().mapToInt(Integer::intValue).toArray();
+        itemKinds = new byte[itemKindList.size()];
+        for (int i = 0; i < itemKinds.length; i++) itemKinds[i] = itemKindList.get(i);
+        world.getPlayer().getAllKeys().forEach(c -> startKeys[c.ordinal()]++);
+        startTreasures = world.getTreasuresLeft();
+        Maze.Point pos = world.getPlayer().getPos();
+        start = new State(pos.y() * width + pos.x(), new BitSet());
+
+        List<Integer> exits = new ArrayList<>();
+        List<Integer> treasures = new ArrayList<>();
+        for (int cell = 0; cell < kinds.length; cell++) {
+            if (kinds[cell] == EXIT) exits.add(cell);
+            if (kinds[cell] == TREASURE) treasures.add(cell);
+        }
+        // treasures only have to be collected if every one is needed to open a gate in the way
+        if (treasures.size() > startTreasures || reachesExit(start.cell())) treasures.clear();
+        neededTreasures = treasures.stream().mapToInt(cell -> items[cell]).toArray();
+        int[][] predecessors = predecessors();
+        distances = new int[treasures.size() + 1][];
+        for (int t = 0; t < treasures.size(); t++) distances[t] = distancesTo(List.of(treasures.get(t)), predecessors);
+        distances[treasures.size()] = distancesTo(exits, predecessors);
+        // an exit counts as being at whichever exit cell is nearest
+        between = new int[distances.length][distances.length];
+        for (int[] row : between) Arrays.fill(row, UNREACHABLE);
+        for (int a = 0; a < distances.length; a++) {
+            for (int cell : a < treasures.size() ? List.of(treasures.get(a)) : exits) {
+                for (int b = 0; b < distances.length; b++) {
+                    between[a][b] = Math.min(between[a][b], distances[b][cell]);
+                }
+            }
+        }
+        for (int a = 0; a < distances.length; a++) {
+            for (int b = 0; b < a; b++) between[a][b] = between[b][a] = Math.min(between[a][b], between[b][a]);
+        }
+    }
+
+    /**
+     * Reads the kind of a cell from the world.
+     *
+     * @param x x position
+     * @param y y position
+     * @return the kind of the cell
+     */
+    private byte kindOf(int x, int y) {
+        if (world.isTile(x, y, Wall.class)) return WALL;
+        if (world.isTile(x, y, Key.class)) return KEY;
+        if (world.isTile(x, y, Treasure.class)) return TREASURE;
+        if (world.isTile(x, y, LockedDoor.class)) return DOOR;
+        if (world.isTile(x, y, LockedExit.class)) return GATE;
+        if (world.isTile(x, y, Exit.class)) return EXIT;
+        if (world.isTile(x, y, MilkPuddle.class)) return DEATH;
+        if (world.isTile(x, y, BouncyPad.class)) return PAD;
+        if (world.isTile(x, y, Ground.class) || world.isTile(x, y, InfoField.class)) return FLOOR;
+        return world.isObstructive(x, y) ? WALL : FLOOR;
+    }
+
+    /**
+     * Find the shortest sequence of moves that reaches the exit.
+     *
+     * @return the moves, or empty if the level cannot be won or the search gave up
+     */
+    public Optional<List<Entity.Direction>> solve() {
+        Set<State> settled = ConcurrentHashMap.newKeySet();
+        Map<State, Integer> costs = new HashMap<>();
+        Map<State, Leg> steps = new HashMap<>();
+        TreeMap<Long, List<State>> open = new TreeMap<>();
+        int bound = estimate(start);
+        if (bound >= UNREACHABLE) return Optional.empty();
+        costs.put(start, 0);
+        open.put(order(0, bound), new ArrayList<>(List.of(start)));
+
+        while (!open.isEmpty() && settled.size() < MAX_STATES) {
+            List<State> frontier = open.pollFirstEntry().getValue();
+            for (State state : frontier) {
+                if (kinds[state.cell()] != EXIT) continue;
+                statesVisited = settled.size();
+                return Optional.of(path(state, steps));
+            }
+            List<List<Leg>> expanded = new ArrayList<>(Collections.nCopies(frontier.size(), null));
+            pool.invoke(new Expand(frontier, 0, frontier.size(), settled, expanded));
+
+            for (int i = 0; i < frontier.size(); i++) {
+                int cost = costs.get(frontier.get(i));
+                for (Leg leg : expanded.get(i)) {
+                    State to = leg.to();
+                    int toCost = cost + leg.length();
+                    Integer known = costs.get(to);
+                    if (settled.contains(to) || (known != null && known <= toCost)) continue;
+                    int toBound = estimate(to);
+                    if (toBound >= UNREACHABLE) continue;
+                    // a state reached again more cheaply is left in its old bucket, and skipped there
+                    costs.put(to, toCost);
+                    steps.put(to, leg);
+                    open.computeIfAbsent(order(toCost, toBound), b -> new ArrayList<>()).add(to);
+                }
+            }
+        }
+        statesVisited = settled.size();
+        return Optional.empty();
+    }
+
+    /**
+     * Order states are expanded in. States with the lowest bound on the length of a solution
+     * through them come first, and of those the ones furthest from the start, which are
+     * usually the nearest to the exit.
+     *
+     * @param cost  the moves taken to reach a state
+     * @param bound the lower bound on the moves left from it
+     * @return the key of the bucket the state goes in
+     */
+    private static long order(int cost, int bound) {
+        return ((long) (cost + bound) << 32) - cost;
+    }
+
+    /**
+     * Work out where a move takes the player if every door and gate were open, or if only the
+     * gates were shut.
+     *
+     * @param cell  the player's cell
+     * @param dir   index of the direction
+     * @param gates whether exit gates block the move
+     * @return the cell moved to, or -1 if the move is blocked or kills the player
+     */
+    private int relaxedMove(int cell, int dir, boolean gates) {
+        int next = land(cell, dir);
+        return gates && next >= 0 && kinds[next] == GATE ? -1 : next;
+    }
+
+    /**
+     * @param from the cell to start from
+     * @return whether an exit can be reached from the cell without going through an exit gate,
+     * with every door open
+     */
+    private boolean reachesExit(int from) {
+        boolean[] seen = new boolean[kinds.length];
+        ArrayDeque<Integer> queue = new ArrayDeque<>(List.of(from));
+        seen[from] = true;
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+            if (kinds[cell] == EXIT) return true;
+            for (int dir = 0; dir < DIRECTIONS.length; dir++) {
+                int next = relaxedMove(cell, dir, true);
+                if (next >= 0 && !seen[next]) {
+                    seen[next] = true;
+                    queue.add(next);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * List the cells that each cell can be moved to from, with every door and gate open.
+     *
+     * @return the cells each cell can be moved to from, by cell index
+     */
+    private int[][] predecessors() {
+        int[] counts = new int[kinds.length];
+        for (int cell = 0; cell < kinds.length; cell++) {
+            for (int dir = 0; dir < DIRECTIONS.length; dir++) {
+                int next = relaxedMove(cell, dir, false);
+                if (next >= 0) counts[next]++;
+            }
+        }
+        int[][] predecessors = new int[kinds.length][];
+        for (int cell = 0; cell < kinds.length; cell++) predecessors[cell] = new int[counts[cell]];
+        for (int cell = 0; cell < kinds.length; cell++) {
+            for (int dir = 0; dir < DIRECTIONS.length; dir++) {
+                int next = relaxedMove(cell, dir, false);
+                if (next >= 0) predecessors[next][--counts[next]] = cell;
+            }
+        }
+        return predecessors;
+    }
+
+    /**
+     * Find the fewest moves from every cell to the nearest of some cells, with every door
+     * and gate open, by searching back from them.
+     *
+     * @param targets      the cells to reach
+     * @param predecessors the cells each cell can be moved to from
+     * @return the fewest moves from each cell, or UNREACHABLE
+     */
+    private int[] distancesTo(List<Integer> targets, int[][] predecessors) {
+        int[] distance = new int[kinds.length];
+        Arrays.fill(distance, UNREACHABLE);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int target : targets) {
+            distance[target] = 0;
+            queue.add(target);
+        }
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+            for (int previous : predecessors[cell]) {
+                if (distance[previous] != UNREACHABLE) continue;
+                distance[previous] = distance[cell] + 1;
+                queue.add(previous);
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * A lower bound on the moves left to win from a state. The player has to reach one of the
+     * treasures still needed or the exit first, and then join up the rest, so the bound is the
+     * distance to the nearest of them plus the weight of a minimum spanning tree over them,
+     * with every door and gate open. Moving to any cell never lowers the bound by more than the
+     * moves it takes, so the first time a state is expanded it has been reached by the fewest
+     * moves.
+     *
+     * @param state the state to estimate from
+     * @return the bound, or UNREACHABLE if the level cannot be won from the state
+     */
+    private int estimate(State state) {
+        int exit = neededTreasures.length;
+        boolean[] left = new boolean[exit + 1];
+        left[exit] = true;
+        int nearest = distances[exit][state.cell()];
+        for (int t = 0; t < exit; t++) {
+            if (state.used().get(neededTreasures[t])) continue;
+            left[t] = true;
+            nearest = Math.min(nearest, distances[t][state.cell()]);
+        }
+        if (nearest >= UNREACHABLE) return UNREACHABLE;
+
+        // Prim's algorithm, growing the tree out from the exit
+        int[] link = between[exit].clone();
+        left[exit] = false;
+        int total = nearest;
+        while (true) {
+            int closest = -1;
+            for (int t = 0; t < exit; t++) {
+                if (left[t] && (closest < 0 || link[t] < link[closest])) closest = t;
+            }
+            if (closest < 0) return total;
+            if (link[closest] >= UNREACHABLE) return UNREACHABLE;
+            total += link[closest];
+            left[closest] = false;
+            for (int t = 0; t < exit; t++) link[t] = Math.min(link[t], between[closest][t]);
+        }
+    }
+
+    /**
+     * Solve the level and record the solution.
+     *
+     * @param level the level number to put in the recording
+     * @return the recording, or empty if the level cannot be won
+     */
+    public Optional<Recorder> solveRecording(int level) {
+        return solve().map(moves -> record(level, moves));
+    }
+
+    /**
+     * Record a sequence of moves by playing them in the world, which is put back afterwards.
+     *
+     * @param level the level number to put in the recording
+     * @param moves the moves to play
+     * @return the recording
+     */
+    public Recorder record(int level, List<Entity.Direction> moves) {
+        if (moves == null) throw new IllegalArgumentException("Given moves are null.");
+        GameWorld.Snapshot snapshot = world.snapshot();
+        Recorder recorder = new Recorder(level, 0);
+        try {
+            world.run(() -> {
+                world.getChangeMap();
+                for (int i = 0; i < moves.size(); i++) {
+                    world.getPlayer().moveAndTurn(moves.get(i));
+                    int time = (i + 1) * MOVE_MS;
+                    world.getChangeMap().forEach(a -> recorder.addAction(Action.of(a), time));
+                }
+                if (!world.gameWon()) throw new IllegalArgumentException("Moves do not win the level.");
+            });
+        } finally {
+            world.restore(snapshot);
+        }
+        return recorder;
+    }
+
+    /**
+     * @return the number of states visited by the last search
+     */
+    public int getStatesVisited() {
+        return statesVisited;
+    }
+
+    /**
+     * Follow the legs back from a state to the start.
+     *
+     * @param end   the state to finish at
+     * @param steps the leg each state was first reached by
+     * @return the moves from the start to the state
+     */
+    private List<Entity.Direction> path(State end, Map<State, Leg> steps) {
+        List<Leg> legs = new ArrayList<>();
+        for (State state = end; !state.equals(start); state = steps.get(state).from()) legs.add(steps.get(state));
+        Collections.reverse(legs);
+        List<Entity.Direction> moves = new ArrayList<>();
+        legs.forEach(leg -> moves.addAll(flood(leg.from(), leg.to(), null)));
+        return moves;
+    }
+
+    /**
+     * Flood fill from a state without using anything up, finding the shortest route to
+     * each cell where something would be used up, and to the exit.
+     *
+     * @param from the state to start from
+     * @return the legs to the cells found, nearest first
+     */
+    private List<Leg> reachable(State from) {
+        List<Leg> legs = new ArrayList<>();
+        flood(from, null, legs);
+        return legs;
+    }
+
+    /**
+     * Flood fill from a state without using anything up, either collecting the legs to each
+     * cell where something would be used up and to the exit, or stopping at one state. Only
+     * the moves to that state are worked out, as most legs found are never followed.
+     *
+     * @param from   the state to start from
+     * @param target the state to stop at, or null to fill as far as possible
+     * @param legs   where to put the legs found, nearest first, or null
+     * @return the moves to the target, or null if there is no target or it was not found
+     */
+    private List<Entity.Direction> flood(State from, State target, List<Leg> legs) {
+        BitSet used = from.used();
+        int[] held = heldKeys(used);
+        boolean collected = treasuresLeft(used) == 0;
+        int[] previous = new int[kinds.length];
+        int[] distance = new int[kinds.length];
+        byte[] moved = new byte[kinds.length];
+        boolean[] targeted = new boolean[kinds.length];
+        Arrays.fill(previous, -1);
+        previous[from.cell()] = from.cell();
+
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(from.cell());
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+            for (int dir = 0; dir < DIRECTIONS.length; dir++) {
+                int next = land(cell, dir);
+                if (next < 0) continue;
+                int item = items[next];
+                boolean uses = item >= 0 && !used.get(item);
+                if (uses || kinds[next] == EXIT) {
+                    if (targeted[next] || (uses && !canUse(item, held, collected))) continue;
+                    targeted[next] = true;
+                    if (target != null && target.cell() == next) {
+                        List<Entity.Direction> moves = route(from.cell(), cell, previous, moved);
+                        moves.add(DIRECTIONS[dir]);
+                        return moves;
+                    }
+                    if (legs != null) {
+                        legs.add(new Leg(from, new State(next, uses ? with(used, item) : used), distance[cell] + 1));
+                    }
+                } else if (previous[next] < 0) {
+                    previous[next] = cell;
+                    distance[next] = distance[cell] + 1;
+                    moved[next] = (byte) dir;
+                    queue.add(next);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Follow a flood fill back from a cell to where it started.
+     *
+     * @param start    the cell the fill started at
+     * @param end      the cell to finish at
+     * @param previous the cell each cell was reached from
+     * @param moved    the direction each cell was reached by
+     * @return the moves from the start to the cell
+     */
+    private static List<Entity.Direction> route(int start, int end, int[] previous, byte[] moved) {
+        List<Entity.Direction> moves = new ArrayList<>();
+        for (int cell = end; cell != start; cell = previous[cell]) moves.add(DIRECTIONS[moved[cell]]);
+        Collections.reverse(moves);
+        return moves;
+    }
+
+    /**
+     * Work out which cell moving in a direction lands the player on. A bounce pad moves the
+     * player two cells on, and the cell they land on is entered in turn, as it is in the game.
+     * Whether the cell can be entered with the keys and treasures held is not checked.
+     *
+     * @param cell the player's cell
+     * @param dir  index of the direction
+     * @return the cell landed on, or -1 if it is a wall, kills the player or is off the map
+     */
+    private int land(int cell, int dir) {
+        int x = cell % width + CHANGES[dir].x(), y = cell / width + CHANGES[dir].y();
+        // stop pads that bounce in a loop
+        for (int depth = 0; inside(x, y) && depth <= kinds.length; depth++) {
+            int next = y * width + x;
+            switch (kinds[next]) {
+                case WALL, DEATH -> {
+                    return -1;
+                }
+                case PAD -> {
+                    x += 2 * CHANGES[padDirs[next]].x();
+                    y += 2 * CHANGES[padDirs[next]].y();
+                }
+                default -> {
+                    return next;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param item      an item that has not been used up
+     * @param held      the keys of each color the player holds
+     * @param collected whether every treasure has been collected
+     * @return whether the player can use the item, so can enter its cell
+     */
+    private boolean canUse(int item, int[] held, boolean collected) {
+        return switch (itemKinds[item]) {
+            case DOOR -> held[itemColors[item]] > 0;
+            case GATE -> collected;
+            default -> true;
+        };
+    }
+
+    /**
+     * @param x x position
+     * @param y y position
+     * @return whether the position is on the map
+     */
+    private boolean inside(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    /**
+     * @param used the items used up
+     * @param item an item to add
+     * @return a copy of the used items with the item added
+     */
+    private static BitSet with(BitSet used, int item) {
+        BitSet copy = (BitSet) used.clone();
+        copy.set(item);
+        return copy;
+    }
+
+    /**
+     * @param used the items used up
+     * @return the number of keys of each color the player holds, by color ordinal
+     */
+    private int[] heldKeys(BitSet used) {
+        int[] held = startKeys.clone();
+        for (int item = used.nextSetBit(0); item >= 0; item = used.nextSetBit(item + 1)) {
+            if (itemKinds[item] == KEY) held[itemColors[item]]++;
+            else if (itemKinds[item] == DOOR) held[itemColors[item]]--;
+        }
+        return held;
+    }
+
+    /**
+     * @param used the items used up
+     * @return the number of treasures left to collect
+     */
+    private int treasuresLeft(BitSet used) {
+        int left = startTreasures;
+        for (int item = used.nextSetBit(0); item >= 0; item = used.nextSetBit(item + 1)) {
+            if (itemKinds[item] == TREASURE) left--;
+        }
+        return left;
+    }
+
+    /**
+     * Expands part of a bucket, splitting it in half until it is small enough.
+     */
+    private class Expand extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<State> frontier;
+        private final int from, to;
+        private final Set<State> settled;
+        private final List<List<Leg>> expanded;
+
+        /**
+         * Create a task for part of a bucket.
+         *
+         * @param frontier the states in the bucket
+         * @param from     the first index to expand
+         * @param to       the index after the last one to expand
+         * @param settled  the states expanded so far, shared by every task
+         * @param expanded where to put the legs out of each state, with a slot for each state
+         */
+        Expand(List<State> frontier, int from, int to, Set<State> settled, List<List<Leg>> expanded) {
+            this.frontier = frontier;
+            this.from = from;
+            this.to = to;
+            this.settled = settled;
+            this.expanded = expanded;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SPLIT_THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Expand(frontier, from, mid, settled, expanded),
+                        new Expand(frontier, mid, to, settled, expanded));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                State state = frontier.get(i);
+                expanded.set(i, settled.add(state) ? reachable(state) : List.of());
+            }
+        }
+    }
+}
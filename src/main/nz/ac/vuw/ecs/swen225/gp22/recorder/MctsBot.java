@@ -0,0 +1,542 @@
+package nz.ac.vuw.ecs.swen225.gp22.recorder;
+
+import nz.ac.vuw.ecs.swen225.gp22.domain.*;
+import nz.ac.vuw.ecs.swen225.gp22.persistency.Load;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Plays a level to the end with Monte Carlo tree search, and records the game.
+ * <p>
+ * Before each move, every worker searches from the current state in its own copy of the
+ * level. An iteration restores the worker's {@link Simulation} to the start of the move,
+ * walks down the worker's tree by the UCB1 rule, adds one move to it, then plays a few
+ * more moves and scores where it ends up. Half of those moves head for the nearest thing
+ * the player can use, and the rest are random but keep out of milk puddles where they
+ * can. The workers run on a fork-join
+ * pool, and their trees are merged at the root, so the move made is the one tried most
+ * by all of them. Every worker then makes the move, and the first worker's game is the
+ * one recorded.
+ * <p>
+ * A game is scored 1 when won and 0 when lost. Otherwise the score grows with the keys,
+ * treasures, doors and gates used up since the start of the move, and with how much
+ * closer the player is to the nearest thing they can use next. That is found by a breadth first
+ * search that follows the player's rules, going over bounce pads and around milk puddles,
+ * where the world's {@link PathService}, which is made for enemies, walks onto both.
+ * <p>
+ * Each worker loads the level into a world of its own, so the game in the app is never
+ * touched. Enemies from a level's jar only work in the default world, so the workers'
+ * worlds are given the domain's enemies in their place, as {@link Load} does for any
+ * world other than the default one.
+ *
+ * @author agent
+ * @version 1.0
+ */
+public class MctsBot {
+    /**
+     * Rollouts made before each move unless another number is given.
+     */
+    public static final int DEFAULT_ROLLOUTS = 2000;
+
+    /**
+     * Moves played after leaving the tree.
+     */
+    public static final int ROLLOUT_DEPTH = 8;
+
+    /**
+     * Ticks the game runs for after each move.
+     */
+    public static final int TICKS_PER_MOVE = LevelSolver.MOVE_MS / Simulation.TICK_MS;
+
+    /**
+     * How much the search favours moves it has tried less.
+     */
+    private static final double EXPLORATION = 0.7;
+
+    /**
+     * Cached values of the direction enum, indexed by move.
+     */
+    private static final Entity.Direction[] DIRECTIONS = Entity.Direction.values();
+
+    /**
+     * A state in a search tree, reached by a sequence of moves from the root.
+     */
+    private static final class Node {
+        /**
+         * The state reached by each move from this one, null until tried.
+         */
+        final Node[] children = new Node[DIRECTIONS.length];
+
+        /**
+         * Number of iterations that passed through this state.
+         */
+        int visits = 0;
+
+        /**
+         * Total score of those iterations.
+         */
+        double value = 0;
+
+        /**
+         * Whether or not the game is over in this state.
+         */
+        boolean terminal = false;
+    }
+
+    /**
+     * A copy of the game that searches on its own thread.
+     */
+    private final class Worker {
+        /**
+         * The worker's copy of the game.
+         */
+        final GameWorld world;
+
+        /**
+         * Runs the worker's copy of the game.
+         */
+        final Simulation simulation;
+
+        /**
+         * Chooses moves for rollouts.
+         */
+        final SplittableRandom random;
+
+        /**
+         * Width of the map, and the cell each cell's bounce pad lands the player on, -1 if it has none.
+         */
+        final int width;
+        final int[] bounces;
+
+        /**
+         * Cells to visit in the search for the nearest target, the distance to each,
+         * and the move the player makes first to get to each.
+         */
+        final int[] queue, distances, firstMoves;
+
+        /**
+         * The move the player makes first to get to the nearest target in the last search, -1 if there is none.
+         */
+        int nearestMove = -1;
+
+        /**
+         * The search each cell was last reached by, so that the arrays need not be cleared.
+         */
+        final int[] reached;
+        int search = 0;
+
+        /**
+         * Subscriptions counting the things used up.
+         */
+        final List<EventBus.Subscription> subscriptions = new ArrayList<>();
+
+        /**
+         * Nodes the current iteration passed through, reused between iterations.
+         */
+        final List<Node> path = new ArrayList<>();
+
+        /**
+         * Things used up since the start of the current iteration.
+         */
+        int progress = 0;
+
+        /**
+         * The state at the start of the move being searched for.
+         */
+        Simulation.Snapshot root;
+
+        /**
+         * The tree built for the move being searched for.
+         */
+        Node tree;
+
+        /**
+         * Steps from the start of the move to the nearest thing the player can use.
+         */
+        int rootNearest;
+
+        /**
+         * Creates a worker for a world with the level loaded.
+         *
+         * @param world     the world
+         * @param timeLimit time the level can be played for, in milliseconds
+         * @param seed      seed for the rollouts
+         */
+        Worker(GameWorld world, int timeLimit, long seed) {
+            this.world = world;
+            this.simulation = new Simulation(world, timeLimit);
+            this.random = new SplittableRandom(seed);
+            EventBus events = world.getEvents();
+            subscriptions.add(events.subscribe(GameEvent.KeyCollected.class, e -> progress++));
+            subscriptions.add(events.subscribe(GameEvent.TreasureCollected.class, e -> progress++));
+            subscriptions.add(events.subscribe(GameEvent.DoorUnlocked.class, e -> progress++));
+            subscriptions.add(events.subscribe(GameEvent.ExitUnlocked.class, e -> progress++));
+            width = world.getDimensions().x();
+            int cells = width * world.getDimensions().y();
+            bounces = new int[cells];
+            queue = new int[cells];
+            distances = new int[cells];
+            firstMoves = new int[cells];
+            reached = new int[cells];
+            for (int cell = 0; cell < cells; cell++) {
+                bounces[cell] = -1;
+                if (world.getTile(cell % width, cell / width) instanceof BouncyPad pad) {
+                    Maze.Point landing = Maze.Point.of(cell % width, cell / width).add(pad.getDir()).add(pad.getDir());
+                    if (world.contains(landing)) bounces[cell] = landing.y() * width + landing.x();
+                }
+            }
+        }
+
+        /**
+         * Builds a new tree from the current state, then goes back to it.
+         *
+         * @param iterations the number of iterations to run
+         */
+        void search(int iterations) {
+            root = simulation.snapshot();
+            rootNearest = nearestTarget();
+            tree = new Node();
+            try {
+                for (int i = 0; i < iterations; i++) iterate();
+            } finally {
+                simulation.restore(root);
+            }
+            rollouts.add(iterations);
+        }
+
+        /**
+         * Runs one iteration: selects down the tree, adds a node, plays it out, and scores it.
+         */
+        void iterate() {
+            simulation.restore(root);
+            progress = 0;
+            path.clear();
+            Node node = tree;
+            path.add(node);
+            while (!node.terminal) {
+                int move = untried(node);
+                if (move >= 0) {
+                    Node child = new Node();
+                    node.children[move] = child;
+                    apply(move);
+                    child.terminal = simulation.isOver();
+                    path.add(child);
+                    break;
+                }
+                move = best(node);
+                apply(move);
+                node = node.children[move];
+                path.add(node);
+            }
+            for (int depth = 0; depth < ROLLOUT_DEPTH && !simulation.isOver(); depth++) apply(rolloutMove());
+            double score = score();
+            for (Node visited : path) {
+                visited.visits++;
+                visited.value += score;
+            }
+        }
+
+        /**
+         * Purely random rollouts rarely get far enough to use anything, so half of the
+         * moves head for the nearest thing the player can use.
+         *
+         * @return the next move of a rollout
+         */
+        int rolloutMove() {
+            if (random.nextBoolean() && nearestTarget() != PathService.UNREACHABLE) return nearestMove;
+            return safeMove();
+        }
+
+        /**
+         * Rollouts that walk into milk puddles would make every move near one look bad,
+         * so they only do so when there is no other move.
+         *
+         * @return a random move that does not walk into a milk puddle, if there is one
+         */
+        int safeMove() {
+            int first = random.nextInt(DIRECTIONS.length);
+            Maze.Point pos = world.getPlayer().getPos();
+            for (int i = 0; i < DIRECTIONS.length; i++) {
+                int move = (first + i) % DIRECTIONS.length;
+                Maze.Point next = pos.add(DIRECTIONS[move]);
+                if (!world.contains(next) || !world.isTile(next, MilkPuddle.class)) return move;
+            }
+            return first;
+        }
+
+        /**
+         * @param node a node
+         * @return a random move not yet tried from the node, or -1 if all have been
+         */
+        int untried(Node node) {
+            int count = 0;
+            for (Node child : node.children) if (child == null) count++;
+            if (count == 0) return -1;
+            int pick = random.nextInt(count);
+            for (int move = 0; move < node.children.length; move++) {
+                if (node.children[move] == null && pick-- == 0) return move;
+            }
+            throw new IllegalStateException("No untried move found.");
+        }
+
+        /**
+         * @param node a node whose moves have all been tried
+         * @return the move with the highest UCB1 score
+         */
+        int best(Node node) {
+            double logVisits = Math.log(node.visits);
+            int best = 0;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int move = 0; move < node.children.length; move++) {
+                Node child = node.children[move];
+                double ucb = child.value / child.visits + EXPLORATION * Math.sqrt(logVisits / child.visits);
+                if (ucb > bestScore) {
+                    bestScore = ucb;
+                    best = move;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Makes a move, then runs the game for the time a move takes.
+         *
+         * @param move the move
+         */
+        void apply(int move) {
+            simulation.movePlayer(DIRECTIONS[move]);
+            simulation.step(TICKS_PER_MOVE);
+        }
+
+        /**
+         * @return the score of the current state, from 0 to 1
+         */
+        double score() {
+            if (simulation.isWon()) return 1;
+            if (simulation.isLost()) return 0;
+            int nearest = nearestTarget();
+            double closeness = nearest == PathService.UNREACHABLE ? 0
+                    : Math.max(0, Math.min(1, 0.5 + (rootNearest - nearest) / (2.0 * ROLLOUT_DEPTH)));
+            return 0.1 + 0.6 * progress / (progress + 1.0) + 0.2 * closeness;
+        }
+
+        /**
+         * @return the number of steps to the nearest thing the player can use, or UNREACHABLE
+         */
+        int nearestTarget() {
+            search++;
+            nearestMove = -1;
+            Maze.Point start = world.getPlayer().getPos();
+            int head = 0, tail = 0;
+            queue[tail++] = start.y() * width + start.x();
+            distances[queue[0]] = 0;
+            reached[queue[0]] = search;
+            while (head < tail) {
+                int cell = queue[head++];
+                for (Entity.Direction dir : DIRECTIONS) {
+                    int move = head == 1 ? dir.ordinal() : firstMoves[cell];
+                    Maze.Point step = Maze.Point.of(cell % width, cell / width).add(dir);
+                    int x = step.x(), y = step.y();
+                    if (!world.contains(x, y) || world.isObstructive(x, y) || world.isTile(x, y, MilkPuddle.class)) continue;
+                    int next = y * width + x;
+                    if (isTarget(x, y)) return found(move, distances[cell] + 1);
+                    if (bounces[next] >= 0) {
+                        next = bounces[next];
+                        x = next % width;
+                        y = next / width;
+                        if (world.isObstructive(x, y) || world.isTile(x, y, MilkPuddle.class)) continue;
+                        if (isTarget(x, y)) return found(move, distances[cell] + 1);
+                    }
+                    if (reached[next] == search) continue;
+                    reached[next] = search;
+                    distances[next] = distances[cell] + 1;
+                    firstMoves[next] = move;
+                    queue[tail++] = next;
+                }
+            }
+            return PathService.UNREACHABLE;
+        }
+
+        /**
+         * @param move     the move the player makes first to get to the target found
+         * @param distance the number of steps to it
+         * @return the distance
+         */
+        int found(int move, int distance) {
+            nearestMove = move;
+            return distance;
+        }
+
+        /**
+         * Doors and gates only count once they can be passed, which is when they stop being obstructive.
+         *
+         * @param x x position of a cell the player can enter
+         * @param y y position of the cell
+         * @return whether or not the player can use something on the cell
+         */
+        boolean isTarget(int x, int y) {
+            return world.isTile(x, y, Key.class) || world.isTile(x, y, Treasure.class) || world.isTile(x, y, LockedDoor.class)
+                    || world.isTile(x, y, LockedExit.class) || world.isTile(x, y, Exit.class);
+        }
+    }
+
+    /**
+     * The level being played.
+     */
+    private final int level;
+
+    /**
+     * Rollouts made before each move, shared between the workers.
+     */
+    private final int rolloutsPerMove;
+
+    /**
+     * The pool the workers search on.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The workers. The first one's game is the one recorded.
+     */
+    private final List<Worker> workers = new ArrayList<>();
+
+    /**
+     * The moves made so far.
+     */
+    private final List<Entity.Direction> moves = new ArrayList<>();
+
+    /**
+     * Rollouts made by all workers.
+     */
+    private final LongAdder rollouts = new LongAdder();
+
+    /**
+     * Time spent searching, in nanoseconds.
+     */
+    private long searchNanos = 0;
+
+    /**
+     * Create a bot for a level that makes the default number of rollouts on the common pool.
+     *
+     * @param level the level to play
+     */
+    public MctsBot(int level) {
+        this(level, DEFAULT_ROLLOUTS, ForkJoinPool.commonPool(), 0);
+    }
+
+    /**
+     * Create a bot for a level, loading a copy of it for each thread of the pool.
+     *
+     * @param level           the level to play
+     * @param rolloutsPerMove the rollouts to make before each move
+     * @param pool            the pool to search on
+     * @param seed            seed for the rollouts, so that games can be repeated
+     */
+    public MctsBot(int level, int rolloutsPerMove, ForkJoinPool pool, long seed) {
+        if (rolloutsPerMove <= 0) throw new IllegalArgumentException("Number of rollouts must be positive.");
+        if (pool == null) throw new IllegalArgumentException("Given pool is null.");
+        this.level = level;
+        this.rolloutsPerMove = rolloutsPerMove;
+        this.pool = pool;
+        for (int i = 0; i < pool.getParallelism(); i++) {
+            GameWorld world = new GameWorld();
+            Load.LevelStart start = Load.loadLevel(level, world);
+            workers.add(new Worker(world, start.time() * 1000, seed + i));
+        }
+    }
+
+    /**
+     * Play the level until it is won or lost.
+     *
+     * @return the recording of the game, or empty if it was lost
+     */
+    public Optional<Recorder> play() {
+        Worker main = workers.get(0);
+        Recorder recorder = new Recorder(level, 0);
+        try {
+            while (!main.simulation.isOver()) {
+                int move = search();
+                moves.add(DIRECTIONS[move]);
+                for (Worker worker : workers) {
+                    if (worker == main) continue;
+                    worker.apply(move);
+                }
+                main.simulation.movePlayer(DIRECTIONS[move]);
+                for (int tick = 0; tick < TICKS_PER_MOVE && main.simulation.step(); tick++) {
+                    int time = main.simulation.getTime();
+                    main.simulation.getLastActions().forEach(a -> recorder.addAction(Action.of(a), time));
+                }
+            }
+        } finally {
+            workers.forEach(w -> w.subscriptions.forEach(EventBus.Subscription::cancel));
+        }
+        return main.simulation.isWon() ? Optional.of(recorder) : Optional.empty();
+    }
+
+    /**
+     * @return the moves made so far
+     */
+    public List<Entity.Direction> getMoves() {
+        return Collections.unmodifiableList(moves);
+    }
+
+    /**
+     * @return the world of the game being recorded
+     */
+    public GameWorld getWorld() {
+        return workers.get(0).world;
+    }
+
+    /**
+     * @return the number of rollouts made so far
+     */
+    public long getRollouts() {
+        return rollouts.sum();
+    }
+
+    /**
+     * @return the number of rollouts made per second of searching
+     */
+    public double getRolloutsPerSecond() {
+        return searchNanos == 0 ? 0 : rollouts.sum() / (searchNanos / 1e9);
+    }
+
+    /**
+     * Search from the current state with every worker, and merge their trees.
+     *
+     * @return the move tried most
+     */
+    private int search() {
+        int share = (rolloutsPerMove + workers.size() - 1) / workers.size();
+        long start = System.nanoTime();
+        pool.invoke(ForkJoinTask.adapt(() -> workers.parallelStream().forEach(w -> w.search(share))));
+        searchNanos += System.nanoTime() - start;
+
+        int best = 0;
+        long bestVisits = -1;
+        double bestValue = 0;
+        for (int move = 0; move < DIRECTIONS.length; move++) {
+            long visits = 0;
+            double value = 0;
+            for (Worker worker : workers) {
+                Node child = worker.tree.children[move];
+                if (child == null) continue;
+                visits += child.visits;
+                value += child.value;
+            }
+            if (visits > bestVisits || (visits == bestVisits && value > bestValue)) {
+                best = move;
+                bestVisits = visits;
+                bestValue = value;
+            }
+        }
+        return best;
+    }
+}
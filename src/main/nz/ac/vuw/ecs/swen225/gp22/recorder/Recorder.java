@@ -1,10 +1,12 @@
 package nz.ac.vuw.ecs.swen225.gp22.recorder;
 
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.dom4j.Document;
@@ -17,7 +19,7 @@ import org.dom4j.io.XMLWriter;
  * The recorder for the game. Used to record actions.
  *
  * @author Chris
- * @version 1.3
+ * @version 1.4
  */
 public class Recorder {
     private final int level;
@@ -51,17 +53,34 @@ public class Recorder {
         prevState.addAction(action);
     }
 
+    /**
+     * Get the recorded game states.
+     *
+     * @return an unmodifiable view of the game states
+     */
+    public List<GameState> getStates() {
+        return Collections.unmodifiableList(gameStates);
+    }
+
     /**
      * Save the recorded actions to a xml file.
      */
     public void save() {
+        save(new File(System.getProperty("user.dir") + "/resources/recordings/"
+            + LocalDateTime.now().toString().replace(":", "-") + ".chaps.xml"));
+    }
+
+    /**
+     * Save the recorded actions to a given xml file.
+     *
+     * @param file the file to save to
+     */
+    public void save(File file) {
         Document doc = DocumentHelper.createDocument();
         Element root = doc.addElement("game").addAttribute("level", String.valueOf(level));
         gameStates.forEach(state -> root.add(state.toxml()));
 
-        String filename = System.getProperty("user.dir") + "/resources/recordings/"
-            + LocalDateTime.now().toString().replace(":", "-") + ".chaps.xml";
-        try (FileWriter out = new FileWriter(filename, StandardCharsets.UTF_8)) {
+        try (FileWriter out = new FileWriter(file, StandardCharsets.UTF_8)) {
             (new XMLWriter(out, OutputFormat.createPrettyPrint())).write(doc);
         } catch (IOException e) {
             e.printStackTrace();
@@ -8,9 +8,12 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
+import java.util.List;
 
 import nz.ac.vuw.ecs.swen225.gp22.domain.ColorableTile;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Inventory;
 import nz.ac.vuw.ecs.swen225.gp22.domain.Maze;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Observer;
 import nz.ac.vuw.ecs.swen225.gp22.util.GameConstants;
 
 import java.awt.event.ActionEvent;
@@ -21,7 +24,7 @@ import java.awt.event.ActionListener;
  * for this game level, and the items in the player's inventory.
  *
  * @author Diana
- * @version 1.3
+ * @version 1.4
  */
 public class SidePanel extends JPanel implements ActionListener {
     /**
@@ -52,6 +55,22 @@ public class SidePanel extends JPanel implements ActionListener {
      * X offset for the JLabels and inventory display.
      */
     private final int xOffset = 30;
+    /**
+     * Y offset for the inventory display.
+     */
+    private final int inventoryYOffset = 350;
+    /**
+     * The inventory grid with the keys drawn on it. Null when it needs to be redrawn.
+     */
+    private BufferedImage inventoryImage;
+    /**
+     * The inventory being displayed.
+     */
+    private Inventory shownInventory;
+    /**
+     * Marks the inventory image as out of date whenever the inventory changes.
+     */
+    private final Observer<Inventory> inventoryObserver = unused -> inventoryImage = null;
 
     /***
      * Initialises a new side panel upon the loading of a level.
@@ -101,35 +120,56 @@ public class SidePanel extends JPanel implements ActionListener {
     }
 
     /**
-     * Displays the updated inventory.
+     * Displays the updated inventory. The grid is only redrawn when the inventory
+     * has changed since the last time it was displayed.
      *
      * @param g The graphics object needed to render images on the canvas.
      */
     private void renderInventory(Graphics g) {
+        Inventory current = Maze.player.getInventory();
+        if (current != shownInventory) { // a new level has a new player
+            if (shownInventory != null) shownInventory.removeObserver(inventoryObserver);
+            current.addObserver(inventoryObserver);
+            shownInventory = current;
+            inventoryImage = null;
+        }
+        if (inventoryImage == null) inventoryImage = drawInventory(current.asList());
+        g.drawImage(inventoryImage, xOffset, inventoryYOffset, this);
+    }
+
+    /**
+     * Draws the inventory grid with the collected keys on it.
+     *
+     * @param keys The keys the player has collected.
+     * @return The image of the inventory.
+     */
+    private BufferedImage drawInventory(List<ColorableTile.Color> keys) {
         // inventory is a 3x4 grid
         int numRowsTiles = 4;
-        int yOffset = 350;
+        int numColsTiles = 3;
+        BufferedImage image = new BufferedImage(numRowsTiles * GameConstants.TILE_SIZE,
+                numColsTiles * GameConstants.TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
         for (int x = 0; x < numRowsTiles; x++) {
-            // inventory is 3X4 grid
-            int numColsTiles = 3;
             for (int y = 0; y < numColsTiles; y++) {
-                g.drawImage(Img.Wall.image, x * GameConstants.TILE_SIZE + xOffset, y * GameConstants.TILE_SIZE + yOffset, this);
+                g.drawImage(Img.Wall.image, x * GameConstants.TILE_SIZE, y * GameConstants.TILE_SIZE, this);
             }
         }
 
         int keyXPos = 0;
         int keyYPos = -1;
-        for (int x = 0; x < Maze.player.getAllKeys().size(); x++) {
-            if (x < GameConstants.NUM_INVENTORY_TILES) { // stop displaying when the inventory tiles are full
-                if (x % 4 == 0) {
-                    keyYPos++;
-                    keyXPos = 0;
-                } // move to the start of the next row when the current one is full
-                BufferedImage key = getKeyImg(Maze.player.getAllKeys().get(x)); // check the key colour
-                g.drawImage(key, keyXPos * GameConstants.TILE_SIZE + xOffset, keyYPos * GameConstants.TILE_SIZE + yOffset, this);
-                keyXPos++; // place key to the next unoccupied tile
-            }
+        // stop displaying when the inventory tiles are full
+        for (int x = 0; x < Math.min(keys.size(), GameConstants.NUM_INVENTORY_TILES); x++) {
+            if (x % 4 == 0) {
+                keyYPos++;
+                keyXPos = 0;
+            } // move to the start of the next row when the current one is full
+            BufferedImage key = getKeyImg(keys.get(x)); // check the key colour
+            g.drawImage(key, keyXPos * GameConstants.TILE_SIZE, keyYPos * GameConstants.TILE_SIZE, this);
+            keyXPos++; // place key to the next unoccupied tile
         }
+        g.dispose();
+        return image;
     }
 
     /**
@@ -5,6 +5,7 @@ import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.Serial;
 import java.util.List;
+import java.util.ArrayList;
 import java.util.HashMap;
 
 import javax.swing.Timer;
@@ -23,7 +24,7 @@ import nz.ac.vuw.ecs.swen225.gp22.util.GameConstants;
  * such as the player, free tiles, walls, keys, locked doors, treasures, locked exit, and exit.
  *
  * @author Diana
- * @version 1.6
+ * @version 1.10
  */
 public class Viewport extends JPanel implements ActionListener {
     @Serial
@@ -53,6 +54,10 @@ public class Viewport extends JPanel implements ActionListener {
      * Stores the names of the sound and the SFX object itself.
      */
     private final HashMap<String, SFX> soundList = new HashMap<>();
+    /**
+     * Subscriptions to the game events that play sounds.
+     */
+    private final List<EventBus.Subscription> soundEvents = new ArrayList<>();
 
     /**
      * Initialises a new maze upon the loading of a level.
@@ -74,6 +79,13 @@ public class Viewport extends JPanel implements ActionListener {
         }
 
         playSFX("Background"); // play the background music
+
+        // play sounds when the player picks up or unlocks something
+        EventBus events = Maze.getEvents();
+        soundEvents.add(events.subscribe(GameEvent.KeyCollected.class, e -> playSFX("CollectItem")));
+        soundEvents.add(events.subscribe(GameEvent.TreasureCollected.class, e -> playSFX("CollectItem")));
+        soundEvents.add(events.subscribe(GameEvent.DoorUnlocked.class, e -> playSFX("Unlock")));
+        soundEvents.add(events.subscribe(GameEvent.ExitUnlocked.class, e -> playSFX("Unlock")));
     }
 
     @Override
@@ -96,7 +108,7 @@ public class Viewport extends JPanel implements ActionListener {
         int playerX = Maze.player.getPos().x();
         int playerY = Maze.player.getPos().y();
 
-        Tile playerTile = Maze.getTile(new Maze.Point(playerX, playerY));
+        Tile playerTile = Maze.getTile(playerX, playerY);
 
         // checking for the far left
         if (playerX < focusX) {
@@ -129,22 +141,14 @@ public class Viewport extends JPanel implements ActionListener {
 
         Maze.Point focusPoint = getFocusArea(playerX, playerY); // the point that the maze should be centered on
 
-        // drawing the enemies
-        for (Entity e : Maze.entities) {
-            EnemyEntity enemy = (EnemyEntity) e;
-            int enemyX = enemy.getPos().x();
-            int enemyY = enemy.getPos().y();
-
-            int rows = focusPoint.x() + GameConstants.NUM_GAME_TILE - 1;
-            int cols = focusPoint.y() + GameConstants.NUM_GAME_TILE - 1;
-
-            // check that the enemy is within the current the focus area
-            if (focusPoint.x() <= enemyX && rows >= enemyX
-                    && focusPoint.y() <= enemyX && cols >= enemyY) {
-                g2D.drawImage(EnemyEntity.imageMap.get(enemy.getDir()),
-                        (enemyX - focusPoint.x()) * GameConstants.TILE_SIZE,
-                        (enemyY - focusPoint.y()) * GameConstants.TILE_SIZE, this);
-            }
+        // drawing the enemies within the current focus area
+        int rows = focusPoint.x() + GameConstants.NUM_GAME_TILE - 1;
+        int cols = focusPoint.y() + GameConstants.NUM_GAME_TILE - 1;
+        for (Entity<?> e : Maze.getEntitiesIn(focusPoint.x(), focusPoint.y(), rows, cols)) {
+            EnemyEntity<?> enemy = (EnemyEntity<?>) e;
+            g2D.drawImage(EnemyEntity.imageMap.get(enemy.getDir()),
+                    (enemy.getPos().x() - focusPoint.x()) * GameConstants.TILE_SIZE,
+                    (enemy.getPos().y() - focusPoint.y()) * GameConstants.TILE_SIZE, this);
         }
     }
 
@@ -183,7 +187,7 @@ public class Viewport extends JPanel implements ActionListener {
         focusX = Math.min(focusX, boundariesX);
         focusY = Math.min(focusY, boundariesY);
 
-        return new Maze.Point(focusX, focusY);
+        return Maze.Point.of(focusX, focusY);
     }
 
     /**
@@ -194,7 +198,7 @@ public class Viewport extends JPanel implements ActionListener {
     private void setCurrentMaze(Maze.Point point) {
         for (int i = 0; i < GameConstants.NUM_GAME_TILE; i++) {
             for (int j = 0; j < GameConstants.NUM_GAME_TILE; j++) {
-                currentMaze[i][j] = Maze.getTile(new Maze.Point(i + point.x(), j + point.y()));
+                currentMaze[i][j] = Maze.getTile(i + point.x(), j + point.y());
             }
         }
     }
@@ -273,30 +277,6 @@ public class Viewport extends JPanel implements ActionListener {
         };
     }
 
-    /**
-     * Stores the action that has happened in the game.
-     *
-     * @param actions A list of actions performed.
-     */
-    public void setAction(List<Entity.Action.Interaction.ActionType> actions) {
-        // play sounds based on the player's actions and game status
-        for (Entity.Action.Interaction.ActionType a : actions) {
-            checkAction(a);
-        }
-    }
-
-    /**
-     * Plays a sound based on the action that takes place in the game.
-     *
-     * @param a Action performed.
-     */
-    private void checkAction(Entity.Action.Interaction.ActionType a) {
-        switch (a) {
-            case PickupKey, PickupTreasure -> playSFX("CollectItem");
-            case UnlockDoor, UnlockExit -> playSFX("Unlock");
-        }
-    }
-
     /**
      * Plays a sound.
      *
@@ -307,10 +287,12 @@ public class Viewport extends JPanel implements ActionListener {
     }
 
     /**
-     * Stops the current sounds from playing.
+     * Stops the current sounds from playing, and stops listening for new ones.
      */
     public void stopSound() {
         sfxPlayer.stopSFX();
+        soundEvents.forEach(EventBus.Subscription::cancel);
+        soundEvents.clear();
     }
 
 }
@@ -0,0 +1,121 @@
+package nz.ac.vuw.ecs.swen225.gp22.app;
+
+import nz.ac.vuw.ecs.swen225.gp22.domain.ColorableTile;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Entity.Direction;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Exit;
+import nz.ac.vuw.ecs.swen225.gp22.domain.GameWorld;
+import nz.ac.vuw.ecs.swen225.gp22.domain.LockedExit;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Maze;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Simulation;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Treasure;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+/**
+ * Tests for the ChapsEnv class.
+ *
+ * @author agent
+ * @version 1.0
+ */
+public class ChapsEnvTest {
+	/**
+	 * Builds a level where the player walks right over a treasure and through the exit gate.
+	 *
+	 * @param world the world to build the level in
+	 */
+	private static void buildLevel(GameWorld world) {
+		world.generateMap(new Maze.Point(5, 1), 1, -1);
+		world.setTile(new Maze.Point(2, 0), new Treasure(new Maze.Point(2, 0)));
+		world.setTile(new Maze.Point(3, 0), new LockedExit(new Maze.Point(3, 0)));
+		world.setTile(new Maze.Point(4, 0), new Exit(new Maze.Point(4, 0)));
+	}
+
+	/**
+	 * Checks the layout of observations, that they follow the changes made by each
+	 * step, and the rewards given for treasures and winning.
+	 */
+	@Test
+	public void stepTest() {
+		ChapsEnv env = new ChapsEnv();
+		int[] obs = env.reset(ChapsEnvTest::buildLevel, Simulation.NO_TIME_LIMIT);
+		int cells = 5, extras = 2 * cells;
+		assert obs.length == 2 * cells + 5 + ColorableTile.Color.values().length;
+		assert obs[2] == ChapsEnv.TREASURE && obs[3] == ChapsEnv.GATE && obs[4] == ChapsEnv.EXIT;
+		assert obs[extras] == 0 && obs[extras + 3] == 1 && obs[obs.length - 1] == -1;
+
+		ChapsEnv.Step step = env.step(Direction.Right);
+		assert step.reward() == ChapsEnv.STEP_REWARD && !step.done();
+		assert step.observation()[extras] == 1 && step.observation()[extras + 2] == Direction.Right.ordinal();
+
+		step = env.step(Direction.Right);
+		assert step.reward() == ChapsEnv.STEP_REWARD + ChapsEnv.TREASURE_REWARD;
+		assert step.observation()[2] == ChapsEnv.FLOOR && step.observation()[extras + 3] == 0;
+
+		step = env.step(Direction.Right);
+		assert step.observation()[3] == ChapsEnv.FLOOR && !step.done();
+		step = env.step(Direction.Right);
+		assert step.done() && step.reward() == ChapsEnv.STEP_REWARD + ChapsEnv.WIN_REWARD;
+		try {
+			env.step(Direction.Right);
+			assert false;
+		} catch (IllegalStateException ignored) {
+		}
+
+		obs = env.reset(ChapsEnvTest::buildLevel, Simulation.NO_TIME_LIMIT);
+		assert obs[2] == ChapsEnv.TREASURE && obs[extras] == 0;
+	}
+
+	/**
+	 * Checks that the second level, which has enemies, can be played, and that
+	 * resetting it goes back to where its enemies started.
+	 */
+	@Test
+	public void enemiesTest() {
+		ChapsEnv env = new ChapsEnv();
+		int[] first = env.reset(2).clone();
+		int cells = 16 * 15;
+		assert Arrays.stream(first, 0, cells).filter(kind -> kind == ChapsEnv.ENEMY).count() == 2;
+		ChapsEnv.Step step = null;
+		for (int i = 0; i < 10; i++) step = env.step(Direction.Left);
+		assert !step.done() && !Arrays.equals(step.observation(), 0, cells, first, 0, cells);
+		assert Arrays.equals(env.reset(2), first);
+	}
+
+	/**
+	 * Checks that a vector of environments on the first level start the same,
+	 * step together, keep the last observation of episodes that end, and reject bad actions.
+	 */
+	@Test
+	public void vectorTest() {
+		ChapsEnv.Vector envs = new ChapsEnv.Vector(4, 1);
+		int[][] first = envs.resetAll();
+		for (int[] obs : first) assert Arrays.equals(obs, first[0]);
+		int start = first[0][first[0].length - 1];
+
+		ChapsEnv.Vector.Batch batch = envs.stepAll(new int[]{ChapsEnv.NO_MOVE, ChapsEnv.NO_MOVE, ChapsEnv.NO_MOVE, ChapsEnv.NO_MOVE});
+		for (int i = 0; i < envs.size(); i++) {
+			assert batch.rewards()[i] == ChapsEnv.STEP_REWARD && !batch.dones()[i];
+			assert batch.observations()[i][first[0].length - 1] == start - ChapsEnv.TICKS_PER_STEP;
+			assert batch.terminals()[i] == null;
+		}
+		int[] idle = new int[envs.size()];
+		Arrays.fill(idle, ChapsEnv.NO_MOVE);
+		while (!batch.dones()[0]) batch = envs.stepAll(idle);
+		for (int i = 0; i < envs.size(); i++) {
+			assert batch.dones()[i] && batch.terminals()[i] != batch.observations()[i];
+			assert batch.terminals()[i][first[0].length - 1] < ChapsEnv.TICKS_PER_STEP;
+			assert batch.observations()[i][first[0].length - 1] == start;
+		}
+		try {
+			envs.stepAll(new int[]{0, 1, 2, 4});
+			assert false;
+		} catch (IllegalArgumentException ignored) {
+		}
+		try {
+			envs.stepAll(new int[]{0});
+			assert false;
+		} catch (IllegalArgumentException ignored) {
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package nz.ac.vuw.ecs.swen225.gp22.app;
+
+import nz.ac.vuw.ecs.swen225.gp22.domain.Entity.Direction;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Exit;
+import nz.ac.vuw.ecs.swen225.gp22.domain.GameWorld;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Maze;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Simulation;
+import nz.ac.vuw.ecs.swen225.gp22.persistency.Load;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Tests for the GameHost class.
+ *
+ * @author agent
+ * @version 1.0
+ */
+public class GameHostTest {
+	/**
+	 * Builds a level where the exit is two steps to the right of the player.
+	 *
+	 * @param world the world to build the level in
+	 */
+	private static void buildLevel(GameWorld world) {
+		world.generateMap(new Maze.Point(3, 1), 0, -1);
+		world.setTile(new Maze.Point(2, 0), new Exit(new Maze.Point(2, 0)));
+	}
+
+	/**
+	 * Checks that many games run at once, each playing the moves sent to it,
+	 * and that games without moves run out of time.
+	 *
+	 * @throws InterruptedException if interrupted while waiting for the games
+	 */
+	@Test
+	public void manyGamesTest() throws InterruptedException {
+		try (GameHost host = new GameHost(4, false)) {
+			for (int i = 0; i < 500; i++) {
+				GameHost.Game game = host.start(GameHostTest::buildLevel, i % 2 == 0 ? 1000 : Simulation.NO_TIME_LIMIT);
+				if (i % 2 == 1) {
+					game.send(Direction.Right);
+					game.send(Direction.Right);
+				}
+			}
+			assert host.awaitAll(1, TimeUnit.MINUTES);
+			assert host.getRunning() == 0;
+			for (GameHost.Game game : host.getGames()) {
+				if (game.getId() % 2 == 0) {
+					assert game.isLost() && !game.isWon();
+					assert game.getTicks() == 1000 / Simulation.TICK_MS;
+				} else {
+					assert game.isWon() && !game.isLost();
+					assert game.getWorld().getPlayer().getPos().equals(new Maze.Point(2, 0));
+				}
+				assert game.getMaxTickNanos() >= game.getMeanTickNanos();
+			}
+			assert host.getTotalTicks() == host.getGames().stream().mapToLong(GameHost.Game::getTicks).sum();
+			assert host.getThroughput() > 0;
+		}
+	}
+
+	/**
+	 * Checks that a real time game ticks on its own, and that stopping a game or
+	 * closing the host finishes it without a result.
+	 *
+	 * @throws Exception if the game does not finish
+	 */
+	@Test
+	public void stopTest() throws Exception {
+		GameHost host = new GameHost(2, true);
+		GameHost.Game stopped = host.start(GameHostTest::buildLevel, Simulation.NO_TIME_LIMIT);
+		GameHost.Game closed = host.start(GameHostTest::buildLevel, Simulation.NO_TIME_LIMIT);
+		Thread.sleep(5 * Simulation.TICK_MS);
+		stopped.stop();
+		assert stopped.getFinished().get(10, TimeUnit.SECONDS) == stopped;
+		assert !stopped.isWon() && !stopped.isLost() && stopped.getTicks() > 0;
+
+		host.close();
+		assert closed.isOver() && !closed.isWon();
+		try {
+			host.start(GameHostTest::buildLevel, Simulation.NO_TIME_LIMIT);
+			assert false;
+		} catch (IllegalStateException ignored) {
+		}
+	}
+
+	/**
+	 * Checks that levels started from many threads at once each get their own
+	 * world and leave the app's level and time alone, that games of a level with
+	 * enemies each have their own, and that idle games run out of the level's time.
+	 *
+	 * @throws InterruptedException if interrupted while waiting for the games
+	 */
+	@Test
+	public void startLevelTest() throws InterruptedException {
+		Base.setLevel(1);
+		Base.setTime(42);
+		try (GameHost host = new GameHost(4, false)) {
+			List<GameHost.Game> games = IntStream.range(0, 16).parallel()
+					.mapToObj(i -> host.startLevel(1 + i % 2)).toList();
+			assert host.awaitAll(1, TimeUnit.MINUTES);
+			assert games.stream().map(GameHost.Game::getWorld).distinct().count() == games.size();
+			int timeLimitMS = Load.loadLevel(1, new GameWorld()).time() * 1000;
+			for (GameHost.Game game : games) {
+				assert game.isLost() && game.getTicks() == timeLimitMS / Simulation.TICK_MS;
+				GameWorld world = game.getWorld();
+				assert world.getEntities().stream().allMatch(e -> e.getWorld() == world);
+			}
+			assert games.stream().filter(g -> !g.getWorld().getEntities().isEmpty()).count() == games.size() / 2;
+		}
+		assert Base.getLevel() == 1 && Base.getTime() == 42;
+	}
+}
@@ -1,7 +1,10 @@
 package nz.ac.vuw.ecs.swen225.gp22.domain;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Stack;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.jupiter.api.Test;
 import nz.ac.vuw.ecs.swen225.gp22.domain.Entity.Direction;
@@ -14,7 +17,7 @@ import nz.ac.vuw.ecs.swen225.gp22.domain.Entity.Direction;
  * which is used for testing and marking work in progress code.
  *
  * @author Abdul
- * @version 1.2
+ * @version 1.11
  */
 public class DomainTest {
     /**
@@ -421,4 +424,881 @@ public class DomainTest {
         assert pointOne.equals(pointTwo) && pointTwo.equals(pointOne);
         assert pointOne.hashCode() == pointTwo.hashCode();
     }
+
+    /**
+     * Checks that separate worlds do not share any state,
+     * and that the default world is still reachable through Maze.
+     */
+    @Test
+    public void separateWorldsTest() {
+        Maze.generateMap(new Maze.Point(5, 3), 0, -1);
+        GameWorld world = new GameWorld();
+        world.generateMap(new Maze.Point(3, 3), 1, -1);
+        world.setTile(new Maze.Point(1, 0), TileDatabase.create(world, "treasure", new Maze.Point(1, 0)));
+
+        world.getPlayer().move(Direction.Right);
+        assert world.getTreasuresLeft() == 0;
+        assert world.getPlayer().getPos().equals(new Maze.Point(1, 0));
+        assert Maze.player.getPos().equals(new Maze.Point(0, 0));
+        assert Maze.player != world.getPlayer();
+        assert Maze.getDimensions().equals(new Maze.Point(5, 3));
+
+        try {
+            Maze.setTile(new Maze.Point(1, 0), world.getTile(new Maze.Point(1, 0)));
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        assert false;
+    }
+
+    /**
+     * Checks that a simulation pings enemies at their speed, reports
+     * each tick's changes, and stops once the player is killed.
+     */
+    @Test
+    public void simulationTest() {
+        Maze.generateMap(new Maze.Point(5, 3), 0, -1);
+        GummyGuard enemy = new GummyGuard(new Maze.Point(4, 0), Direction.Left);
+        Maze.entities.add(enemy);
+        Maze.player.setPos(new Maze.Point(1, 0));
+        Simulation simulation = new Simulation(GameWorld.getDefault());
+        List<Entity.Action> pings = new java.util.ArrayList<>();
+        simulation.addObserver(s -> pings.addAll(s.getLastActions()));
+
+        assert simulation.step(enemy.getSpeed() / Simulation.TICK_MS - 1) == 19;
+        assert enemy.getPos().equals(new Maze.Point(4, 0));
+        assert simulation.step();
+        assert enemy.getPos().equals(new Maze.Point(3, 0));
+        assert pings.size() == 1 && pings.get(0).id() == enemy.id();
+
+        simulation.runUntil(Simulation::isOver);
+        assert simulation.isLost() && !simulation.isWon();
+        assert simulation.getTime() == 3 * enemy.getSpeed();
+        assert simulation.step(10) == 0;
+
+        Simulation timed = new Simulation(GameWorld.getDefault(), 1000);
+        Maze.generateMap(new Maze.Point(5, 3), 0, -1);
+        assert timed.runUntil(s -> false) == 1000 / Simulation.TICK_MS;
+        assert timed.isTimeUp();
+    }
+
+    /**
+     * Checks that packed tiles keep their properties when they are
+     * recreated, and that large maps can be generated.
+     */
+    @Test
+    public void packedTilesTest() {
+        Maze.generateMap(new Maze.Point(5, 3), 0, -1);
+        Maze.setTile(new Maze.Point(1, 0), new InfoField(new Maze.Point(1, 0), "Hello"));
+        Maze.setTile(new Maze.Point(2, 0), new Wall(new Maze.Point(2, 0)));
+        Key key = new Key(new Maze.Point(3, 0), ColorableTile.Color.Green);
+        Maze.setTile(new Maze.Point(3, 0), key);
+
+        assert ((InfoField) Maze.getTile(new Maze.Point(1, 0))).getText().equals("Hello");
+        assert Maze.getTile(new Maze.Point(2, 0)).isObstructive();
+        assert Maze.getTile(new Maze.Point(2, 0)).getPos().equals(new Maze.Point(2, 0));
+        assert ((Key) Maze.getTile(new Maze.Point(3, 0))).getColor() == key.getColor();
+        assert GameWorld.getDefault().isTile(new Maze.Point(3, 0), ColorableTile.class);
+        assert GameWorld.getDefault().isObstructive(new Maze.Point(2, 0));
+
+        Maze.resetTile(new Maze.Point(1, 0));
+        assert Maze.getTile(new Maze.Point(1, 0)) instanceof Ground;
+
+        Maze.generateMap(new Maze.Point(2000, 2000), 0, -1);
+        assert Maze.getTile(new Maze.Point(1999, 1999)) instanceof Ground;
+    }
+
+    /**
+     * Checks that tiles react to the player through the trigger index
+     * rather than registering themselves as player observers.
+     */
+    @Test
+    public void tileTriggerTest() {
+        Maze.generateMap(new Maze.Point(5, 1), 1, -1);
+        Maze.setTile(new Maze.Point(1, 0), new Key(new Maze.Point(1, 0), ColorableTile.Color.Red));
+        Maze.setTile(new Maze.Point(2, 0), new LockedDoor(new Maze.Point(2, 0), ColorableTile.Color.Red));
+        Maze.setTile(new Maze.Point(3, 0), new Treasure(new Maze.Point(3, 0)));
+        Maze.setTile(new Maze.Point(4, 0), new LockedExit(new Maze.Point(4, 0)));
+        assert GameWorld.getDefault().isObstructive(new Maze.Point(2, 0));
+
+        Maze.player.moveAndTurn(Entity.Direction.Right);
+        assert Maze.player.hasKey(ColorableTile.Color.Red);
+        assert !GameWorld.getDefault().isObstructive(new Maze.Point(2, 0));
+        Maze.player.moveAndTurn(Entity.Direction.Right);
+        assert !Maze.player.hasKey(ColorableTile.Color.Red);
+        assert GameWorld.getDefault().isObstructive(new Maze.Point(4, 0));
+        Maze.player.moveAndTurn(Entity.Direction.Right);
+        assert Maze.collectedAllTreasures();
+        assert !GameWorld.getDefault().isObstructive(new Maze.Point(4, 0));
+        assert Maze.getStringState().equals("GGGGL\n");
+    }
+
+    /**
+     * Checks that points near the origin are interned, and that moving
+     * and querying with coordinates reuses points and tiles.
+     */
+    @Test
+    public void internedPointsTest() {
+        assert Maze.Point.of(3, 4) == Maze.Point.of(3, 4);
+        assert Maze.Point.of(3, 4).add(Entity.Direction.Up) == Maze.Point.of(3, 3);
+        assert Maze.Point.of(100000, 4).equals(new Maze.Point(100000, 4));
+        assert Maze.Point.of(3, 4).hashCode() == new Maze.Point(3, 4).hashCode();
+
+        Maze.generateMap(new Maze.Point(5, 5), 0, -1);
+        Maze.setTile(new Maze.Point(2, 2), new Wall(new Maze.Point(2, 2)));
+        assert Maze.getDimensions() == Maze.getDimensions();
+        assert Maze.getTile(2, 2) == Maze.getTile(new Maze.Point(2, 2));
+        assert Maze.isTile(2, 2, Wall.class) && !Maze.isTile(1, 1, Wall.class);
+
+        Maze.player.moveBy(1, 2);
+        assert Maze.player.getPos() == Maze.Point.of(1, 2);
+        try {
+            Maze.player.moveBy(1, 0);
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert Maze.player.getPos().equals(new Maze.Point(1, 2));
+        }
+        Maze.resetTile(new Maze.Point(2, 2));
+        assert Maze.getTile(2, 2) instanceof Ground;
+    }
+
+    /**
+     * Checks that entities can be found by ID, cell, and rectangle,
+     * and that the index follows them as they move or are removed.
+     */
+    @Test
+    public void entityIndexTest() {
+        Maze.generateMap(new Maze.Point(10, 10), 0, -1);
+        GummyGuard first = new GummyGuard(new Maze.Point(5, 5), Entity.Direction.Right);
+        GummyGuard second = new GummyGuard(new Maze.Point(8, 8), Entity.Direction.Left);
+        Maze.entities.add(first);
+        Maze.entities.add(second);
+
+        assert Maze.getEntity(first.id()) == first && Maze.getEntity(second.id()) == second;
+        assert Maze.getEntitiesAt(new Maze.Point(5, 5)).equals(List.of(first));
+        assert Maze.getEntitiesIn(0, 0, 6, 6).equals(List.of(first));
+        assert Maze.getEntitiesIn(-5, -5, 20, 20).size() == 2;
+
+        first.ping();
+        assert Maze.getEntitiesAt(new Maze.Point(5, 5)).isEmpty();
+        assert Maze.getEntitiesAt(new Maze.Point(6, 5)).equals(List.of(first));
+        assert Maze.getEntitiesIn(6, 5, 6, 5).equals(List.of(first));
+
+        try {
+            Maze.entities.add(first);
+            assert false;
+        } catch (IllegalArgumentException ignored) {
+        }
+        Maze.entities.remove(first);
+        assert Maze.getEntitiesAt(new Maze.Point(6, 5)).isEmpty();
+        try {
+            Maze.getEntity(first.id());
+            assert false;
+        } catch (IllegalArgumentException ignored) {
+        }
+        Maze.generateMap(new Maze.Point(10, 10), 0, -1);
+        assert Maze.getEntitiesIn(0, 0, 9, 9).isEmpty();
+    }
+
+    /**
+     * Enemy that records the times it was pinged at, used to test scheduling.
+     */
+    private static class PingCounter extends EnemyEntity<PingCounter> {
+        final List<Integer> pings = new java.util.ArrayList<>();
+        final List<String> log;
+        final Simulation simulation;
+
+        PingCounter(int speed, Simulation simulation, List<String> log) {
+            super(new Maze.Point(0, 0), Direction.Down, speed);
+            this.simulation = simulation;
+            this.log = log;
+        }
+
+        @Override
+        public void ping() {
+            pings.add(simulation.getTime());
+            log.add(simulation.getTime() + ":" + getSpeed());
+        }
+
+        @Override
+        public void unping() {
+        }
+    }
+
+    /**
+     * Checks that enemies are pinged on exactly the ticks where the time is
+     * a multiple of their speed, in entity list order, including enemies
+     * added part way through.
+     */
+    @Test
+    public void enemySchedulerTest() {
+        Maze.generateMap(new Maze.Point(3, 3), 0, -1);
+        Simulation simulation = new Simulation(GameWorld.getDefault());
+        List<String> log = new java.util.ArrayList<>();
+        PingCounter slow = new PingCounter(60, simulation, log);
+        PingCounter fast = new PingCounter(40, simulation, log);
+        PingCounter odd = new PingCounter(30, simulation, log);
+        Maze.entities.add(slow);
+        Maze.entities.add(fast);
+        Maze.entities.add(odd);
+
+        simulation.step(100);
+        PingCounter late = new PingCounter(6000, simulation, log);
+        Maze.entities.add(late);
+        simulation.step(500);
+
+        List<String> expected = new java.util.ArrayList<>();
+        for (int time = Simulation.TICK_MS; time <= simulation.getTime(); time += Simulation.TICK_MS) {
+            for (int speed : new int[]{60, 40, 30, 6000}) {
+                if (speed == 6000 && time <= 100 * Simulation.TICK_MS) continue;
+                if (time % speed == 0) expected.add(time + ":" + speed);
+            }
+        }
+        assert log.equals(expected);
+        assert late.pings.equals(List.of(6000, 12000));
+    }
+
+    /**
+     * Tile type from outside the built in set, used to test registration.
+     */
+    private static class Portal extends Tile {
+        Portal(Maze.Point tilePos) {
+            super(tilePos, false);
+        }
+
+        @Override
+        public String toString() {
+            return "P";
+        }
+    }
+
+    /**
+     * Registers the portal tile type, unless an earlier test already has.
+     */
+    private static void registerPortal() {
+        try {
+            TileDatabase.register("portal", Portal.class, p -> new Portal((Maze.Point) p[0]), Maze.Point.class);
+        } catch (IllegalArgumentException e) {
+            // Already registered by an earlier test.
+            assert TileDatabase.getID(Portal.class).equals("portal");
+        }
+    }
+
+    /**
+     * Checks that tile types can be registered at runtime, and that they
+     * can then be created and saved by ID like the built in types.
+     */
+    @Test
+    public void tileRegistrationTest() {
+        Maze.generateMap(new Maze.Point(5, 3), 0, -1);
+        registerPortal();
+        Tile portal = TileDatabase.create("portal", new Maze.Point(2, 1));
+        assert portal instanceof Portal && portal.getPos().equals(new Maze.Point(2, 1));
+        assert TileDatabase.getID(portal).equals("portal");
+        Maze.setTile(new Maze.Point(2, 1), portal);
+        assert Maze.getTile(new Maze.Point(2, 1)) == portal;
+
+        try {
+            TileDatabase.register("wall", Portal.class, p -> new Portal((Maze.Point) p[0]), Maze.Point.class);
+            assert false;
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            TileDatabase.create("portal");
+            assert false;
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    /**
+     * Checks that restoring a snapshot puts back the tiles, player, inventory,
+     * entities and counters, and that later changes do not leak into it.
+     */
+    @Test
+    public void snapshotTest() {
+        Maze.generateMap(new Maze.Point(40, 40), 1, -1);
+        Maze.setTile(new Maze.Point(1, 0), new Key(new Maze.Point(1, 0), ColorableTile.Color.Blue));
+        Maze.setTile(new Maze.Point(2, 0), new LockedDoor(new Maze.Point(2, 0), ColorableTile.Color.Blue));
+        Maze.setTile(new Maze.Point(3, 0), new Treasure(new Maze.Point(3, 0)));
+        GummyGuard enemy = new GummyGuard(new Maze.Point(5, 30), Entity.Direction.Right);
+        Maze.entities.add(enemy);
+        String state = Maze.getStringState();
+        GameWorld.Snapshot snapshot = Maze.snapshot();
+
+        Maze.player.moveAndTurn(Entity.Direction.Right);
+        Maze.player.moveAndTurn(Entity.Direction.Right);
+        Maze.player.moveAndTurn(Entity.Direction.Right);
+        enemy.ping();
+        Maze.entities.remove(enemy);
+        Maze.setTile(new Maze.Point(39, 39), new Wall(new Maze.Point(39, 39)));
+        assert Maze.collectedAllTreasures() && !Maze.getStringState().equals(state);
+
+        for (int i = 0; i < 2; i++) {
+            Maze.restore(snapshot);
+            assert Maze.getStringState().equals(state);
+            assert Maze.player.getPos().equals(new Maze.Point(0, 0)) && Maze.player.getDir() == Entity.Direction.Down;
+            assert Maze.player.keyCount() == 0 && !Maze.collectedAllTreasures();
+            assert Maze.entities.equals(List.of(enemy)) && enemy.getPos().equals(new Maze.Point(5, 30));
+            assert Maze.getEntitiesAt(new Maze.Point(5, 30)).equals(List.of(enemy));
+            Maze.player.moveAndTurn(Entity.Direction.Right);
+            assert Maze.player.hasKey(ColorableTile.Color.Blue);
+        }
+        try {
+            new GameWorld().restore(snapshot);
+            assert false;
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    /**
+     * Checks that a copy of a snapshot has the tiles, player, keys and counters of the
+     * snapshot, can be read on another thread, and is not changed by later moves.
+     */
+    @Test
+    public void snapshotCopyTest() throws Exception {
+        GameWorld world = new GameWorld();
+        buildHashLevel(world);
+        world.run(() -> world.getPlayer().moveAndTurn(Entity.Direction.Right));
+        String state = world.getStringState();
+        GameWorld.Snapshot snapshot = world.snapshot();
+        world.run(() -> world.getPlayer().moveAndTurn(Entity.Direction.Right));
+
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            GameWorld copy = other.submit(snapshot::copy).get();
+            assert copy != world && copy.getStringState().equals(state);
+            assert copy.getPlayer().getPos().equals(new Maze.Point(1, 0));
+            assert copy.getPlayer().hasKey(ColorableTile.Color.Red) && copy.getTreasuresLeft() == 1;
+            assert copy.getEntities().isEmpty();
+        } finally {
+            other.shutdown();
+        }
+        assert snapshot.getEntities().size() == 1;
+        assert snapshot.getEntities().get(0).pos().equals(new Maze.Point(0, 2));
+        assert !world.getStringState().equals(state);
+    }
+
+    /**
+     * Builds a small level in a world, used to compare state hashes.
+     *
+     * @param world The world to build the level in.
+     */
+    private static void buildHashLevel(GameWorld world) {
+        world.generateMap(new Maze.Point(6, 3), 1, -1);
+        world.run(() -> {
+            world.setTile(new Maze.Point(1, 0), new Key(new Maze.Point(1, 0), ColorableTile.Color.Red));
+            world.setTile(new Maze.Point(2, 0), new LockedDoor(new Maze.Point(2, 0), ColorableTile.Color.Red));
+            world.setTile(new Maze.Point(3, 0), new Treasure(new Maze.Point(3, 0)));
+            world.setTile(new Maze.Point(4, 2), new InfoField(new Maze.Point(4, 2), "Hi"));
+            world.getEntities().add(new GummyGuard(new Maze.Point(0, 2), Entity.Direction.Right));
+        });
+    }
+
+    /**
+     * Checks that the state hash changes with tiles, player, keys and
+     * entities, returns to its old value when the state does, and matches
+     * between worlds in the same state.
+     */
+    @Test
+    public void stateHashTest() {
+        GameWorld world = new GameWorld();
+        GameWorld other = new GameWorld();
+        buildHashLevel(world);
+        buildHashLevel(other);
+        long start = world.getStateHash();
+        assert start == other.getStateHash();
+        GameWorld.Snapshot snapshot = world.snapshot();
+
+        java.util.Set<Long> seen = new java.util.HashSet<>();
+        seen.add(start);
+        world.run(() -> {
+            world.getPlayer().setDir(Entity.Direction.Right);
+            assert seen.add(world.getStateHash());
+            world.getPlayer().move();
+            assert world.getPlayer().hasKey(ColorableTile.Color.Red);
+            assert seen.add(world.getStateHash());
+            world.getPlayer().move();
+            assert seen.add(world.getStateHash());
+            world.getEntities().get(0).ping();
+            assert seen.add(world.getStateHash());
+            world.setTile(new Maze.Point(4, 2), new InfoField(new Maze.Point(4, 2), "Bye"));
+            assert seen.add(world.getStateHash());
+        });
+
+        world.restore(snapshot);
+        assert world.getStateHash() == start;
+
+        world.run(() -> {
+            world.getPlayer().moveAndTurn(Entity.Direction.Right);
+            world.getPlayer().moveAndTurn(Entity.Direction.Left);
+        });
+        other.run(() -> {
+            other.getPlayer().moveAndTurn(Entity.Direction.Right);
+            other.getPlayer().moveAndTurn(Entity.Direction.Left);
+        });
+        assert world.getStateHash() == other.getStateHash();
+        assert world.getStringState().equals(other.getStringState());
+    }
+
+    /**
+     * Builds a level where a door separates the player from the bottom row:
+     * <pre>
+     * PGGGG
+     * WWDWG
+     * GGGGG
+     * </pre>
+     *
+     * @param world The world to build the level in.
+     */
+    private static void buildPathLevel(GameWorld world) {
+        world.generateMap(new Maze.Point(5, 3), 0, -1);
+        world.run(() -> {
+            for (int x : new int[]{0, 1, 3}) world.setTile(new Maze.Point(x, 1), new Wall(new Maze.Point(x, 1)));
+            world.setTile(new Maze.Point(2, 1), new LockedDoor(new Maze.Point(2, 1), ColorableTile.Color.Red));
+        });
+    }
+
+    /**
+     * Checks that distance fields are cached by the player's cell, are repaired
+     * to match a fresh search when tiles change, and give steps that lead to the player.
+     */
+    @Test
+    public void pathServiceTest() {
+        GameWorld world = new GameWorld();
+        buildPathLevel(world);
+        PathService paths = world.getPaths();
+        assert paths.distance(0, 2) == 10;
+        assert paths.nextStep(0, 2) == Direction.Right;
+        assert paths.nextStep(0, 0) == null;
+        assert paths.distance(2, 1) == PathService.UNREACHABLE;
+
+        world.run(() -> world.resetTile(new Maze.Point(2, 1)));
+        assert paths.distance(0, 2) == 6;
+        GameWorld fresh = new GameWorld();
+        buildPathLevel(fresh);
+        fresh.run(() -> fresh.resetTile(new Maze.Point(2, 1)));
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 5; x++) assert paths.distance(x, y) == fresh.getPaths().distance(x, y);
+        }
+
+        world.run(() -> world.setTile(new Maze.Point(2, 1), new Wall(new Maze.Point(2, 1))));
+        assert paths.distance(0, 2) == 10;
+        assert paths.getFieldsComputed() == 1;
+
+        world.run(() -> world.getPlayer().moveAndTurn(Direction.Right));
+        Maze.Point enemy = new Maze.Point(0, 2);
+        for (int steps = paths.distance(enemy); steps > 0; steps--) {
+            enemy = enemy.add(paths.nextStep(enemy));
+            assert paths.distance(enemy) == steps - 1;
+        }
+        assert enemy.equals(world.getPlayer().getPos());
+        world.run(() -> world.getPlayer().moveAndTurn(Direction.Left));
+        assert paths.distance(0, 2) == 10;
+        assert paths.getFieldsComputed() == 2;
+    }
+
+    /**
+     * Checks that closing cells one at a time, in and out of the paths to the player,
+     * repairs a cached field to match a fresh search after each one.
+     */
+    @Test
+    public void pathServiceClosedTest() {
+        Maze.Point[] walls = {new Maze.Point(1, 0), new Maze.Point(1, 1), new Maze.Point(6, 6),
+                new Maze.Point(1, 3), new Maze.Point(2, 2), new Maze.Point(0, 2), new Maze.Point(1, 2)};
+        GameWorld world = new GameWorld();
+        world.generateMap(new Maze.Point(7, 7), 0, -1);
+        PathService paths = world.getPaths();
+        assert paths.distance(6, 6) == 12;
+        for (int i = 0; i < walls.length; i++) {
+            Maze.Point wall = walls[i];
+            world.run(() -> world.setTile(wall, new Wall(wall)));
+            GameWorld fresh = new GameWorld();
+            fresh.generateMap(new Maze.Point(7, 7), 0, -1);
+            for (int j = 0; j <= i; j++) {
+                Maze.Point placed = walls[j];
+                fresh.run(() -> fresh.setTile(placed, new Wall(placed)));
+            }
+            for (int y = 0; y < 7; y++) {
+                for (int x = 0; x < 7; x++) {
+                    assert paths.distance(x, y) == fresh.getPaths().distance(x, y) : wall + " " + x + "," + y;
+                    Direction step = paths.nextStep(x, y);
+                    if (step != null) assert paths.distance(new Maze.Point(x, y).add(step)) == paths.distance(x, y) - 1;
+                }
+            }
+        }
+        assert paths.distance(6, 6) == PathService.UNREACHABLE;
+        assert paths.getFieldsComputed() == 1;
+    }
+
+    /**
+     * Checks that a map built in a batch only replaces the world's map when
+     * committed, and ends up the same as one built a tile at a time.
+     */
+    @Test
+    public void mapBuilderTest() {
+        registerPortal();
+        GameWorld world = new GameWorld();
+        world.generateMap(new Maze.Point(2, 2), 0, -1);
+        Player oldPlayer = world.getPlayer();
+        MapBuilder builder = world.builder(new Maze.Point(5, 3)).treasures(1).nextLevel(2)
+                .player(new Maze.Point(0, 1), Direction.Down)
+                .fill("wall")
+                .fill(new Maze.Point(0, 1), new Maze.Point(3, 1), "ground")
+                .place("key", new Maze.Point(1, 1), ColorableTile.Color.Red)
+                .place("portal", new Maze.Point(2, 1))
+                .place("info", new Maze.Point(3, 1), "Hi")
+                .place("portal", new Maze.Point(4, 2))
+                .place("bounce-pad", new Maze.Point(4, 2), Direction.Left);
+        assert world.getDimensions().equals(new Maze.Point(2, 2));
+        assert world.getPlayer() == oldPlayer;
+        assert builder.commit() == world;
+        assert world.getPlayer() != oldPlayer;
+        assert world.getTreasuresLeft() == 1 && world.getNextLevel() == 2;
+
+        GameWorld expected = new GameWorld();
+        expected.generateMap(new Maze.Point(5, 3), 1, 2);
+        expected.run(() -> {
+            expected.getPlayer().setPos(new Maze.Point(0, 1));
+            for (int y = 0; y < 3; y++) {
+                for (int x = 0; x < 5; x++) {
+                    if (y != 1 || x == 4) expected.setTile(new Maze.Point(x, y), new Wall(new Maze.Point(x, y)));
+                }
+            }
+            expected.setTile(new Maze.Point(1, 1), new Key(new Maze.Point(1, 1), ColorableTile.Color.Red));
+            expected.setTile(new Maze.Point(2, 1), new Portal(new Maze.Point(2, 1)));
+            expected.setTile(new Maze.Point(3, 1), new InfoField(new Maze.Point(3, 1), "Hi"));
+            expected.setTile(new Maze.Point(4, 2), new BouncyPad(new Maze.Point(4, 2), Direction.Left));
+        });
+        assert world.getStringState().equals(expected.getStringState());
+        assert world.getStateHash() == expected.getStateHash();
+        assert world.getTile(2, 1) instanceof Portal && world.getTile(2, 1).getWorld() == world;
+        assert ((InfoField) world.getTile(3, 1)).getText().equals("Hi");
+
+        try {
+            builder.place("wall", new Maze.Point(0, 0));
+            assert false;
+        } catch (IllegalStateException ignored) {
+        }
+        MapBuilder other = world.builder(new Maze.Point(3, 3));
+        try {
+            other.place("key", new Maze.Point(0, 0), ColorableTile.Color.None);
+            assert false;
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            other.place("wall", new Maze.Point(3, 0));
+            assert false;
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            other.place("door", new Maze.Point(0, 0));
+            assert false;
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    /**
+     * Checks that the inventory counts keys by color, returns the same list
+     * until it changes, and updates its observers on every change.
+     */
+    @Test
+    public void inventoryTest() {
+        Maze.generateMap(new Maze.Point(3, 3), 0, -1);
+        Inventory inventory = Maze.player.getInventory();
+        int[] changes = {0};
+        inventory.addObserver(unused -> changes[0]++);
+
+        Maze.player.addKey(ColorableTile.Color.Yellow);
+        Maze.player.addKey(ColorableTile.Color.Red);
+        Maze.player.addKey(ColorableTile.Color.Yellow);
+        assert changes[0] == 3;
+        assert inventory.count(ColorableTile.Color.Yellow) == 2 && inventory.total() == 3;
+        assert !inventory.has(ColorableTile.Color.Blue);
+        List<ColorableTile.Color> keys = Maze.player.getAllKeys();
+        assert keys.equals(List.of(ColorableTile.Color.Red, ColorableTile.Color.Yellow, ColorableTile.Color.Yellow));
+        assert Maze.player.getAllKeys() == keys;
+        try {
+            keys.add(ColorableTile.Color.Blue);
+            assert false;
+        } catch (UnsupportedOperationException ignored) {
+        }
+
+        Maze.player.consumeKey(ColorableTile.Color.Yellow);
+        assert changes[0] == 4 && Maze.player.getAllKeys() != keys;
+        assert inventory.count(ColorableTile.Color.Yellow) == 1;
+        try {
+            Maze.player.consumeKey(ColorableTile.Color.Blue);
+            assert false;
+        } catch (IllegalArgumentException ignored) {
+        }
+        Maze.player.resetItems();
+        assert changes[0] == 5 && inventory.total() == 0 && Maze.player.getAllKeys().isEmpty();
+        Maze.player.resetItems();
+        assert changes[0] == 5;
+    }
+
+    /**
+     * Checks that events are only delivered to listeners of their type, that event
+     * objects are reused, that turning to the same direction publishes nothing,
+     * and that cancelled listeners stop receiving events.
+     */
+    @Test
+    public void eventBusTest() {
+        GameWorld world = new GameWorld();
+        world.generateMap(new Maze.Point(4, 1), 1, -1);
+        world.setTile(new Maze.Point(1, 0), TileDatabase.create(world, "key", new Maze.Point(1, 0), ColorableTile.Color.Blue));
+        world.setTile(new Maze.Point(2, 0), TileDatabase.create(world, "treasure", new Maze.Point(2, 0)));
+        Player player = world.getPlayer();
+        EventBus events = world.getEvents();
+        assert !events.hasListeners(GameEvent.Moved.class);
+
+        List<String> seen = new ArrayList<>();
+        List<GameEvent> moves = new ArrayList<>();
+        EventBus.Subscription moved = events.subscribe(GameEvent.Moved.class, e -> {
+            seen.add("moved " + e.getFrom() + " " + e.getTo());
+            moves.add(e);
+        });
+        events.subscribe(GameEvent.Turned.class, e -> seen.add("turned " + e.getTo()));
+        events.subscribe(GameEvent.KeyCollected.class, e -> seen.add("key " + e.getColor()));
+        events.subscribe(GameEvent.TreasureCollected.class, e -> seen.add("treasure " + e.getRemaining()));
+        events.subscribe(GameEvent.Died.class, e -> seen.add("died " + e.getPos()));
+        assert events.hasListeners(GameEvent.Moved.class);
+
+        player.moveAndTurn(Direction.Right);
+        assert seen.equals(List.of("turned Right", "moved " + Maze.Point.of(0, 0) + " " + Maze.Point.of(1, 0), "key Blue"));
+        assert world.getChangeMap().get(0).interaction().equals(Entity.Action.Interaction.of(Entity.Action.Interaction.ActionType.PickupKey, ColorableTile.Color.Blue));
+
+        seen.clear();
+        player.moveAndTurn(Direction.Right);
+        assert seen.equals(List.of("moved " + Maze.Point.of(1, 0) + " " + Maze.Point.of(2, 0), "treasure 0"));
+        assert moves.size() == 2 && moves.get(0) == moves.get(1);
+        assert moves.get(0).getEntity() == null;
+
+        seen.clear();
+        moved.cancel();
+        moved.cancel();
+        assert !events.hasListeners(GameEvent.Moved.class);
+        player.moveAndTurn(Direction.Right);
+        world.loseGame();
+        world.loseGame();
+        assert seen.equals(List.of("died " + Maze.Point.of(3, 0)));
+        try {
+            events.subscribe(GameEvent.class, e -> {
+            });
+            assert false;
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    /**
+     * Checks that restoring a simulation puts back its clock as well as its world,
+     * so that enemies are pinged on the same ticks as before.
+     */
+    @Test
+    public void simulationSnapshotTest() {
+        GameWorld world = new GameWorld();
+        world.generateMap(new Maze.Point(9, 3), 0, -1);
+        GummyGuard enemy = world.call(() -> new GummyGuard(new Maze.Point(8, 2), Direction.Left));
+        world.getEntities().add(enemy);
+        Simulation simulation = new Simulation(world);
+        simulation.step(25);
+        Simulation.Snapshot snapshot = simulation.snapshot();
+        assert snapshot.getTime() == 25 * Simulation.TICK_MS;
+
+        List<Long> hashes = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            simulation.step();
+            hashes.add(world.getStateHash());
+        }
+        for (int round = 0; round < 2; round++) {
+            simulation.restore(snapshot);
+            assert simulation.getTime() == snapshot.getTime() && simulation.getLastActions().isEmpty();
+            for (int i = 0; i < 50; i++) {
+                simulation.step();
+                assert world.getStateHash() == hashes.get(i) : "Tick " + i + " differs after restoring.";
+            }
+        }
+        try {
+            new Simulation(world).restore(snapshot);
+            assert false;
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    /**
+     * Checks that a very large grid only keeps a bounded number of chunks on the heap,
+     * that chunks paged out read back the same, and that snapshots still see them.
+     */
+    @Test
+    public void pagedTileGridTest() {
+        GameWorld world = new GameWorld();
+        world.generateMap(new Maze.Point(5000, 5000), 0, -1);
+        assert world.getDimensions() == world.getDimensions();
+
+        TileGrid grid = new TileGrid(5000, 5000);
+        grid.setAnchors(() -> List.of(new Maze.Point(2500, 2500)));
+        assert grid.residentChunks() == 0 && grid.type(4999, 4999) == TileGrid.GROUND;
+        Wall wall = world.call(() -> new Wall(new Maze.Point(0, 0)));
+        for (int y = 0; y < 5000; y += 32) {
+            for (int x = 0; x < 5000; x += 32) grid.set(x + 1, y + 2, wall);
+        }
+        assert grid.residentChunks() <= TileGrid.MAX_RESIDENT_CHUNKS;
+        long hash = grid.hash();
+        TileGrid.Snapshot snapshot = grid.snapshot();
+
+        for (int y = 0; y < 5000; y += 32) {
+            for (int x = 0; x < 5000; x += 32) {
+                assert grid.type(x + 1, y + 2) == TileGrid.WALL && grid.type(x, y) == TileGrid.GROUND;
+            }
+        }
+        assert grid.residentChunks() <= TileGrid.MAX_RESIDENT_CHUNKS;
+        assert grid.hash() == hash;
+
+        grid.set(1, 2, world.call(() -> new Ground(new Maze.Point(1, 2))));
+        assert grid.type(1, 2) == TileGrid.GROUND && grid.hash() != hash;
+        TileGrid restored = new TileGrid(snapshot);
+        assert restored.type(1, 2) == TileGrid.WALL && restored.type(4993, 4994) == TileGrid.WALL;
+        assert restored.hash() == hash;
+    }
+
+    /**
+     * Checks that slots of a chunk file are freed once nothing holds them and written
+     * again before the file grows, and that a grid whose chunks keep changing does not
+     * keep growing its file.
+     */
+    @Test
+    public void chunkFileSlotsTest() {
+        ChunkFile file = new ChunkFile(4);
+        int first = file.write(new short[]{1, 2, 3, 4}), second = file.write(new short[]{5, 6, 7, 8});
+        file.hold(new int[]{first, -1});
+        file.release(first);
+        assert file.freeSlots() == 0 && file.read(first)[0] == 1;
+        file.release(first);
+        assert file.freeSlots() == 1;
+        try {
+            file.read(first);
+            assert false;
+        } catch (IllegalArgumentException ignored) {
+        }
+        assert file.write(new short[]{9, 9, 9, 9}) == first && file.slots() == 2 && file.freeSlots() == 0;
+        assert file.read(first)[0] == 9 && file.read(second)[0] == 5;
+
+        GameWorld world = new GameWorld();
+        world.generateMap(new Maze.Point(1, 1), 0, -1);
+        Wall wall = world.call(() -> new Wall(new Maze.Point(0, 0)));
+        Ground ground = world.call(() -> new Ground(new Maze.Point(0, 0)));
+        TileGrid grid = new TileGrid(5000, 5000);
+        grid.setAnchors(() -> List.of(new Maze.Point(0, 0)));
+        for (int round = 0; round < 4; round++) {
+            for (int y = 0; y < 5000; y += 32) {
+                for (int x = 0; x < 5000; x += 32) grid.set(x + round % 2, y, round % 2 == 0 ? wall : ground);
+            }
+        }
+        int chunks = (5000 + 31) / 32 * ((5000 + 31) / 32);
+        assert grid.fileSlots() > 0 && grid.fileSlots() <= chunks : grid.fileSlots();
+        assert grid.type(4992, 4992) == TileGrid.WALL && grid.type(4993, 4992) == TileGrid.GROUND;
+    }
+
+    /**
+     * Checks that the text codec writes a map in the same form as the string state
+     * with a legend in front, that reading it back gives the same map, and that
+     * invalid text is rejected.
+     */
+    @Test
+    public void asciiCodecTest() {
+        GameWorld world = new GameWorld().builder(new Maze.Point(1000, 600))
+                .fill(new Maze.Point(0, 599), new Maze.Point(999, 599), "wall")
+                .place("key", new Maze.Point(1, 0), ColorableTile.Color.Blue)
+                .place("door", new Maze.Point(2, 0), ColorableTile.Color.Green)
+                .place("bounce-pad", new Maze.Point(3, 0), Direction.Left)
+                .place("info", new Maze.Point(4, 0), "Line one\nback\\slash")
+                .place("treasure", new Maze.Point(999, 300))
+                .place("exit-gate", new Maze.Point(5, 0))
+                .place("exit", new Maze.Point(6, 0))
+                .place("death", new Maze.Point(7, 0))
+                .player(new Maze.Point(10, 20), Direction.Up)
+                .treasures(1).nextLevel(3).commit();
+        String text = AsciiCodec.write(world);
+        assert text.startsWith(AsciiCodec.HEADER + " 1 1000 600\n;player 10 20 Up\n;treasures 1\n;next 3\n");
+        assert text.endsWith(world.getStringState());
+        assert world.getStringState().startsWith("GKDBILEMG");
+
+        GameWorld copy = AsciiCodec.read(text, new GameWorld());
+        assert copy.getStringState().equals(world.getStringState());
+        assert copy.getTileMap().hash() == world.getTileMap().hash();
+        assert copy.getPlayer().getPos().equals(new Maze.Point(10, 20)) && copy.getPlayer().getDir() == Direction.Up;
+        assert copy.getTreasuresLeft() == 1 && copy.getNextLevel() == 3;
+        assert ((InfoField) copy.getTile(4, 0)).getText().equals("Line one\nback\\slash");
+        assert ((LockedDoor) copy.getTile(2, 0)).getColor() == ColorableTile.Color.Green;
+        assert AsciiCodec.write(copy).equals(text);
+
+        String small = AsciiCodec.HEADER + " 1 3 1\nGTE\n";
+        assert AsciiCodec.read(small, copy).getTreasuresLeft() == 1 && copy.getStringState().equals("GTE\n");
+        for (String bad : List.of("GTE\n", AsciiCodec.HEADER + " 1 3 1\nGT\n", AsciiCodec.HEADER + " 1 3 1\nGKE\n",
+                AsciiCodec.HEADER + " 1 3 1\n;colors Red\nGTE\n", AsciiCodec.HEADER + " 2 3 1\nGTE\n")) {
+            try {
+                AsciiCodec.read(bad, new GameWorld());
+                assert false : bad;
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Tests that maps built from a template start the same and change independently,
+     * and that only the cells that changed are found.
+     */
+    @Test
+    public void mapTemplateTest() {
+        MapTemplate template = new GameWorld().builder(new Maze.Point(100, 100))
+                .fill(new Maze.Point(0, 0), new Maze.Point(99, 0), "wall")
+                .place("key", new Maze.Point(40, 40), ColorableTile.Color.Red)
+                .place("info", new Maze.Point(70, 70), "Hello")
+                .player(new Maze.Point(5, 5), Direction.Left)
+                .treasures(2).template();
+        GameWorld first = new GameWorld().builder(template).commit();
+        GameWorld second = new GameWorld().builder(template).place("treasure", new Maze.Point(1, 1)).commit();
+        assert first.changesFrom(template).isEmpty();
+        assert second.changesFrom(template).equals(List.of(new Maze.Point(1, 1)));
+        assert first.getPlayer().getPos().equals(new Maze.Point(5, 5)) && first.getPlayer().getDir() == Direction.Left;
+        assert first.getTreasuresLeft() == 2 && first.getTileMap().hash() != second.getTileMap().hash();
+
+        first.resetTile(new Maze.Point(40, 40));
+        first.run(() -> first.setTile(new Maze.Point(70, 70), new InfoField(new Maze.Point(70, 70), "Bye")));
+        assert first.changesFrom(template).equals(List.of(new Maze.Point(40, 40), new Maze.Point(70, 70)));
+        assert second.isTile(40, 40, Key.class) && ((InfoField) second.getTile(70, 70)).getText().equals("Hello");
+        assert new GameWorld().builder(template).commit().getTileMap().hash() == new GameWorld().builder(template).commit().getTileMap().hash();
+    }
+
+    /**
+     * Tests that the tile the player starts on does not react to it when a map is
+     * committed, and does once the player moves off it and back on.
+     */
+    @Test
+    public void startTileTest() {
+        for (String tileID : List.of("key", "treasure", "death", "bounce-pad")) {
+            Object[] params = switch (tileID) {
+                case "key" -> new Object[]{ColorableTile.Color.Red};
+                case "bounce-pad" -> new Object[]{Direction.Right};
+                default -> new Object[0];
+            };
+            GameWorld world = new GameWorld().builder(new Maze.Point(5, 5))
+                    .place(tileID, new Maze.Point(2, 2), params)
+                    .player(new Maze.Point(2, 2), Direction.Down)
+                    .treasures(1).commit();
+            Player player = world.getPlayer();
+            assert player.getPos().equals(new Maze.Point(2, 2)) : tileID;
+            assert player.keyCount() == 0 && world.getTreasuresLeft() == 1 && !world.isGameLost() : tileID;
+            assert !world.isTile(2, 2, Ground.class) : tileID;
+        }
+
+        GameWorld world = new GameWorld().builder(new Maze.Point(5, 5))
+                .place("key", new Maze.Point(2, 2), ColorableTile.Color.Red)
+                .player(new Maze.Point(2, 2), Direction.Down).commit();
+        world.run(() -> {
+            world.getPlayer().moveAndTurn(Direction.Up);
+            world.getPlayer().moveAndTurn(Direction.Down);
+        });
+        assert world.getPlayer().keyCount() == 1 && world.isTile(2, 2, Ground.class);
+    }
 }
@@ -0,0 +1,109 @@
+package nz.ac.vuw.ecs.swen225.gp22.persistency;
+
+import nz.ac.vuw.ecs.swen225.gp22.app.Base;
+import nz.ac.vuw.ecs.swen225.gp22.domain.ColorableTile;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Entity;
+import nz.ac.vuw.ecs.swen225.gp22.domain.GameWorld;
+import nz.ac.vuw.ecs.swen225.gp22.domain.InfoField;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Maze;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Tests for BinaryFormat and BinaryParser classes.
+ *
+ * @author agent
+ * @version 1.0
+ */
+public class BinaryFormatTest {
+    /**
+     * Test to see if levels convert to binary and back to xml without changing,
+     * and if the binary files are much smaller.
+     *
+     * @throws IOException if a file could not be written
+     */
+    @Test
+    public void convertLevels() throws IOException {
+        File binary = File.createTempFile("level", BinaryFormat.EXTENSION);
+        File xml = File.createTempFile("level", ".xml");
+        try {
+            for (int level = 1; level <= 2; level++) {
+                File original = Load.getFile("levels/level" + level);
+                StreamParser expected = new StreamParser(original, new GameWorld());
+                GameWorld expectedWorld = expected.load();
+
+                BinaryFormat.fromXml(original, binary);
+                assert binary.length() * 10 < original.length() : "Binary file is " + binary.length() + " bytes";
+                BinaryParser parser = new BinaryParser(binary, new GameWorld());
+                GameWorld world = parser.load();
+                assert world.getStringState().equals(expectedWorld.getStringState());
+                assert world.getPlayer().getPos().equals(expectedWorld.getPlayer().getPos());
+                assert world.getTreasuresLeft() == expectedWorld.getTreasuresLeft();
+                assert parser.getLevel() == level;
+                assert parser.getEntityInfos().equals(expected.getEntityInfos());
+
+                BinaryFormat.toXml(binary, xml);
+                StreamParser converted = new StreamParser(xml, new GameWorld());
+                assert converted.load().getStringState().equals(expectedWorld.getStringState());
+                assert converted.getEntityInfos().equals(expected.getEntityInfos());
+            }
+        } finally {
+            Files.deleteIfExists(binary.toPath());
+            Files.deleteIfExists(xml.toPath());
+        }
+    }
+
+    /**
+     * Test to see if a saved game keeps its time, keys, info text and bounce pads,
+     * and if it can be resumed from the binary file.
+     *
+     * @throws IOException if the file could not be written
+     */
+    @Test
+    public void saveAndResume() throws IOException {
+        GameWorld world = new GameWorld().builder(new Maze.Point(300, 200))
+                .fill(new Maze.Point(0, 100), new Maze.Point(299, 150), "wall")
+                .place("info", new Maze.Point(5, 5), "Hello\nthere")
+                .place("info", new Maze.Point(6, 5), "")
+                .place("bounce-pad", new Maze.Point(7, 5), Entity.Direction.Up)
+                .place("door", new Maze.Point(8, 5), ColorableTile.Color.Red)
+                .player(new Maze.Point(3, 4), Entity.Direction.Left)
+                .treasures(2).nextLevel(2).commit();
+        world.getPlayer().addKey(ColorableTile.Color.Green);
+        world.getPlayer().addKey(ColorableTile.Color.Green);
+        File binary = File.createTempFile("save", BinaryFormat.EXTENSION);
+        try {
+            BinaryFormat.save(world, 1, 42, binary);
+            BinaryParser parser = new BinaryParser(binary, new GameWorld());
+            GameWorld loaded = parser.load();
+            assert loaded.getStringState().equals(world.getStringState());
+            assert ((InfoField) loaded.getTile(5, 5)).getText().equals("Hello\nthere");
+            assert ((InfoField) loaded.getTile(6, 5)).getText().isEmpty();
+            assert loaded.getPlayer().getInventory().count(ColorableTile.Color.Green) == 2;
+            assert loaded.getPlayer().getDir() == Entity.Direction.Left;
+            assert parser.getTime() == 42 && parser.getNumKeysCollected() == 2 && !parser.entitiesPresent();
+
+            Load.continueGame(binary, true);
+            assert Base.getTime() == 42 && Base.getLevel() == 1;
+            assert Maze.getStringState().equals(world.getStringState());
+        } finally {
+            Files.deleteIfExists(binary.toPath());
+        }
+    }
+
+    /**
+     * Test to see if the parser throws error when the file is invalid.
+     */
+    @Test
+    public void parseInvalidFile() {
+        try {
+            new BinaryParser(Load.getFile("levels/level1"), new GameWorld()).load();
+            assert false : "Parser should throw an exception when given an invalid file";
+        } catch (IllegalArgumentException e) {
+            assert true;
+        }
+    }
+}
@@ -1,18 +1,23 @@
 package nz.ac.vuw.ecs.swen225.gp22.persistency;
 
 import nz.ac.vuw.ecs.swen225.gp22.app.Base;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Entity;
+import nz.ac.vuw.ecs.swen225.gp22.domain.GameWorld;
+import nz.ac.vuw.ecs.swen225.gp22.domain.GummyGuard;
 import nz.ac.vuw.ecs.swen225.gp22.domain.Maze;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Wall;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.List;
 
 /**
  * Tests for Load class.
  *
  * @author Gideon
- * @version 1.4
+ * @version 1.7
  */
 public class LoadTest {
     /**
@@ -27,6 +32,50 @@ public class LoadTest {
         assert Maze.getDimensions().equals(new Maze.Point(17, 16)) : "Maze dimensions are not correct";
     }
 
+    /**
+     * Test to see if a cached level is reused, and that changing a loaded level
+     * does not change the next one loaded from the cache.
+     */
+    @Test
+    public void loadCachedLevel() {
+        LevelCache.clear();
+        Load.loadLevel(2);
+        String state = GameWorld.current().getStringState();
+        assert Load.levelTemplate(2) == Load.levelTemplate(2);
+        assert !GameWorld.current().getEntities().isEmpty();
+
+        Maze.Point wall = null;
+        for (int x = 0; wall == null; x++) {
+            if (GameWorld.current().isTile(x, 0, Wall.class)) wall = Maze.Point.of(x, 0);
+        }
+        GameWorld.current().resetTile(wall);
+        assert !GameWorld.current().getStringState().equals(state);
+        GameWorld other = new GameWorld();
+        assert Load.loadLevel(1, other).equals(new Load.LevelStart(1, 60));
+        assert other.changesFrom(Load.levelTemplate(1)).isEmpty();
+        assert Base.getLevel() == 2;
+        Load.loadLevel(2);
+        assert GameWorld.current().getStringState().equals(state);
+    }
+
+    /**
+     * Test that a level with enemies loaded into another world gets enemies bound to that
+     * world in place of the jar's, at the same positions, without changing the app's level.
+     */
+    @Test
+    public void loadLevelInOtherWorld() {
+        Load.loadLevel(2);
+        List<Maze.Point> positions = GameWorld.current().getEntities().stream().map(Entity::getPos).toList();
+        Load.loadLevel(1);
+
+        GameWorld other = new GameWorld();
+        assert Load.loadLevel(2, other).equals(new Load.LevelStart(2, 60));
+        assert Base.getLevel() == 1;
+        assert !other.getEntities().isEmpty();
+        assert other.getEntities().stream().allMatch(e -> e instanceof GummyGuard && e.getWorld() == other);
+        assert other.getEntities().stream().map(Entity::getPos).toList().equals(positions);
+    }
+
     /**
      * Test if the getFile method loads the file with the correct name.
      */
@@ -2,12 +2,18 @@ package nz.ac.vuw.ecs.swen225.gp22.persistency;
 
 import nz.ac.vuw.ecs.swen225.gp22.app.Base;
 import nz.ac.vuw.ecs.swen225.gp22.domain.ColorableTile;
+import nz.ac.vuw.ecs.swen225.gp22.domain.GameWorld;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Key;
 import nz.ac.vuw.ecs.swen225.gp22.domain.Maze;
 import org.dom4j.*;
+import org.dom4j.io.SAXReader;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -16,7 +22,7 @@ import java.util.Map;
  * Tests for Save class.
  *
  * @author Gideon
- * @version 1.3
+ * @version 1.6
  */
 public class SaveTest {
     /**
@@ -29,6 +35,51 @@ public class SaveTest {
         assert Load.previousGamePresent();
     }
 
+    /**
+     * Test to see if an asynchronous save writes the same bytes to both files,
+     * and leaves no temporary files behind.
+     */
+    @Test
+    public void saveGameAsync() throws IOException {
+        Load.loadLevel(2);
+        File file = Save.saveGameAsync().join();
+        File previous = new File(file.getParentFile(), "previousGame.xml");
+        assert file.isFile();
+        assert Arrays.equals(Files.readAllBytes(file.toPath()), Files.readAllBytes(previous.toPath()));
+        String[] temps = file.getParentFile().list((dir, name) -> name.endsWith(".tmp"));
+        assert temps != null && temps.length == 0;
+        Load.previousGame();
+        assert Base.getLevel() == 2;
+    }
+
+    /**
+     * Test to see if a delta save only stores the tiles that changed,
+     * and loads back to the same game.
+     */
+    @Test
+    public void saveDelta() throws DocumentException {
+        Load.loadLevel(1);
+        GameWorld world = GameWorld.current();
+        Maze.Point key = null;
+        for (int x = 0; x < world.getDimensions().x() && key == null; x++) {
+            for (int y = 0; y < world.getDimensions().y() && key == null; y++) {
+                if (world.isTile(x, y, Key.class)) key = Maze.Point.of(x, y);
+            }
+        }
+        assert key != null;
+        world.resetTile(key);
+        String state = world.getStringState();
+
+        File file = Save.saveGameAsync(true).join();
+        Element root = new SAXReader().read(file).getRootElement();
+        assert root.attributeValue("delta").equals("true");
+        List<?> tiles = root.element("tiles").elements();
+        assert tiles.size() == 1 && ((Element) tiles.get(0)).attributeValue("ID").equals("ground");
+        Load.previousGame();
+        assert Base.getLevel() == 1;
+        assert GameWorld.current().getStringState().equals(state);
+    }
+
     /**
      * Test to see if the save method can save level 2 correctly.
      */
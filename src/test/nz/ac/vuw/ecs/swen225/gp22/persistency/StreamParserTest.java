@@ -0,0 +1,95 @@
+package nz.ac.vuw.ecs.swen225.gp22.persistency;
+
+import nz.ac.vuw.ecs.swen225.gp22.domain.ColorableTile;
+import nz.ac.vuw.ecs.swen225.gp22.domain.GameWorld;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Maze;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Wall;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Tests for StreamParser class.
+ *
+ * @author agent
+ * @version 1.0
+ */
+public class StreamParserTest {
+    /**
+     * Test to see if streaming a level gives the same map as parsing it into a document.
+     */
+    @Test
+    public void sameAsParser() {
+        for (int level = 1; level <= 2; level++) {
+            File file = Load.getFile("levels/level" + level);
+            GameWorld expected = new Parser(file, new GameWorld()).parseMap().commit();
+            StreamParser parser = new StreamParser(file, new GameWorld());
+            GameWorld world = parser.load();
+            assert world.getStringState().equals(expected.getStringState()) : "Level " + level + " map is not the same";
+            assert world.getPlayer().getPos().equals(expected.getPlayer().getPos());
+            assert world.getPlayer().getDir() == expected.getPlayer().getDir();
+            assert world.getTreasuresLeft() == expected.getTreasuresLeft();
+            assert world.getNextLevel() == expected.getNextLevel();
+            assert parser.getLevel() == level;
+            assert parser.entitiesPresent() == (level == 2);
+        }
+    }
+
+    /**
+     * Test to see if streaming a saved game restores the time and the player's keys.
+     */
+    @Test
+    public void loadSave() {
+        Load.loadLevel(1);
+        Maze.player.addKey(ColorableTile.Color.Red);
+        Maze.player.addKey(ColorableTile.Color.Red);
+        Save.saveGame();
+        StreamParser parser = new StreamParser(Load.getFile("saves/previousGame"), new GameWorld());
+        GameWorld world = parser.load();
+        assert parser.getLevel() == 1 && parser.getNumKeysCollected() == 2;
+        assert world.getPlayer().getInventory().count(ColorableTile.Color.Red) == 2;
+        assert world.getStringState().equals(Maze.getStringState());
+    }
+
+    /**
+     * Test to see if a level with hundreds of thousands of tiles can be streamed.
+     *
+     * @throws IOException if the level could not be written
+     */
+    @Test
+    public void loadLargeLevel() throws IOException {
+        File file = File.createTempFile("large", ".xml");
+        file.deleteOnExit();
+        try (PrintWriter out = new PrintWriter(file, StandardCharsets.UTF_8)) {
+            out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            out.println("<maze level=\"1\"><mapInfo><width>600</width><height>500</height>"
+                    + "<treasures>0</treasures><nextLevel>-1</nextLevel></mapInfo>");
+            out.println("<player x=\"0\" y=\"0\" direction=\"Down\"/><tiles>");
+            for (int y = 0; y < 500; y++) {
+                for (int x = 1; x < 600; x += 2) out.println("<tile ID=\"wall\" x=\"" + x + "\" y=\"" + y + "\"/>");
+            }
+            out.println("</tiles></maze>");
+        }
+        GameWorld world = new StreamParser(file, new GameWorld()).load();
+        assert world.getDimensions().equals(new Maze.Point(600, 500));
+        assert world.isTile(599, 499, Wall.class) && !world.isTile(598, 499, Wall.class);
+        Files.delete(file.toPath());
+    }
+
+    /**
+     * Test to see if the parser throws error when the file is invalid.
+     */
+    @Test
+    public void parseInvalidFile() {
+        try {
+            new StreamParser(new File("src/test/nz/ac/vuw/ecs/swen225/gp22/persistency/invalidFile"), new GameWorld()).load();
+            assert false : "Parser should throw an exception when given an invalid file";
+        } catch (IllegalArgumentException e) {
+            assert true;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package nz.ac.vuw.ecs.swen225.gp22.recorder;
+
+import nz.ac.vuw.ecs.swen225.gp22.domain.*;
+import nz.ac.vuw.ecs.swen225.gp22.domain.Entity.Direction;
+import nz.ac.vuw.ecs.swen225.gp22.persistency.Load;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tests for the LevelSolver class.
+ *
+ * @author agent
+ * @version 1.0
+ */
+public class LevelSolverTest {
+    /**
+     * Builds a level where the key is off the direct path to the exit:
+     * <pre>
+     * P.DTLE
+     * #K####
+     * </pre>
+     *
+     * @param world the world to build the level in
+     * @param key   whether to place the key
+     */
+    private static void buildLevel(GameWorld world, boolean key) {
+        world.generateMap(new Maze.Point(6, 2), 1, -1);
+        world.run(() -> {
+            for (int x = 0; x < 6; x++) {
+                if (x != 1) world.setTile(new Maze.Point(x, 1), new Wall(new Maze.Point(x, 1)));
+            }
+            if (key) world.setTile(new Maze.Point(1, 1), new Key(new Maze.Point(1, 1), ColorableTile.Color.Blue));
+            world.setTile(new Maze.Point(2, 0), new LockedDoor(new Maze.Point(2, 0), ColorableTile.Color.Blue));
+            world.setTile(new Maze.Point(3, 0), new Treasure(new Maze.Point(3, 0)));
+            world.setTile(new Maze.Point(4, 0), new LockedExit(new Maze.Point(4, 0)));
+            world.setTile(new Maze.Point(5, 0), new Exit(new Maze.Point(5, 0)));
+        });
+    }
+
+    /**
+     * Checks that the shortest solution is found, and that recording it
+     * leaves the world as it was.
+     */
+    @Test
+    public void solveTest() {
+        GameWorld world = new GameWorld();
+        buildLevel(world, true);
+        long hash = world.getStateHash();
+        LevelSolver solver = new LevelSolver(world);
+
+        Optional<List<Direction>> moves = solver.solve();
+        assert moves.isPresent();
+        assert moves.get().equals(List.of(Direction.Right, Direction.Down, Direction.Up,
+                Direction.Right, Direction.Right, Direction.Right, Direction.Right)) : moves.get();
+        assert solver.getStatesVisited() > 0;
+
+        Recorder recorder = solver.record(1, moves.get());
+        assert recorder.getStates().size() == moves.get().size() + 1;
+        assert world.getStateHash() == hash;
+        assert !world.gameWon();
+    }
+
+    /**
+     * Checks that a key which is nearer than the treasure but not needed is left,
+     * so the solution has the fewest moves rather than picking up the nearest item first:
+     * <pre>
+     * P.T.LE
+     * K#####
+     * </pre>
+     */
+    @Test
+    public void shortestTest() {
+        GameWorld world = new GameWorld();
+        world.generateMap(new Maze.Point(6, 2), 1, -1);
+        world.run(() -> {
+            for (int x = 1; x < 6; x++) world.setTile(new Maze.Point(x, 1), new Wall(new Maze.Point(x, 1)));
+            world.setTile(new Maze.Point(0, 1), new Key(new Maze.Point(0, 1), ColorableTile.Color.Blue));
+            world.setTile(new Maze.Point(2, 0), new Treasure(new Maze.Point(2, 0)));
+            world.setTile(new Maze.Point(4, 0), new LockedExit(new Maze.Point(4, 0)));
+            world.setTile(new Maze.Point(5, 0), new Exit(new Maze.Point(5, 0)));
+        });
+        Optional<List<Direction>> moves = new LevelSolver(world).solve();
+        assert moves.isPresent();
+        assert moves.get().equals(Collections.nCopies(5, Direction.Right)) : moves.get();
+        assert new LevelSolver(world).record(1, moves.get()).getStates().size() == 6;
+    }
+
+    /**
+     * Checks that a level without the key for its door cannot be solved,
+     * and that moves which do not win cannot be recorded.
+     */
+    @Test
+    public void unsolvableTest() {
+        GameWorld world = new GameWorld();
+        buildLevel(world, false);
+        LevelSolver solver = new LevelSolver(world);
+        assert solver.solve().isEmpty();
+        try {
+            solver.record(1, List.of(Direction.Right));
+            assert false : "Recorded moves that do not win";
+        } catch (IllegalArgumentException e) {
+            assert world.getPlayer().getPos().equals(new Maze.Point(0, 0));
+        }
+    }
+
+    /**
+     * Checks that the first level can be solved, and that the solution
+     * is the same no matter how many threads search for it.
+     */
+    @Test
+    public void levelOneTest() {
+        GameWorld world = new GameWorld();
+        world.run(() -> Load.loadLevel(1));
+        Optional<List<Direction>> parallel = new LevelSolver(world).solve();
+        assert parallel.isPresent();
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            assert parallel.equals(new LevelSolver(world, single).solve());
+        } finally {
+            single.shutdown();
+        }
+        assert new LevelSolver(world).solveRecording(1).isPresent();
+    }
+}
@@ -0,0 +1,58 @@
+package nz.ac.vuw.ecs.swen225.gp22.recorder;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tests for the MctsBot class.
+ *
+ * @author agent
+ * @version 1.0
+ */
+public class MctsBotTest {
+    /**
+     * Checks that the bot wins the first level and records the game it played.
+     */
+    @Test
+    public void playTest() {
+        MctsBot bot = new MctsBot(1, 300, ForkJoinPool.commonPool(), 1);
+        Optional<Recorder> recording = bot.play();
+        assert recording.isPresent();
+        assert !recording.get().getStates().isEmpty();
+        assert !bot.getMoves().isEmpty();
+        assert bot.getRollouts() >= 300L * bot.getMoves().size();
+        assert bot.getRolloutsPerSecond() > 0;
+    }
+
+    /**
+     * Checks that the bot wins the second level, where each worker's enemies
+     * belong to the worker's own world.
+     */
+    @Test
+    public void playEnemiesTest() {
+        MctsBot bot = new MctsBot(2, 300, ForkJoinPool.commonPool(), 1);
+        assert !bot.getWorld().getEntities().isEmpty();
+        Optional<Recorder> recording = bot.play();
+        assert recording.isPresent() : bot.getMoves();
+        assert bot.getWorld().getEntities().stream().allMatch(e -> e.getWorld() == bot.getWorld());
+    }
+
+    /**
+     * Checks that bad arguments are rejected.
+     */
+    @Test
+    public void argumentsTest() {
+        try {
+            new MctsBot(1, 0, ForkJoinPool.commonPool(), 1);
+            assert false;
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            new MctsBot(1, 10, null, 1);
+            assert false;
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}